@@ -0,0 +1,27 @@
+package org.lavajuno.jfskmodem.bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counters reports the bits and frames processed by a benchmark as rates, alongside
+ * its operation rate. Frames per second divided by 48000 is the real-time factor.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Counters {
+    public long bits;
+    public long frames;
+
+    /**
+     * Resets the counters before each iteration.
+     */
+    @Setup(Level.Iteration)
+    public void reset() {
+        bits = 0;
+        frames = 0;
+    }
+}
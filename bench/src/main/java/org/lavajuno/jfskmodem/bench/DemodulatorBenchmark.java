@@ -0,0 +1,118 @@
+package org.lavajuno.jfskmodem.bench;
+
+import org.lavajuno.jfskmodem.Demodulator;
+import org.lavajuno.jfskmodem.detector.BitDetector;
+import org.lavajuno.jfskmodem.detector.ClockRecovery;
+import org.lavajuno.jfskmodem.detector.CorrelationDetector;
+import org.lavajuno.jfskmodem.detector.DiffDetector;
+import org.lavajuno.jfskmodem.log.Log;
+import org.lavajuno.jfskmodem.waveforms.Waveforms;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the receive path: full demodulation of a signal, clock recovery
+ * and per-bit detection.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DemodulatorBenchmark {
+    private static final int BLOCK_FRAMES = 1024;
+
+    @Param({"300", "1200", "2400", "4800"})
+    public int baud_rate;
+
+    @Param({"16", "256", "4096"})
+    public int payload_size;
+
+    private short[] signal;
+    private Demodulator demodulator;
+    private ClockRecovery clock_recovery;
+    private BitDetector correlation_detector;
+    private BitDetector diff_detector;
+    private int n_bits;
+    private int bit_frames;
+    private int checksum;
+
+    @Setup
+    public void setup() {
+        signal = Signals.modulate(baud_rate, Signals.payload(payload_size));
+        demodulator = new Demodulator(baud_rate, 18000, 14000, b -> checksum += b, Log.Level.WARN);
+        clock_recovery = new ClockRecovery(Waveforms.getTrainingCycleFrames(baud_rate), 4096);
+        correlation_detector = new CorrelationDetector(baud_rate);
+        diff_detector = new DiffDetector(baud_rate);
+        n_bits = payload_size * 14;
+        bit_frames = 48000 / baud_rate;
+    }
+
+    /**
+     * Demodulates a whole signal, fed in blocks as a receiver would.
+     */
+    @Benchmark
+    public int decode(Counters counters) {
+        demodulator.reset();
+        for(int i = 0; i < signal.length && !demodulator.isDone(); i += BLOCK_FRAMES) {
+            demodulator.feed(signal, i, Math.min(BLOCK_FRAMES, signal.length - i));
+        }
+        counters.bits += n_bits;
+        counters.frames += signal.length;
+        return checksum + demodulator.getDecodedBytes();
+    }
+
+    /**
+     * Recovers the clock from the start of the training sequence.
+     */
+    @Benchmark
+    public double recoverClock(Counters counters) {
+        counters.frames += clock_recovery.getScanWidth();
+        return clock_recovery.recover(signal, 0);
+    }
+
+    /**
+     * Detects every bit period of the signal with the correlation detector.
+     */
+    @Benchmark
+    public double detectCorrelation(Counters counters) {
+        return detectAll(correlation_detector, counters);
+    }
+
+    /**
+     * Detects every bit period of the signal with the difference detector.
+     */
+    @Benchmark
+    public double detectDiff(Counters counters) {
+        return detectAll(diff_detector, counters);
+    }
+
+    /**
+     * Runs a detector over every bit period of the signal.
+     * @param detector Detector to run
+     * @param counters Counters to update
+     * @return Sum of the soft decisions
+     */
+    private double detectAll(BitDetector detector, Counters counters) {
+        double total = 0;
+        int n = 0;
+        for(int i = 0; i + bit_frames <= signal.length; i += bit_frames, n++) {
+            total += detector.detect(signal, i);
+        }
+        counters.bits += n;
+        counters.frames += (long) n * bit_frames;
+        return total;
+    }
+}
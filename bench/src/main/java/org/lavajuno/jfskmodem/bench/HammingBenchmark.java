@@ -0,0 +1,72 @@
+package org.lavajuno.jfskmodem.bench;
+
+import org.lavajuno.jfskmodem.ecc.Hamming;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks Hamming(7,4) encoding and decoding, both bulk and per byte.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HammingBenchmark {
+    @Param({"16", "256", "4096"})
+    public int payload_size;
+
+    private byte[] payload;
+    private byte[] encoded;
+    private byte[] decoded;
+
+    @Setup
+    public void setup() {
+        payload = Signals.payload(payload_size);
+        encoded = new byte[Hamming.getEncodedLength(payload_size)];
+        decoded = new byte[payload_size];
+        Hamming.encode(payload, 0, payload_size, encoded, 0);
+    }
+
+    @Benchmark
+    public byte[] encodeBulk(Counters counters) {
+        Hamming.encode(payload, 0, payload_size, encoded, 0);
+        counters.bits += payload_size * 14L;
+        return encoded;
+    }
+
+    @Benchmark
+    public int decodeBulk(Counters counters) {
+        counters.bits += payload_size * 14L;
+        return Hamming.decode(encoded, 0, payload_size, decoded, 0);
+    }
+
+    @Benchmark
+    public int encodeByte(Counters counters) {
+        int total = 0;
+        for(byte b : payload) { total += Hamming.encodeByte(b)[13]; }
+        counters.bits += payload_size * 14L;
+        return total;
+    }
+
+    @Benchmark
+    public int decodeByte(Counters counters) {
+        byte[] bits = Hamming.encodeByte(payload[0]);
+        int total = 0;
+        for(int i = 0; i < payload_size; i++) { total += Hamming.decodeByte(bits); }
+        counters.bits += payload_size * 14L;
+        return total;
+    }
+}
@@ -0,0 +1,27 @@
+package org.lavajuno.jfskmodem.bench;
+
+import org.lavajuno.jfskmodem.io.SampleSink;
+
+/**
+ * NullSink discards written frames, so benchmarks measure modulation alone.
+ */
+public class NullSink implements SampleSink {
+    private long n_bytes;
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) { n_bytes += length; }
+
+    @Override
+    public void drain() { }
+
+    @Override
+    public void flush() { }
+
+    @Override
+    public void close() { }
+
+    /**
+     * @return Number of PCM bytes written so far
+     */
+    public long getWrittenBytes() { return n_bytes; }
+}
@@ -0,0 +1,34 @@
+package org.lavajuno.jfskmodem.bench;
+
+import org.lavajuno.jfskmodem.Transmitter;
+import org.lavajuno.jfskmodem.io.MemorySink;
+
+import java.util.Random;
+
+/**
+ * Signals provides synthetic payloads and modulated signals for benchmarks.
+ */
+public class Signals {
+    /**
+     * Generates a reproducible random payload.
+     * @param length Number of bytes
+     * @return Payload bytes
+     */
+    public static byte[] payload(int length) {
+        byte[] res = new byte[length];
+        new Random(length).nextBytes(res);
+        return res;
+    }
+
+    /**
+     * Modulates a payload into a noise-free signal, as written by a Transmitter.
+     * @param baud_rate Baud rate to modulate at
+     * @param payload Bytes to modulate
+     * @return Signal frames
+     */
+    public static short[] modulate(int baud_rate, byte[] payload) {
+        MemorySink sink = new MemorySink();
+        new Transmitter(sink, baud_rate).transmit(payload);
+        return sink.getFrames();
+    }
+}
@@ -0,0 +1,56 @@
+package org.lavajuno.jfskmodem.bench;
+
+import org.lavajuno.jfskmodem.Transmitter;
+import org.lavajuno.jfskmodem.log.Log;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks modulation and frame assembly in Transmitter, writing to a sink
+ * that discards frames.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransmitterBenchmark {
+    @Param({"300", "1200", "2400", "4800"})
+    public int baud_rate;
+
+    @Param({"16", "256", "4096"})
+    public int payload_size;
+
+    private byte[] payload;
+    private NullSink sink;
+    private Transmitter transmitter;
+
+    @Setup
+    public void setup() {
+        payload = Signals.payload(payload_size);
+        sink = new NullSink();
+        transmitter = new Transmitter(sink, baud_rate, Log.Level.WARN);
+    }
+
+    @Benchmark
+    public long transmit(Counters counters) {
+        long start = sink.getWrittenBytes();
+        transmitter.transmit(payload);
+        long n_frames = (sink.getWrittenBytes() - start) / 2;
+        counters.bits += payload_size * 14L;
+        counters.frames += n_frames;
+        return n_frames;
+    }
+}
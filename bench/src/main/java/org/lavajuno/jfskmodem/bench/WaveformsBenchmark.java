@@ -0,0 +1,57 @@
+package org.lavajuno.jfskmodem.bench;
+
+import org.lavajuno.jfskmodem.waveforms.Waveforms;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the waveform primitives over one bit period, with primitive arrays
+ * and with the List adapters.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WaveformsBenchmark {
+    @Param({"300", "1200", "2400", "4800"})
+    public int baud_rate;
+
+    private short[] space;
+    private short[] mark;
+    private List<Short> space_list;
+    private List<Short> mark_list;
+
+    @Setup
+    public void setup() {
+        space = Waveforms.getSpaceToneFrames(baud_rate);
+        mark = Waveforms.getMarkToneFrames(baud_rate);
+        space_list = Waveforms.getSpaceTone(baud_rate);
+        mark_list = Waveforms.getMarkTone(baud_rate);
+    }
+
+    @Benchmark
+    public int getDiff() { return Waveforms.getDiff(space, mark); }
+
+    @Benchmark
+    public int getDiffList() { return Waveforms.getDiff(space_list, mark_list); }
+
+    @Benchmark
+    public int getAmplitude() { return Waveforms.getAmplitude(mark); }
+
+    @Benchmark
+    public int getAmplitudeList() { return Waveforms.getAmplitude(mark_list); }
+}
@@ -0,0 +1,105 @@
+package org.lavajuno.jfskmodem;
+
+import org.lavajuno.jfskmodem.io.SampleSource;
+import org.lavajuno.jfskmodem.log.Log;
+import org.lavajuno.jfskmodem.packet.PacketDecoder;
+
+import java.util.List;
+
+/**
+ * AdaptiveReceiver receives messages sent by an AdaptiveTransmitter with the same list of rates.
+ * It listens for a header at the slowest rate, and then decodes the message at the rate
+ * the header names. The quality of each received message can be passed to the local
+ * AdaptiveTransmitter, to choose the rate for the reply.
+ */
+@SuppressWarnings("unused")
+public class AdaptiveReceiver {
+    /**
+     * Listen timeout in seconds for a message after its header (it follows immediately)
+     */
+    private static final int DATA_TIMEOUT = 1;
+
+    private final List<ModemConfig> rates;
+    private final Receiver[] receivers;
+    private final PacketDecoder header_decoder;
+    private final Log log;
+
+    private byte[] header;
+    private LinkQuality quality;
+    private ModemConfig rate;
+
+    /**
+     * Constructs an AdaptiveReceiver that reads from the given source, with the given rates and log level.
+     * @param source Source to read frames from
+     * @param rates Configurations the transmitter chooses from, from slowest to fastest
+     * @param log_level Log level for this AdaptiveReceiver
+     */
+    public AdaptiveReceiver(SampleSource source, List<ModemConfig> rates, Log.Level log_level) {
+        this.rates = List.copyOf(rates);
+        receivers = new Receiver[rates.size()];
+        for(int i = 0; i < receivers.length; i++) {
+            receivers[i] = new Receiver(source, rates.get(i), log_level);
+        }
+        header_decoder = new PacketDecoder(payload -> header = payload);
+        log = new Log("AdaptiveReceiver", log_level);
+        quality = new LinkQuality(rates.get(0).getBaudRate(), 0, 0, 0);
+        rate = rates.get(0);
+    }
+
+    /**
+     * Constructs an AdaptiveReceiver that reads from the given source, with the default rates.
+     * @param source Source to read frames from
+     */
+    public AdaptiveReceiver(SampleSource source) {
+        this(source, RateSelector.getDefaultRates(), Log.Level.WARN);
+    }
+
+    /**
+     * Receives a header and the message that follows it.
+     * @param timeout Listen timeout in seconds for the header
+     * @return Received bytes. Empty if the header or message cannot be decoded or timeout is reached.
+     */
+    public byte[] receive(int timeout) {
+        header = null;
+        receivers[0].receive(timeout, header_decoder);
+        header_decoder.reset();
+        LinkQuality header_quality = receivers[0].getLinkQuality();
+        if(header == null || header.length != AdaptiveTransmitter.HEADER_SIZE) {
+            log.error("No header.");
+            quality = header_quality;
+            return new byte[0];
+        }
+        int index = header[0] & 0xff;
+        int baud_rate = (header[1] & 0xff) << 8 | (header[2] & 0xff);
+        if(index >= rates.size() || rates.get(index).getBaudRate() != baud_rate) {
+            log.error(() -> "Header names an unknown rate. (" + baud_rate + " baud)");
+            quality = header_quality;
+            return new byte[0];
+        }
+        rate = rates.get(index);
+        log.debug(() -> "Receiving at " + baud_rate + " baud.");
+        byte[] data = receivers[index].receive(DATA_TIMEOUT);
+        quality = receivers[index].getLinkQuality();
+        if(data.length == 0) {
+            /* The rate could not be sustained, whatever was measured before the message was lost */
+            quality = new LinkQuality(baud_rate, Math.min(quality.getSnr(), header_quality.getSnrAt(baud_rate)),
+                    0.5, header_quality.getSamples());
+        }
+        return data;
+    }
+
+    /**
+     * @return Quality of the last received message (or its header, if the message was lost)
+     */
+    public LinkQuality getLinkQuality() { return quality; }
+
+    /**
+     * @return Configuration of the last received message
+     */
+    public ModemConfig getRate() { return rate; }
+
+    /**
+     * Closes this AdaptiveReceiver's sample source.
+     */
+    public void close() { receivers[0].close(); }
+}
@@ -0,0 +1,97 @@
+package org.lavajuno.jfskmodem;
+
+import org.lavajuno.jfskmodem.io.SampleSink;
+import org.lavajuno.jfskmodem.log.Log;
+import org.lavajuno.jfskmodem.packet.Packets;
+
+import java.util.List;
+
+/**
+ * AdaptiveTransmitter sends each message at the fastest rate the link currently sustains.
+ * Every message is preceded by a short header at the slowest rate, which names the rate
+ * the message follows at, so an AdaptiveReceiver with the same list of rates can decode it.
+ * The rate is chosen by a RateSelector from the quality of signals received from the
+ * other station, as both directions of a half-duplex link share the same channel.
+ */
+@SuppressWarnings("unused")
+public class AdaptiveTransmitter {
+    /**
+     * Number of bytes in a header payload (rate index and baud rate)
+     */
+    static final int HEADER_SIZE = 3;
+
+    private final RateSelector selector;
+    private final Transmitter[] transmitters;
+    private final Log log;
+
+    /**
+     * Constructs an AdaptiveTransmitter that writes to the given sink, with the given rate selector
+     * and log level.
+     * @param sink Sink to write frames to
+     * @param selector Selector to choose rates with
+     * @param log_level Log level for this AdaptiveTransmitter
+     */
+    public AdaptiveTransmitter(SampleSink sink, RateSelector selector, Log.Level log_level) {
+        this.selector = selector;
+        List<ModemConfig> rates = selector.getRates();
+        transmitters = new Transmitter[rates.size()];
+        for(int i = 0; i < transmitters.length; i++) {
+            transmitters[i] = new Transmitter(sink, rates.get(i), log_level);
+        }
+        log = new Log("AdaptiveTransmitter", log_level);
+    }
+
+    /**
+     * Constructs an AdaptiveTransmitter that writes to the given sink, with the given rates and log level.
+     * @param sink Sink to write frames to
+     * @param rates Configurations to choose from, from slowest to fastest, at the same sample rate
+     * @param log_level Log level for this AdaptiveTransmitter
+     * @throws IllegalArgumentException If the rates are invalid
+     */
+    public AdaptiveTransmitter(SampleSink sink, List<ModemConfig> rates, Log.Level log_level)
+            throws IllegalArgumentException {
+        this(sink, new RateSelector(rates), log_level);
+    }
+
+    /**
+     * Constructs an AdaptiveTransmitter that writes to the given sink, with the default rates.
+     * @param sink Sink to write frames to
+     */
+    public AdaptiveTransmitter(SampleSink sink) {
+        this(sink, RateSelector.getDefaultRates(), Log.Level.WARN);
+    }
+
+    /**
+     * Encodes and transmits the given bytes at the chosen rate, after a header naming the rate.
+     * @param data Bytes to transmit
+     */
+    public void transmit(byte[] data) {
+        int index = selector.getRateIndex();
+        int baud_rate = selector.getRate().getBaudRate();
+        log.info(() -> "Transmitting " + data.length + " bytes at " + baud_rate + " baud.");
+        byte[] header = { (byte) index, (byte) (baud_rate >> 8), (byte) baud_rate };
+        transmitters[0].transmit(Packets.encode(header));
+        transmitters[index].transmit(data);
+    }
+
+    /**
+     * Updates the chosen rate from the quality of a signal received from the other station.
+     * @param quality Quality of the received signal
+     * @return Chosen configuration
+     */
+    public ModemConfig update(LinkQuality quality) {
+        ModemConfig rate = selector.update(quality);
+        log.debug(() -> "Link quality " + quality + ", chose " + rate.getBaudRate() + " baud.");
+        return rate;
+    }
+
+    /**
+     * @return Selector choosing the rate of this AdaptiveTransmitter
+     */
+    public RateSelector getRateSelector() { return selector; }
+
+    /**
+     * Closes this AdaptiveTransmitter's sample sink.
+     */
+    public void close() { transmitters[0].close(); }
+}
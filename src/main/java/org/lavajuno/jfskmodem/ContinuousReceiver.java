@@ -0,0 +1,288 @@
+package org.lavajuno.jfskmodem;
+
+import org.lavajuno.jfskmodem.detector.SignalLevel;
+import org.lavajuno.jfskmodem.detector.SymbolDetector;
+import org.lavajuno.jfskmodem.ecc.ErrorCorrection;
+import org.lavajuno.jfskmodem.ecc.Hamming;
+import org.lavajuno.jfskmodem.io.LoopbackPipe;
+import org.lavajuno.jfskmodem.io.SampleSink;
+import org.lavajuno.jfskmodem.io.SampleSource;
+import org.lavajuno.jfskmodem.io.SoundInput;
+import org.lavajuno.jfskmodem.log.Log;
+import org.lavajuno.jfskmodem.metrics.ModemMetrics;
+
+import javax.sound.sampled.LineUnavailableException;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ContinuousReceiver listens continuously and decodes every signal it hears.
+ * A capture thread keeps the source running and copies its frames into a preallocated
+ * ring buffer, so no frames are lost between signals. A decode thread detects and
+ * decodes signals from the ring buffer, including back-to-back signals, and queues
+ * each decoded message.
+ */
+public class ContinuousReceiver {
+    private static final int BLOCK_FRAMES = 1024;
+    private static final int RING_TIME = 4; // (s)
+    private static final int MAX_QUEUED_MESSAGES = 1024;
+    private static final byte[] END_OF_SOURCE = new byte[0];
+
+    private final SampleSource source;
+    private final LoopbackPipe ring;
+    private final Demodulator demodulator;
+    private final BlockingQueue<byte[]> messages;
+    private final Log log;
+
+    private final Thread capture_thread;
+    private final Thread decode_thread;
+    private volatile ModemMetrics metrics;
+    private volatile boolean running;
+    private byte[] rec_bytes;
+    private int n_rec_bytes;
+
+    /**
+     * Constructs a ContinuousReceiver that reads from the given source, with the given configuration,
+     * signal level tracker, error correction, and log level.
+     * @param source Source to read frames from
+     * @param config Modem configuration for this ContinuousReceiver
+     * @param level Signal level tracker to recognize signals with
+     * @param ecc Error correction code the data was encoded with
+     * @param log_level Log level for this ContinuousReceiver
+     */
+    public ContinuousReceiver(SampleSource source, ModemConfig config, SignalLevel level, ErrorCorrection ecc,
+                              Log.Level log_level) {
+        this.source = source;
+        ring = new LoopbackPipe(config.getSampleRate() * RING_TIME);
+        demodulator = new Demodulator(config, level, SymbolDetector.create(config), ecc, this::onByte, log_level);
+        /* One more slot than messages, so that END_OF_SOURCE can always be queued */
+        messages = new LinkedBlockingQueue<>(MAX_QUEUED_MESSAGES + 1);
+        log = new Log("ContinuousReceiver", log_level);
+        rec_bytes = new byte[256];
+        capture_thread = new Thread(this::capture, "jfskmodem-capture");
+        capture_thread.setDaemon(true);
+        decode_thread = new Thread(this::decode, "jfskmodem-decode");
+        decode_thread.setDaemon(true);
+    }
+
+    /**
+     * Constructs a ContinuousReceiver that reads from the given source, with the given configuration,
+     * signal level tracker, and log level, for data encoded with Hamming(7,4).
+     * @param source Source to read frames from
+     * @param config Modem configuration for this ContinuousReceiver
+     * @param level Signal level tracker to recognize signals with
+     * @param log_level Log level for this ContinuousReceiver
+     */
+    public ContinuousReceiver(SampleSource source, ModemConfig config, SignalLevel level, Log.Level log_level) {
+        this(source, config, level, new Hamming(), log_level);
+    }
+
+    /**
+     * Constructs a ContinuousReceiver that reads from the given source, with the given configuration,
+     * error correction, and log level, using adaptive sensitivity parameters.
+     * @param source Source to read frames from
+     * @param config Modem configuration for this ContinuousReceiver
+     * @param ecc Error correction code the data was encoded with
+     * @param log_level Log level for this ContinuousReceiver
+     */
+    public ContinuousReceiver(SampleSource source, ModemConfig config, ErrorCorrection ecc, Log.Level log_level) {
+        this(source, config, new SignalLevel(config), ecc, log_level);
+    }
+
+    /**
+     * Constructs a ContinuousReceiver that reads from the given source, with the given baud rate,
+     * sensitivity parameters, and log level.
+     * @param source Source to read frames from
+     * @param baud_rate Baud rate for this ContinuousReceiver
+     * @param signal_start_threshold Amplitude threshold to recognize the start of a signal
+     * @param signal_end_threshold Amplitude threshold to recognize the end of a signal
+     * @param log_level Log level for this ContinuousReceiver
+     */
+    public ContinuousReceiver(SampleSource source, int baud_rate, int signal_start_threshold,
+                              int signal_end_threshold, Log.Level log_level) {
+        this(source, new ModemConfig(baud_rate),
+                new SignalLevel(ModemConfig.DEFAULT_SAMPLE_RATE, signal_start_threshold, signal_end_threshold, false),
+                log_level);
+    }
+
+    /**
+     * Constructs a ContinuousReceiver that reads from the given source, with the given configuration
+     * and log level, using adaptive sensitivity parameters.
+     * @param source Source to read frames from
+     * @param config Modem configuration for this ContinuousReceiver
+     * @param log_level Log level for this ContinuousReceiver
+     */
+    public ContinuousReceiver(SampleSource source, ModemConfig config, Log.Level log_level) {
+        this(source, config, new SignalLevel(config), log_level);
+    }
+
+    /**
+     * Constructs a ContinuousReceiver that reads from the given source, with the given baud rate,
+     * using adaptive sensitivity parameters.
+     * @param source Source to read frames from
+     * @param baud_rate Baud rate for this ContinuousReceiver
+     */
+    public ContinuousReceiver(SampleSource source, int baud_rate) {
+        this(source, baud_rate, Log.Level.WARN);
+    }
+
+    /**
+     * Constructs a ContinuousReceiver that reads from the given source, with the given baud rate
+     * and log level, using adaptive sensitivity parameters.
+     * @param source Source to read frames from
+     * @param baud_rate Baud rate for this ContinuousReceiver
+     * @param log_level Log level for this ContinuousReceiver
+     */
+    public ContinuousReceiver(SampleSource source, int baud_rate, Log.Level log_level) {
+        this(source, new ModemConfig(baud_rate), log_level);
+    }
+
+    /**
+     * Constructs a ContinuousReceiver that listens on the default audio input device,
+     * with the given baud rate and log level, using adaptive sensitivity parameters.
+     * @param baud_rate Baud rate for this ContinuousReceiver
+     * @param log_level Log level for this ContinuousReceiver
+     * @throws LineUnavailableException If the audio input line could not be created
+     */
+    public ContinuousReceiver(int baud_rate, Log.Level log_level) throws LineUnavailableException {
+        this(new SoundInput(), baud_rate, log_level);
+    }
+
+    /**
+     * Starts listening.
+     * @throws IllegalStateException If this ContinuousReceiver has already been started
+     */
+    public synchronized void start() {
+        if(running || capture_thread.isAlive()) {
+            throw new IllegalStateException("ContinuousReceiver already started.");
+        }
+        running = true;
+        capture_thread.start();
+        decode_thread.start();
+        log.info("Listening continuously...");
+    }
+
+    /**
+     * Sets the metrics this ContinuousReceiver records to. Must be called before start().
+     * @param metrics Metrics to record to, or null to record none
+     */
+    public void setMetrics(ModemMetrics metrics) {
+        this.metrics = metrics;
+        demodulator.setMetrics(metrics);
+    }
+
+    /**
+     * Blocks until the next message has been decoded.
+     * @return Decoded bytes, or null if the source has ended and all messages have been taken
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public byte[] take() throws InterruptedException {
+        byte[] message = messages.take();
+        if(message == END_OF_SOURCE) {
+            messages.offer(END_OF_SOURCE);
+            return null;
+        }
+        return message;
+    }
+
+    /**
+     * Waits up to the given time for the next message to be decoded.
+     * @param timeout Maximum time to wait
+     * @param unit Unit of the timeout
+     * @return Decoded bytes, or null if the timeout is reached, or the source has ended
+     *         and all messages have been taken
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public byte[] poll(long timeout, TimeUnit unit) throws InterruptedException {
+        byte[] message = messages.poll(timeout, unit);
+        if(message == END_OF_SOURCE) {
+            messages.offer(END_OF_SOURCE);
+            return null;
+        }
+        return message;
+    }
+
+    /**
+     * Stops listening and closes the source.
+     */
+    public void close() {
+        running = false;
+        source.close();
+        ring.getSource().close();
+        capture_thread.interrupt();
+        decode_thread.interrupt();
+        try {
+            if(capture_thread.isAlive()) { capture_thread.join(); }
+            if(decode_thread.isAlive()) { decode_thread.join(); }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.debug("Closed.");
+    }
+
+    /**
+     * Copies frames from the source into the ring buffer until the source ends or is closed.
+     */
+    private void capture() {
+        SampleSink ring_in = ring.getSink();
+        short[] block = new short[BLOCK_FRAMES];
+        source.start();
+        ModemMetrics metrics = this.metrics;
+        while(running) {
+            long read_start = metrics != null ? System.nanoTime() : 0;
+            int n_frames = source.read(block, 0, block.length);
+            if(metrics != null) { metrics.getRecordTime().recordSince(read_start); }
+            if(n_frames < 0) { break; } /* End of source */
+            ring_in.write(block, 0, n_frames);
+        }
+        ring_in.close();
+    }
+
+    /**
+     * Decodes signals from the ring buffer until the source ends or is closed.
+     */
+    private void decode() {
+        SampleSource ring_out = ring.getSource();
+        short[] block = new short[BLOCK_FRAMES];
+        int n_frames;
+        while(running && (n_frames = ring_out.read(block, 0, block.length)) >= 0) {
+            /* Frames after the end of a signal may start the next one */
+            for(int i = 0; i < n_frames;) {
+                i += demodulator.feed(block, i, n_frames - i);
+                if(demodulator.isDone()) { deliver(); }
+            }
+        }
+        demodulator.end();
+        if(demodulator.isDone()) { deliver(); }
+        messages.offer(END_OF_SOURCE);
+    }
+
+    /**
+     * Queues the current message and waits for the next signal.
+     */
+    private void deliver() {
+        if(n_rec_bytes > 0) {
+            /* Only this thread adds to the queue, so the last slot stays free for END_OF_SOURCE */
+            if(messages.remainingCapacity() > 1) {
+                messages.offer(Arrays.copyOf(rec_bytes, n_rec_bytes));
+            } else {
+                log.warn("Message queue full. Dropped a message.");
+            }
+        }
+        n_rec_bytes = 0;
+        demodulator.reset();
+    }
+
+    /**
+     * Appends a decoded byte to the current message.
+     * @param data Decoded byte
+     */
+    private void onByte(byte data) {
+        if(n_rec_bytes == rec_bytes.length) {
+            rec_bytes = Arrays.copyOf(rec_bytes, rec_bytes.length * 2);
+        }
+        rec_bytes[n_rec_bytes++] = data;
+    }
+}
@@ -0,0 +1,730 @@
+package org.lavajuno.jfskmodem;
+
+import org.lavajuno.jfskmodem.detector.ClockRecovery;
+import org.lavajuno.jfskmodem.detector.CorrelationDetector;
+import org.lavajuno.jfskmodem.detector.SignalLevel;
+import org.lavajuno.jfskmodem.detector.SymbolDetector;
+import org.lavajuno.jfskmodem.ecc.ErrorCorrection;
+import org.lavajuno.jfskmodem.ecc.Hamming;
+import org.lavajuno.jfskmodem.log.Log;
+import org.lavajuno.jfskmodem.metrics.ModemMetrics;
+import org.lavajuno.jfskmodem.waveforms.Waveforms;
+
+import java.util.Arrays;
+
+/**
+ * Demodulator decodes a signal incrementally as it is fed blocks of frames.
+ * Soft bits from the detector are collected into blocks of the error correction code,
+ * and each decoded byte is passed to a listener as soon as its block has been received,
+ * so decoding keeps pace with recording. With the default Hamming code, each block
+ * is a single byte. Signals are recognized by the amplitude thresholds of a SignalLevel,
+ * which is kept across signals so that adaptive thresholds follow the noise floor.
+ * After the clock is recovered from the training sequence, an early-late loop keeps tracking
+ * the symbol timing, and symbols are interpolated at fractional frame offsets, so signals
+ * from a sender whose sample rate is slightly off can be decoded to any length.
+ */
+public class Demodulator {
+    /**
+     * Listener receives bytes from a Demodulator as they are decoded.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * Called when a byte has been decoded.
+         * @param data Decoded byte
+         */
+        void onByte(byte data);
+    }
+
+    private enum State {
+        IDLE, CLOCK, TRAINING, DATA, DONE
+    }
+
+    private static final int DEFAULT_CLOCK_SCAN_WIDTH = 4096;
+
+    /* Gains of the timing loop for the phase and the rate of the symbol clock */
+    private static final double TIMING_PHASE_GAIN = 0.1;
+    private static final double TIMING_RATE_GAIN = 0.002;
+
+    /**
+     * Largest correction of the symbol period by the timing loop, as a fraction of the period
+     */
+    private static final double MAX_TIMING_DRIFT = 0.01;
+
+    private final int BIT_FRAMES;
+    private final double SYMBOL_PERIOD;
+    private final int EARLY_LATE;
+    private final boolean INTERPOLATE;
+    private final int BAUD_RATE;
+    private final int BITS_PER_SYMBOL;
+    private final int MARK_SYMBOL;
+    private final int BLOCK_BITS;
+
+    private final ModemConfig config;
+    private final SymbolDetector detector;
+    private final SymbolDetector timing_detector;
+    private final ErrorCorrection ecc;
+    private final SignalLevel level;
+    private final ClockRecovery clock_recovery;
+    private final Listener listener;
+    private final Log log;
+    private ModemMetrics metrics;
+
+    private final byte[] training_bits;
+    private final float[] soft_bits;
+    private final float[] timing_bits;
+    private final short[] symbol_frames;
+    private final byte[] block;
+    private short[] pending;
+    private int pending_start;
+    private int pending_end;
+    private State state;
+    private int n_bits;
+    private int n_bytes;
+    private int n_soft_bits;
+    private int n_corrections;
+    private int n_leftover;
+    private double timing;
+    private double timing_drift;
+    private boolean level_checked;
+    private boolean known_timing;
+    private int n_training_left;
+    private double margin_sum;
+    private int n_margins;
+
+    /**
+     * Constructs a Demodulator with the given configuration, signal level tracker,
+     * detector, error correction, clock scan width, and log level.
+     * @param config Modem configuration for this Demodulator
+     * @param level Signal level tracker to recognize signals with
+     * @param detector Detector to decode symbols with
+     * @param ecc Error correction code the data was encoded with
+     * @param clock_scan_width Number of frames at the start of a signal to scan for clock recovery
+     * @param listener Listener to pass decoded bytes to
+     * @param log_level Log level for this Demodulator
+     * @throws IllegalArgumentException If the detector does not match the configuration,
+     *                                  or the clock scan width is too short
+     */
+    public Demodulator(ModemConfig config, SignalLevel level, SymbolDetector detector, ErrorCorrection ecc,
+                       int clock_scan_width, Listener listener, Log.Level log_level)
+            throws IllegalArgumentException {
+        clock_recovery = new ClockRecovery(Waveforms.getTrainingCycleFrames(config), clock_scan_width);
+        BIT_FRAMES = config.getSymbolFrames();
+        SYMBOL_PERIOD = (double) config.getSampleRate() / config.getBaudRate();
+        EARLY_LATE = Math.max(1, BIT_FRAMES / 4);
+        /* Cubic interpolation passes tones below a quarter of the sample rate almost unchanged */
+        INTERPOLATE = config.getMarkFrequency() * 4 <= config.getSampleRate()
+                && config.getSpaceFrequency() * 4 <= config.getSampleRate();
+        BAUD_RATE = config.getBaudRate();
+        BITS_PER_SYMBOL = config.getBitsPerSymbol();
+        MARK_SYMBOL = config.getMarkSymbol();
+        this.config = config;
+        if(detector.getSymbolFrames() != BIT_FRAMES) {
+            throw new IllegalArgumentException("Detector does not match baud rate.");
+        }
+        if(detector.getTones() != config.getTones()) {
+            throw new IllegalArgumentException("Detector does not match number of tones.");
+        }
+        this.level = level;
+        this.detector = detector;
+        /* Timing is tracked with the default detector, whose margins do not depend on tone phase */
+        timing_detector = SymbolDetector.create(config);
+        this.ecc = ecc;
+        this.listener = listener;
+        log = new Log("Demodulator", log_level);
+        training_bits = new byte[4];
+        BLOCK_BITS = ecc.getEncodedBits(ecc.getBlockBytes());
+        /* A symbol may carry bits past the end of a block */
+        soft_bits = new float[BLOCK_BITS + BITS_PER_SYMBOL];
+        block = new byte[ecc.getBlockBytes()];
+        timing_bits = new float[BITS_PER_SYMBOL];
+        symbol_frames = new short[BIT_FRAMES + 2 * EARLY_LATE];
+        pending = new short[clock_scan_width * 2];
+        reset();
+    }
+
+    /**
+     * Constructs a Demodulator with the given configuration, fixed sensitivity parameters,
+     * detector, error correction, clock scan width, and log level.
+     * @param config Modem configuration for this Demodulator
+     * @param signal_start_threshold Amplitude threshold to recognize the start of a signal
+     * @param signal_end_threshold Amplitude threshold to recognize the end of a signal
+     * @param detector Detector to decode symbols with
+     * @param ecc Error correction code the data was encoded with
+     * @param clock_scan_width Number of frames at the start of a signal to scan for clock recovery
+     * @param listener Listener to pass decoded bytes to
+     * @param log_level Log level for this Demodulator
+     * @throws IllegalArgumentException If the detector does not match the configuration,
+     *                                  or the clock scan width is too short
+     */
+    public Demodulator(ModemConfig config, int signal_start_threshold, int signal_end_threshold,
+                       SymbolDetector detector, ErrorCorrection ecc, int clock_scan_width,
+                       Listener listener, Log.Level log_level) throws IllegalArgumentException {
+        this(config, new SignalLevel(config, signal_start_threshold, signal_end_threshold), detector, ecc,
+                clock_scan_width, listener, log_level);
+    }
+
+    /**
+     * Constructs a Demodulator with the given configuration, signal level tracker,
+     * detector, error correction, and log level.
+     * @param config Modem configuration for this Demodulator
+     * @param level Signal level tracker to recognize signals with
+     * @param detector Detector to decode symbols with
+     * @param ecc Error correction code the data was encoded with
+     * @param listener Listener to pass decoded bytes to
+     * @param log_level Log level for this Demodulator
+     * @throws IllegalArgumentException If the detector does not match the configuration
+     */
+    public Demodulator(ModemConfig config, SignalLevel level, SymbolDetector detector, ErrorCorrection ecc,
+                       Listener listener, Log.Level log_level) throws IllegalArgumentException {
+        this(config, level, detector, ecc, getDefaultClockScanWidth(config), listener, log_level);
+    }
+
+    /**
+     * Constructs a Demodulator with the given configuration, sensitivity parameters,
+     * detector, clock scan width, and log level, for data encoded with Hamming(7,4).
+     * @param config Modem configuration for this Demodulator
+     * @param signal_start_threshold Amplitude threshold to recognize the start of a signal
+     * @param signal_end_threshold Amplitude threshold to recognize the end of a signal
+     * @param detector Detector to decode symbols with
+     * @param clock_scan_width Number of frames at the start of a signal to scan for clock recovery
+     * @param listener Listener to pass decoded bytes to
+     * @param log_level Log level for this Demodulator
+     * @throws IllegalArgumentException If the detector does not match the configuration,
+     *                                  or the clock scan width is too short
+     */
+    public Demodulator(ModemConfig config, int signal_start_threshold, int signal_end_threshold,
+                       SymbolDetector detector, int clock_scan_width, Listener listener, Log.Level log_level)
+            throws IllegalArgumentException {
+        this(config, signal_start_threshold, signal_end_threshold, detector, new Hamming(),
+                clock_scan_width, listener, log_level);
+    }
+
+    /**
+     * Constructs a Demodulator with the given configuration, sensitivity parameters,
+     * detector, error correction, and log level.
+     * @param config Modem configuration for this Demodulator
+     * @param signal_start_threshold Amplitude threshold to recognize the start of a signal
+     * @param signal_end_threshold Amplitude threshold to recognize the end of a signal
+     * @param detector Detector to decode symbols with
+     * @param ecc Error correction code the data was encoded with
+     * @param listener Listener to pass decoded bytes to
+     * @param log_level Log level for this Demodulator
+     * @throws IllegalArgumentException If the detector does not match the configuration
+     */
+    public Demodulator(ModemConfig config, int signal_start_threshold, int signal_end_threshold,
+                       SymbolDetector detector, ErrorCorrection ecc, Listener listener, Log.Level log_level)
+            throws IllegalArgumentException {
+        this(config, signal_start_threshold, signal_end_threshold, detector, ecc,
+                getDefaultClockScanWidth(config), listener, log_level);
+    }
+
+    /**
+     * Constructs a Demodulator with the given configuration, sensitivity parameters,
+     * detector, and log level, for data encoded with Hamming(7,4).
+     * @param config Modem configuration for this Demodulator
+     * @param signal_start_threshold Amplitude threshold to recognize the start of a signal
+     * @param signal_end_threshold Amplitude threshold to recognize the end of a signal
+     * @param detector Detector to decode symbols with
+     * @param listener Listener to pass decoded bytes to
+     * @param log_level Log level for this Demodulator
+     * @throws IllegalArgumentException If the detector does not match the configuration
+     */
+    public Demodulator(ModemConfig config, int signal_start_threshold, int signal_end_threshold,
+                       SymbolDetector detector, Listener listener, Log.Level log_level)
+            throws IllegalArgumentException {
+        this(config, signal_start_threshold, signal_end_threshold, detector, new Hamming(), listener, log_level);
+    }
+
+    /**
+     * Constructs a Demodulator with the given configuration, error correction, and log level,
+     * using the configuration's default detector and adaptive sensitivity parameters.
+     * @param config Modem configuration for this Demodulator
+     * @param ecc Error correction code the data was encoded with
+     * @param listener Listener to pass decoded bytes to
+     * @param log_level Log level for this Demodulator
+     */
+    public Demodulator(ModemConfig config, ErrorCorrection ecc, Listener listener, Log.Level log_level) {
+        this(config, new SignalLevel(config), SymbolDetector.create(config), ecc, listener, log_level);
+    }
+
+    /**
+     * Constructs a Demodulator with the given configuration, detector, and log level,
+     * using adaptive sensitivity parameters, for data encoded with Hamming(7,4).
+     * @param config Modem configuration for this Demodulator
+     * @param detector Detector to decode symbols with
+     * @param listener Listener to pass decoded bytes to
+     * @param log_level Log level for this Demodulator
+     * @throws IllegalArgumentException If the detector does not match the configuration
+     */
+    public Demodulator(ModemConfig config, SymbolDetector detector, Listener listener, Log.Level log_level)
+            throws IllegalArgumentException {
+        this(config, new SignalLevel(config), detector, new Hamming(), listener, log_level);
+    }
+
+    /**
+     * Constructs a Demodulator with the given configuration and log level,
+     * using the configuration's default detector and adaptive sensitivity parameters.
+     * @param config Modem configuration for this Demodulator
+     * @param listener Listener to pass decoded bytes to
+     * @param log_level Log level for this Demodulator
+     */
+    public Demodulator(ModemConfig config, Listener listener, Log.Level log_level) {
+        this(config, SymbolDetector.create(config), listener, log_level);
+    }
+
+    /**
+     * Constructs a Demodulator with the given baud rate, sensitivity parameters,
+     * bit detector, clock scan width, and log level.
+     * @param baud_rate Baud rate for this Demodulator
+     * @param signal_start_threshold Amplitude threshold to recognize the start of a signal
+     * @param signal_end_threshold Amplitude threshold to recognize the end of a signal
+     * @param detector Detector to decode symbols with
+     * @param clock_scan_width Number of frames at the start of a signal to scan for clock recovery
+     * @param listener Listener to pass decoded bytes to
+     * @param log_level Log level for this Demodulator
+     * @throws IllegalArgumentException If the baud rate is not a factor of 48000,
+     *                                  does not match the detector,
+     *                                  or the clock scan width is too short
+     */
+    public Demodulator(int baud_rate, int signal_start_threshold, int signal_end_threshold,
+                       SymbolDetector detector, int clock_scan_width, Listener listener, Log.Level log_level)
+            throws IllegalArgumentException {
+        this(new ModemConfig(baud_rate), signal_start_threshold, signal_end_threshold, detector,
+                clock_scan_width, listener, log_level);
+    }
+
+    /**
+     * Constructs a Demodulator with the given baud rate, sensitivity parameters,
+     * bit detector, and log level.
+     * @param baud_rate Baud rate for this Demodulator
+     * @param signal_start_threshold Amplitude threshold to recognize the start of a signal
+     * @param signal_end_threshold Amplitude threshold to recognize the end of a signal
+     * @param detector Detector to decode symbols with
+     * @param listener Listener to pass decoded bytes to
+     * @param log_level Log level for this Demodulator
+     * @throws IllegalArgumentException If the baud rate is not a factor of 48000,
+     *                                  or does not match the detector
+     */
+    public Demodulator(int baud_rate, int signal_start_threshold, int signal_end_threshold,
+                       SymbolDetector detector, Listener listener, Log.Level log_level)
+            throws IllegalArgumentException {
+        this(new ModemConfig(baud_rate), signal_start_threshold, signal_end_threshold, detector,
+                listener, log_level);
+    }
+
+    /**
+     * Constructs a Demodulator with the given baud rate, sensitivity parameters, and log level.
+     * @param baud_rate Baud rate for this Demodulator
+     * @param signal_start_threshold Amplitude threshold to recognize the start of a signal
+     * @param signal_end_threshold Amplitude threshold to recognize the end of a signal
+     * @param listener Listener to pass decoded bytes to
+     * @param log_level Log level for this Demodulator
+     * @throws IllegalArgumentException If the baud rate is not a factor of 48000
+     */
+    public Demodulator(int baud_rate, int signal_start_threshold, int signal_end_threshold,
+                       Listener listener, Log.Level log_level) throws IllegalArgumentException {
+        this(baud_rate, signal_start_threshold, signal_end_threshold,
+                new CorrelationDetector(baud_rate), listener, log_level);
+    }
+
+    /**
+     * Resets this Demodulator to wait for the start of a new signal.
+     * The signal level tracker is not reset.
+     */
+    public void reset() {
+        state = State.IDLE;
+        pending_start = 0;
+        pending_end = 0;
+        n_bits = 0;
+        n_bytes = 0;
+        n_soft_bits = 0;
+        n_corrections = 0;
+        n_leftover = 0;
+        timing = 0;
+        timing_drift = 0;
+        level_checked = false;
+        known_timing = false;
+        n_training_left = 0;
+        margin_sum = 0;
+        n_margins = 0;
+        Arrays.fill(training_bits, (byte) 0);
+    }
+
+    /**
+     * Starts decoding a signal whose timing is known (such as a simulated one) from the next frame fed,
+     * rather than recognizing it by its amplitude, recovering its clock from the training sequence,
+     * and waiting for the termination of the training sequence. The timing loop still tracks
+     * the training sequence, and the signal is decoded until end() is called, so only the detector,
+     * timing loop and error correction limit how much of it is received.
+     * @param n_training_symbols Number of symbols of the training sequence (and its termination)
+     * @throws IllegalArgumentException If there are fewer than two training symbols
+     */
+    public void startKnownSignal(int n_training_symbols) throws IllegalArgumentException {
+        if(n_training_symbols < 2) {
+            throw new IllegalArgumentException("Invalid number of training symbols.");
+        }
+        reset();
+        known_timing = true;
+        /* Every symbol needs EARLY_LATE + 1 frames before it, so skip the first training symbol */
+        timing = SYMBOL_PERIOD;
+        n_training_left = n_training_symbols - 1;
+        if(metrics != null) { metrics.getSignals().increment(); }
+        state = State.TRAINING;
+    }
+
+    /**
+     * @return True if a signal has been detected and is being decoded
+     */
+    public boolean isReceiving() { return state != State.IDLE && state != State.DONE; }
+
+    /**
+     * @return True if a signal has been decoded to its end
+     */
+    public boolean isDone() { return state == State.DONE; }
+
+    /**
+     * @return Number of bytes decoded from the current signal
+     */
+    public int getDecodedBytes() { return n_bytes; }
+
+    /**
+     * @return Number of bits corrected by error correction in the current signal
+     */
+    public int getCorrectedBits() { return n_corrections; }
+
+    /**
+     * @return Signal level tracker this Demodulator recognizes signals with
+     */
+    public SignalLevel getSignalLevel() { return level; }
+
+    /**
+     * Sets the metrics this Demodulator records to. Must not be called while feeding frames.
+     * @param metrics Metrics to record to, or null to record none
+     */
+    public void setMetrics(ModemMetrics metrics) { this.metrics = metrics; }
+
+    /**
+     * Estimates the quality of the current signal. The SNR is estimated from the detector's
+     * soft decisions over the training sequence and data, and the bit error rate from the
+     * number of bits corrected by error correction.
+     * @return Link quality of the current signal
+     */
+    public LinkQuality getLinkQuality() {
+        double snr = LinkQuality.MAX_SNR;
+        if(n_margins > 0) {
+            /*
+             * Soft decisions are (E1 - E0) / (E1 + E0) for the energies of the tones for 1 and 0.
+             * With signal energy S in one and noise energy N in both, their mean margin is
+             * about S / (S + 2N), so S / N is about 2m / (1 - m).
+             */
+            double mean = margin_sum / n_margins;
+            if(mean < 1) { snr = Math.min(snr, 2 * mean / (1 - mean)); }
+        }
+        return new LinkQuality(BAUD_RATE, snr, n_bits > 0 ? (double) n_corrections / n_bits : 0, n_margins);
+    }
+
+    /**
+     * Feeds a block of frames into this Demodulator.
+     * If the signal ends within the block, the frames after its end are not consumed,
+     * and can be fed again after reset() to decode a following signal.
+     * Frames fed after the end of a signal are ignored until reset() is called.
+     * @param frames Frames to feed
+     * @param offset Index of the first frame
+     * @param length Number of frames
+     * @return Number of frames consumed
+     */
+    public int feed(short[] frames, int offset, int length) {
+        if(length <= 0 || state == State.DONE) { return 0; }
+        if(metrics != null) { metrics.getFramesReceived().add(length); }
+        int amplitude = Waveforms.getAmplitude(frames, offset, length);
+        if(state == State.IDLE) {
+            if(amplitude <= level.getStartThreshold()) {
+                level.updateNoise(amplitude, length);
+                return length;
+            }
+            log.debug(() -> "Signal start detected. (Noise floor " + level.getNoiseFloor() + ")");
+            /* Skip the frames before the signal, which clock recovery might not scan past */
+            int onset = findOnset(frames, offset, length);
+            level.startSignal(Waveforms.getAmplitude(frames, onset, offset + length - onset));
+            if(metrics != null) { metrics.getSignals().increment(); }
+            state = State.CLOCK;
+            append(frames, onset, offset + length - onset);
+        } else {
+            if(state == State.CLOCK) {
+                level.updateSignal(amplitude, length);
+                if(level.isSignalEnd(amplitude)) {
+                    log.warn("Could not recover clock from received signal. (Not enough information)");
+                    finish();
+                    return length;
+                }
+            }
+            append(frames, offset, length);
+        }
+        process();
+        if(state == State.DONE) {
+            int n_unconsumed = Math.min(n_leftover, length);
+            n_leftover = 0;
+            return length - n_unconsumed;
+        }
+        return length;
+    }
+
+    /**
+     * Feeds an array of frames into this Demodulator.
+     * @param frames Frames to feed
+     * @return Number of frames consumed
+     */
+    public int feed(short[] frames) { return feed(frames, 0, frames.length); }
+
+    /**
+     * Ends the current signal, for when no more frames will be fed.
+     */
+    public void end() {
+        if(state != State.IDLE && state != State.DONE) { finish(); }
+    }
+
+    /**
+     * Decodes as many pending frames as possible.
+     */
+    private void process() {
+        if(state == State.CLOCK) {
+            if(pending_end - pending_start < clock_recovery.getScanWidth()) { return; }
+            long clock_start = metrics != null ? System.nanoTime() : 0;
+            double clock_offset = clock_recovery.recover(pending, pending_start);
+            if(metrics != null) {
+                metrics.getClockTime().recordSince(clock_start);
+                metrics.getClockOffset().record(clock_offset);
+                metrics.getClockScore().record(clock_recovery.getScore());
+            }
+            log.debug(() -> "Recovered clock from signal. (Best match on frame " + clock_offset
+                    + ", score " + clock_recovery.getScore() + ")");
+            /* Every symbol needs EARLY_LATE + 1 frames before it, so skip a training symbol if needed */
+            timing = clock_offset < EARLY_LATE + 1 ? clock_offset + SYMBOL_PERIOD : clock_offset;
+            state = State.TRAINING;
+        }
+        while(state != State.DONE) {
+            double start = pending_start + timing;
+            int first = (int) start;
+            if(first + BIT_FRAMES > pending_end) { break; }
+            /* The end of a signal is checked before waiting for the frames around the symbol */
+            if(!level_checked && !known_timing) {
+                int amplitude = Waveforms.getAmplitude(pending, first, BIT_FRAMES);
+                level.updateSignal(amplitude, BIT_FRAMES);
+                if(level.isSignalEnd(amplitude)) {
+                    pending_start = first + BIT_FRAMES;
+                    finish(); // End of signal
+                    return;
+                }
+                level_checked = true;
+            }
+            if(first + BIT_FRAMES + EARLY_LATE + 2 > pending_end) { break; }
+            level_checked = false;
+            long symbol_start = metrics != null ? System.nanoTime() : 0;
+            interpolate(first - EARLY_LATE, (float) (start - first));
+            int i = EARLY_LATE;
+            double next = start + SYMBOL_PERIOD + timing_drift + trackTiming();
+            pending_start = Math.max(pending_start, Math.min((int) next - EARLY_LATE - 1, pending_end));
+            timing = next - pending_start;
+            if(state == State.TRAINING) {
+                /* The training sequence probes the channel before any data arrives */
+                detector.detectSoftBits(symbol_frames, i, config, soft_bits, 0);
+                addMargins(0);
+                int symbol = detector.detectSymbol(symbol_frames, i);
+                if(known_timing ? --n_training_left == 0
+                        : scanTraining(training_bits, (byte) (symbol == MARK_SYMBOL ? 1 : 0))) {
+                    log.debug("Training sequence terminated.");
+                    state = State.DATA; // training sequence terminated
+                }
+            } else {
+                detector.detectSoftBits(symbol_frames, i, config, soft_bits, n_soft_bits);
+                addMargins(n_soft_bits);
+                n_soft_bits += BITS_PER_SYMBOL;
+                n_bits += BITS_PER_SYMBOL;
+            }
+            if(metrics != null) { metrics.getBitTime().recordSince(symbol_start); }
+            if(n_soft_bits >= BLOCK_BITS) {
+                decodeBlock(BLOCK_BITS);
+                /* Symbols may carry bits of the next block */
+                n_soft_bits -= BLOCK_BITS;
+                System.arraycopy(soft_bits, BLOCK_BITS, soft_bits, 0, n_soft_bits);
+            }
+        }
+    }
+
+    /**
+     * Interpolates the current symbol, with EARLY_LATE frames on either side,
+     * from the pending frames into symbol_frames. Configurations with tones too near
+     * half the sample rate to interpolate are sampled at the nearest frame instead.
+     * @param first Index of the first pending frame to interpolate from
+     * @param fraction Fraction of a frame past each pending frame to interpolate at
+     */
+    private void interpolate(int first, float fraction) {
+        if(!INTERPOLATE) {
+            if(fraction >= 0.5f) { first++; }
+            fraction = 0;
+        }
+        if(fraction == 0) {
+            System.arraycopy(pending, first, symbol_frames, 0, symbol_frames.length);
+            return;
+        }
+        /* Cubic Lagrange weights for the frames before, at, after, and two after */
+        float c0 = -fraction * (fraction - 1) * (fraction - 2) / 6;
+        float c1 = (fraction + 1) * (fraction - 1) * (fraction - 2) / 2;
+        float c2 = -(fraction + 1) * fraction * (fraction - 2) / 2;
+        float c3 = (fraction + 1) * fraction * (fraction - 1) / 6;
+        for(int k = 0, i = first; k < symbol_frames.length; k++, i++) {
+            float frame = c0 * pending[i - 1] + c1 * pending[i] + c2 * pending[i + 1] + c3 * pending[i + 2];
+            symbol_frames[k] = (short) Math.max(-32768, Math.min(32767, Math.round(frame)));
+        }
+    }
+
+    /**
+     * Compares the timing detector's margins for the current symbol sampled early and late,
+     * and updates the timing loop. The window that overlaps a neighbouring symbol less
+     * has the larger margin, so the symbol clock is moved towards it.
+     * @return Correction of the start of the next symbol in frames
+     */
+    private double trackTiming() {
+        double early = getMargin(0);
+        double late = getMargin(2 * EARLY_LATE);
+        /*
+         * With EARLY_LATE a quarter symbol and clean symbols, the margins differ by about
+         * 4 / SYMBOL_PERIOD per frame of offset. Noisy symbols have smaller margins,
+         * so they move the symbol clock less.
+         */
+        double error = (late - early) / BITS_PER_SYMBOL * SYMBOL_PERIOD / 4;
+        double max_drift = SYMBOL_PERIOD * MAX_TIMING_DRIFT;
+        timing_drift = Math.max(-max_drift, Math.min(max_drift, timing_drift + error * TIMING_RATE_GAIN));
+        return error * TIMING_PHASE_GAIN;
+    }
+
+    /**
+     * Gets the timing detector's margin for a symbol in symbol_frames.
+     * @param offset Index of the first frame of the symbol
+     * @return Sum of the magnitudes of the symbol's soft bits
+     */
+    private double getMargin(int offset) {
+        timing_detector.detectSoftBits(symbol_frames, offset, config, timing_bits, 0);
+        double margin = 0;
+        for(float bit : timing_bits) { margin += Math.abs(bit); }
+        return margin;
+    }
+
+    /**
+     * Adds the soft bits of a symbol to the margin statistics.
+     * @param offset Index of the symbol's first soft bit
+     */
+    private void addMargins(int offset) {
+        for(int i = offset; i < offset + BITS_PER_SYMBOL; i++) {
+            margin_sum += Math.abs(soft_bits[i]);
+            if(metrics != null) { metrics.getBitMargin().record(Math.abs(soft_bits[i])); }
+        }
+        n_margins += BITS_PER_SYMBOL;
+    }
+
+    /**
+     * Decodes a block of soft bits and passes its bytes to the listener.
+     * @param n_block_bits Number of soft bits in the block
+     */
+    private void decodeBlock(int n_block_bits) {
+        long block_start = metrics != null ? System.nanoTime() : 0;
+        int length = ecc.getDecodedLength(n_block_bits);
+        int corrections = ecc.decodeBlock(soft_bits, 0, n_block_bits, block, 0);
+        n_corrections += corrections;
+        n_bytes += length;
+        for(int i = 0; i < length; i++) { listener.onByte(block[i]); }
+        if(metrics != null) {
+            metrics.getByteTime().recordSince(block_start);
+            metrics.getBytesReceived().add(length);
+            metrics.getCorrectedBits().add(corrections);
+            if(length > 0) { metrics.getCorrectionsPerByte().record((double) corrections / length); }
+        }
+    }
+
+    /**
+     * Finds where a signal starts in the block of frames it was recognized in: one symbol
+     * before the first symbol-long section louder than halfway from the noise floor to the
+     * loudest section. Short sections of noise often exceed the start threshold, but not
+     * a level set by the signal itself.
+     * @param frames Frames of the block
+     * @param offset Index of the first frame of the block
+     * @param length Number of frames in the block
+     * @return Index of the first frame of the signal
+     */
+    private int findOnset(short[] frames, int offset, int length) {
+        int end = offset + length;
+        int peak = 0;
+        for(int i = offset; i < end; i += BIT_FRAMES) {
+            peak = Math.max(peak, Waveforms.getAmplitude(frames, i, Math.min(BIT_FRAMES, end - i)));
+        }
+        int threshold = (level.getNoiseFloor() + peak) / 2;
+        for(int i = offset; i < end; i += BIT_FRAMES) {
+            if(Waveforms.getAmplitude(frames, i, Math.min(BIT_FRAMES, end - i)) > threshold) {
+                return Math.max(offset, i - BIT_FRAMES);
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Gets the default clock scan width for a configuration: 4096 frames at 48000 Hz
+     * (scaled with the sample rate), and at least four symbols.
+     * @param config Modem configuration
+     * @return Default clock scan width
+     */
+    private static int getDefaultClockScanWidth(ModemConfig config) {
+        return Math.max(DEFAULT_CLOCK_SCAN_WIDTH * config.getSampleRate() / ModemConfig.DEFAULT_SAMPLE_RATE,
+                4 * (config.getSymbolFrames() + 1));
+    }
+
+    /**
+     * Marks the end of the current signal.
+     */
+    private void finish() {
+        if(state == State.DATA && ecc.getDecodedLength(n_soft_bits) > 0) {
+            decodeBlock(n_soft_bits); // Last block is shorter
+        }
+        state = State.DONE;
+        n_leftover = pending_end - pending_start;
+        pending_start = 0;
+        pending_end = 0;
+        log.debug(() -> "Decoded " + n_bits + " bits. (Including ECC)");
+        log.debug(() -> "Decoded " + n_bytes + " bytes. (Corrected " + n_corrections + " bits)");
+    }
+
+    /**
+     * Appends frames to the pending buffer, compacting or growing it if needed
+     * @param frames Frames to append
+     * @param offset Index of the first frame
+     * @param length Number of frames
+     */
+    private void append(short[] frames, int offset, int length) {
+        int n_pending = pending_end - pending_start;
+        if(pending_end + length > pending.length) {
+            if(n_pending + length > pending.length) {
+                pending = Arrays.copyOf(pending, Math.max(pending.length * 2, n_pending + length));
+            }
+            System.arraycopy(pending, pending_start, pending, 0, n_pending);
+            pending_start = 0;
+            pending_end = n_pending;
+        }
+        System.arraycopy(frames, offset, pending, pending_end, length);
+        pending_end += length;
+    }
+
+    /**
+     * Updates a sliding window of training sequence bits with the given
+     * current bit, and returns true if the window matches the training sequence terminator.
+     * @param seq Training sequence window (byte[4])
+     * @param current_bit Current bit to push into the window
+     * @return True if the window matches the training sequence terminator
+     */
+    private static boolean scanTraining(byte[] seq, byte current_bit) {
+        for(int i = 1; i < 4; i++) {
+            seq[i - 1] = seq[i];
+        }
+        seq[3] = current_bit;
+        return seq[0] == 1 && seq[1] == 0 && seq[2] == 0 && seq[3] == 0;
+    }
+}
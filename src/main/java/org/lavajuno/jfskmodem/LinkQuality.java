@@ -0,0 +1,71 @@
+package org.lavajuno.jfskmodem;
+
+/**
+ * LinkQuality holds an estimate of the quality of a received signal:
+ * its signal-to-noise ratio at the detector, and its bit error rate before error correction.
+ * The SNR scales with the length of a symbol, so it can be projected to other baud rates
+ * on the same channel.
+ */
+public class LinkQuality {
+    /**
+     * Largest SNR reported (for signals without measurable noise)
+     */
+    public static final double MAX_SNR = 1e6;
+
+    private final int BAUD_RATE;
+    private final double SNR;
+    private final double BIT_ERROR_RATE;
+    private final int N_SAMPLES;
+
+    /**
+     * Constructs a LinkQuality.
+     * @param baud_rate Baud rate the signal was received at
+     * @param snr Signal-to-noise ratio at the detector (as a power ratio)
+     * @param bit_error_rate Fraction of received bits that were wrong
+     * @param n_samples Number of soft decisions the estimate is based on
+     */
+    public LinkQuality(int baud_rate, double snr, double bit_error_rate, int n_samples) {
+        BAUD_RATE = baud_rate;
+        SNR = snr;
+        BIT_ERROR_RATE = bit_error_rate;
+        N_SAMPLES = n_samples;
+    }
+
+    /**
+     * @return Baud rate the signal was received at
+     */
+    public int getBaudRate() { return BAUD_RATE; }
+
+    /**
+     * @return Signal-to-noise ratio at the detector (as a power ratio)
+     */
+    public double getSnr() { return SNR; }
+
+    /**
+     * @return Signal-to-noise ratio at the detector in dB
+     */
+    public double getSnrDb() { return 10 * Math.log10(SNR); }
+
+    /**
+     * Projects the SNR to another baud rate, as symbols that are twice as long
+     * collect twice the signal energy against the same noise.
+     * @param baud_rate Baud rate to project to
+     * @return Expected signal-to-noise ratio at the given baud rate
+     */
+    public double getSnrAt(int baud_rate) { return SNR * BAUD_RATE / baud_rate; }
+
+    /**
+     * @return Fraction of received bits that were wrong (as counted by error correction)
+     */
+    public double getBitErrorRate() { return BIT_ERROR_RATE; }
+
+    /**
+     * @return Number of soft decisions the estimate is based on (zero if nothing was received)
+     */
+    public int getSamples() { return N_SAMPLES; }
+
+    @Override
+    public String toString() {
+        return String.format("%d baud, SNR %.1f dB, BER %.2e", BAUD_RATE, getSnrDb(), BIT_ERROR_RATE);
+    }
+}
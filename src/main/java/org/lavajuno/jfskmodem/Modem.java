@@ -0,0 +1,229 @@
+package org.lavajuno.jfskmodem;
+
+import org.lavajuno.jfskmodem.detector.BandFilter;
+import org.lavajuno.jfskmodem.detector.SignalLevel;
+import org.lavajuno.jfskmodem.ecc.ErrorCorrection;
+import org.lavajuno.jfskmodem.ecc.Hamming;
+import org.lavajuno.jfskmodem.io.SampleSink;
+import org.lavajuno.jfskmodem.io.SampleSource;
+import org.lavajuno.jfskmodem.io.SoundInput;
+import org.lavajuno.jfskmodem.io.SoundOutput;
+import org.lavajuno.jfskmodem.log.Log;
+import org.lavajuno.jfskmodem.metrics.ModemMetrics;
+
+import javax.sound.sampled.LineUnavailableException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Modem is a full-duplex session that owns both an output and an input line, and sends and
+ * receives at the same time. Each direction has its own tone plan (such as the Bell 103
+ * originate and answer channels), and received frames pass through a BandFilter for the
+ * other station's tones, so this Modem's own transmitted tones do not reach its receiver.
+ * Messages are transmitted on the Transmitter's I/O thread, and received continuously
+ * on a ContinuousReceiver's capture and decode threads.
+ */
+@SuppressWarnings("unused")
+public class Modem {
+    private final ModemConfig tx_config;
+    private final ModemConfig rx_config;
+    private final Transmitter transmitter;
+    private final ContinuousReceiver receiver;
+    private final Log log;
+
+    /**
+     * Constructs a Modem that writes to the given sink and reads from the given source,
+     * with the given tone plans for each direction, error correction, and log level.
+     * @param source Source to read frames from
+     * @param sink Sink to write frames to
+     * @param tx_config Modem configuration to transmit with
+     * @param rx_config Modem configuration to receive with (the other station's transmit configuration)
+     * @param ecc_factory Creates the error correction code to encode and decode with (once per direction)
+     * @param log_level Log level for this Modem
+     * @throws IllegalArgumentException If the configurations have different sample rates,
+     *                                  or the transmitted tones are inside the received band
+     */
+    public Modem(SampleSource source, SampleSink sink, ModemConfig tx_config, ModemConfig rx_config,
+                 Supplier<ErrorCorrection> ecc_factory, Log.Level log_level) throws IllegalArgumentException {
+        if(tx_config.getSampleRate() != rx_config.getSampleRate()) {
+            throw new IllegalArgumentException("Invalid sample rate.");
+        }
+        BandFilter filter = new BandFilter(rx_config);
+        for(int i = 0; i < tx_config.getTones(); i++) {
+            if(filter.passes(tx_config.getToneFrequency(i))) {
+                throw new IllegalArgumentException("Invalid tone plan.");
+            }
+        }
+        this.tx_config = tx_config;
+        this.rx_config = rx_config;
+        transmitter = new Transmitter(sink, tx_config, ecc_factory.get(), log_level);
+        receiver = new ContinuousReceiver(new FilteredSource(source, filter), rx_config,
+                new SignalLevel(rx_config), ecc_factory.get(), log_level);
+        log = new Log("Modem", log_level);
+    }
+
+    /**
+     * Constructs a Modem that writes to the given sink and reads from the given source,
+     * with the given tone plans for each direction and log level, that encodes data with Hamming(7,4).
+     * @param source Source to read frames from
+     * @param sink Sink to write frames to
+     * @param tx_config Modem configuration to transmit with
+     * @param rx_config Modem configuration to receive with (the other station's transmit configuration)
+     * @param log_level Log level for this Modem
+     * @throws IllegalArgumentException If the configurations have different sample rates,
+     *                                  or the transmitted tones are inside the received band
+     */
+    public Modem(SampleSource source, SampleSink sink, ModemConfig tx_config, ModemConfig rx_config,
+                 Log.Level log_level) throws IllegalArgumentException {
+        this(source, sink, tx_config, rx_config, Hamming::new, log_level);
+    }
+
+    /**
+     * Constructs a Bell 103 Modem that writes to the given sink and reads from the given source,
+     * with the given error correction.
+     * @param source Source to read frames from
+     * @param sink Sink to write frames to
+     * @param originate True to transmit on the originate channel and receive on the answer channel,
+     *                  false for the reverse
+     * @param ecc_factory Creates the error correction code to encode and decode with (once per direction)
+     * @param log_level Log level for this Modem
+     */
+    public Modem(SampleSource source, SampleSink sink, boolean originate, Supplier<ErrorCorrection> ecc_factory,
+                 Log.Level log_level) {
+        this(source, sink, getPlan(originate), getPlan(!originate), ecc_factory, log_level);
+    }
+
+    /**
+     * Constructs a Bell 103 Modem that writes to the given sink and reads from the given source.
+     * @param source Source to read frames from
+     * @param sink Sink to write frames to
+     * @param originate True to transmit on the originate channel and receive on the answer channel,
+     *                  false for the reverse
+     * @param log_level Log level for this Modem
+     */
+    public Modem(SampleSource source, SampleSink sink, boolean originate, Log.Level log_level) {
+        this(source, sink, getPlan(originate), getPlan(!originate), log_level);
+    }
+
+    /**
+     * Constructs a Bell 103 Modem that uses the default audio input and output devices.
+     * @param originate True to transmit on the originate channel and receive on the answer channel,
+     *                  false for the reverse
+     * @param log_level Log level for this Modem
+     * @throws LineUnavailableException If the audio input or output line could not be created
+     */
+    public Modem(boolean originate, Log.Level log_level) throws LineUnavailableException {
+        this(new SoundInput(ModemConfig.DEFAULT_SAMPLE_RATE, 1, log_level),
+                new SoundOutput(ModemConfig.DEFAULT_SAMPLE_RATE, log_level), originate, log_level);
+    }
+
+    /**
+     * Sets the metrics this Modem records to. Must be called before start().
+     * @param metrics Metrics to record to, or null to record none
+     */
+    public void setMetrics(ModemMetrics metrics) {
+        transmitter.setMetrics(metrics);
+        receiver.setMetrics(metrics);
+    }
+
+    /**
+     * Starts receiving.
+     * @throws IllegalStateException If this Modem has already been started
+     */
+    public void start() {
+        receiver.start();
+        log.info(() -> "Started. (Transmitting " + tx_config + ", receiving " + rx_config + ")");
+    }
+
+    /**
+     * Encodes and transmits the given bytes, after any messages already queued,
+     * while receiving continues.
+     * @param data Bytes to transmit (not copied, so they must not be changed until the future completes)
+     * @return Future completed when the bytes have been played, which can be cancelled
+     */
+    public CompletableFuture<Void> send(byte[] data) {
+        return transmitter.transmitAsync(data);
+    }
+
+    /**
+     * Blocks until the next message has been received.
+     * @return Received bytes, or null if the source has ended and all messages have been taken
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public byte[] take() throws InterruptedException { return receiver.take(); }
+
+    /**
+     * Waits up to the given time for the next message to be received.
+     * @param timeout Maximum time to wait
+     * @param unit Unit of the timeout
+     * @return Received bytes, or null if the timeout is reached, or the source has ended
+     *         and all messages have been taken
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public byte[] poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return receiver.poll(timeout, unit);
+    }
+
+    /**
+     * @return Modem configuration this Modem transmits with
+     */
+    public ModemConfig getTransmitConfig() { return tx_config; }
+
+    /**
+     * @return Modem configuration this Modem receives with
+     */
+    public ModemConfig getReceiveConfig() { return rx_config; }
+
+    /**
+     * Stops transmitting and receiving, and closes both lines.
+     */
+    public void close() {
+        transmitter.close();
+        receiver.close();
+        log.debug("Closed.");
+    }
+
+    /**
+     * @param originate True for the originate channel, false for the answer channel
+     * @return Bell 103 ModemConfig for the channel at the default sample rate
+     */
+    private static ModemConfig getPlan(boolean originate) {
+        return originate ? ModemConfig.bell103Originate(ModemConfig.DEFAULT_SAMPLE_RATE)
+                : ModemConfig.bell103Answer(ModemConfig.DEFAULT_SAMPLE_RATE);
+    }
+
+    /**
+     * FilteredSource passes the frames of another source through a BandFilter.
+     */
+    private static class FilteredSource implements SampleSource {
+        private final SampleSource source;
+        private final BandFilter filter;
+
+        /**
+         * Constructs a FilteredSource.
+         * @param source Source to read frames from
+         * @param filter Filter to pass frames through
+         */
+        FilteredSource(SampleSource source, BandFilter filter) {
+            this.source = source;
+            this.filter = filter;
+        }
+
+        @Override
+        public int read(short[] frames, int offset, int length) {
+            int n_frames = source.read(frames, offset, length);
+            if(n_frames > 0) { filter.filter(frames, offset, n_frames); }
+            return n_frames;
+        }
+
+        @Override
+        public void start() { source.start(); }
+
+        @Override
+        public void stop() { source.stop(); }
+
+        @Override
+        public void close() { source.close(); }
+    }
+}
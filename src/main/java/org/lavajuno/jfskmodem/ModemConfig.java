@@ -0,0 +1,307 @@
+package org.lavajuno.jfskmodem;
+
+/**
+ * ModemConfig describes the signal a Transmitter sends and a Receiver expects:
+ * sample rate, baud rate, tone frequencies, amplitude, and tone shape.
+ * With two tones (space and mark) each symbol carries one bit. With 4, 8, or 16 tones (M-ary FSK)
+ * each symbol carries 2, 3, or 4 bits, Gray coded so that confusing adjacent tones costs one bit.
+ * The training sequence always uses the first (space) and last (mark) tones of the plan.
+ * The number of frames per symbol does not need to be a whole number.
+ */
+public class ModemConfig {
+    /**
+     * Shape of the generated tones
+     */
+    public enum Shape {
+        /**
+         * Square waves, as generated by earlier versions of jfskmodem
+         */
+        SQUARE,
+        /**
+         * Sine waves
+         */
+        SINE
+    }
+
+    /**
+     * Default sample rate (Hz)
+     */
+    public static final int DEFAULT_SAMPLE_RATE = 48000;
+
+    private final int SAMPLE_RATE;
+    private final int BAUD_RATE;
+    private final int[] TONES;
+    private final int BITS_PER_SYMBOL;
+    private final int AMPLITUDE;
+    private final Shape SHAPE;
+
+    /**
+     * Constructs a ModemConfig.
+     * @param sample_rate Sample rate (Hz)
+     * @param baud_rate Baud rate
+     * @param tone_frequencies Frequency of the tone for each symbol (Hz), 2, 4, 8, or 16 tones.
+     *                         The first is used as the space tone and the last as the mark tone.
+     * @param amplitude Peak amplitude of the tones (1 to 32767)
+     * @param shape Shape of the tones
+     * @throws IllegalArgumentException If any parameter is out of range
+     */
+    public ModemConfig(int sample_rate, int baud_rate, int[] tone_frequencies,
+                       int amplitude, Shape shape) throws IllegalArgumentException {
+        if(sample_rate <= 0) {
+            throw new IllegalArgumentException("Invalid sample rate.");
+        }
+        if(baud_rate <= 0 || sample_rate / baud_rate < 2) {
+            throw new IllegalArgumentException("Invalid baud rate.");
+        }
+        int n_tones = tone_frequencies.length;
+        if(n_tones < 2 || n_tones > 16 || Integer.bitCount(n_tones) != 1) {
+            throw new IllegalArgumentException("Invalid number of tones.");
+        }
+        for(int i = 0; i < n_tones; i++) {
+            /* Sampled sine tones at the Nyquist frequency are silent */
+            if(tone_frequencies[i] <= 0 || tone_frequencies[i] * 2 > sample_rate
+                    || (tone_frequencies[i] * 2 == sample_rate && shape == Shape.SINE)) {
+                throw new IllegalArgumentException("Invalid tone frequency.");
+            }
+            for(int j = 0; j < i; j++) {
+                if(tone_frequencies[i] == tone_frequencies[j]) {
+                    throw new IllegalArgumentException("Invalid tone frequency.");
+                }
+            }
+        }
+        if(amplitude <= 0 || amplitude > 32767) {
+            throw new IllegalArgumentException("Invalid amplitude.");
+        }
+        SAMPLE_RATE = sample_rate;
+        BAUD_RATE = baud_rate;
+        TONES = tone_frequencies.clone();
+        BITS_PER_SYMBOL = Integer.numberOfTrailingZeros(n_tones);
+        AMPLITUDE = amplitude;
+        SHAPE = shape;
+    }
+
+    /**
+     * Constructs a binary ModemConfig.
+     * @param sample_rate Sample rate (Hz)
+     * @param baud_rate Baud rate
+     * @param mark_frequency Frequency of the mark tone (Hz)
+     * @param space_frequency Frequency of the space tone (Hz)
+     * @param amplitude Peak amplitude of the tones (1 to 32767)
+     * @param shape Shape of the tones
+     * @throws IllegalArgumentException If any parameter is out of range
+     */
+    public ModemConfig(int sample_rate, int baud_rate, int mark_frequency, int space_frequency,
+                       int amplitude, Shape shape) throws IllegalArgumentException {
+        this(sample_rate, baud_rate, new int[]{space_frequency, mark_frequency}, amplitude, shape);
+    }
+
+    /**
+     * Constructs a binary ModemConfig with full-scale sine tones.
+     * @param sample_rate Sample rate (Hz)
+     * @param baud_rate Baud rate
+     * @param mark_frequency Frequency of the mark tone (Hz)
+     * @param space_frequency Frequency of the space tone (Hz)
+     * @throws IllegalArgumentException If any parameter is out of range
+     */
+    public ModemConfig(int sample_rate, int baud_rate, int mark_frequency, int space_frequency)
+            throws IllegalArgumentException {
+        this(sample_rate, baud_rate, mark_frequency, space_frequency, 32767, Shape.SINE);
+    }
+
+    /**
+     * Constructs the default ModemConfig for the given baud rate: full-scale square tones at
+     * 48000 Hz, with one cycle per bit for space and two cycles per bit for mark.
+     * @param baud_rate Baud rate
+     * @throws IllegalArgumentException If the baud rate is not a factor of 48000
+     */
+    public ModemConfig(int baud_rate) throws IllegalArgumentException {
+        this(DEFAULT_SAMPLE_RATE, checkFactor(baud_rate), baud_rate * 2, baud_rate, 32767, Shape.SQUARE);
+    }
+
+    /**
+     * Creates a ModemConfig for the Bell 202 tone plan (1200 baud, mark 1200 Hz, space 2200 Hz).
+     * @param sample_rate Sample rate (Hz)
+     * @return Bell 202 ModemConfig
+     */
+    public static ModemConfig bell202(int sample_rate) {
+        return new ModemConfig(sample_rate, 1200, 1200, 2200);
+    }
+
+    /**
+     * Creates a ModemConfig for the V.23 forward channel tone plan (1200 baud, mark 1300 Hz, space 2100 Hz).
+     * @param sample_rate Sample rate (Hz)
+     * @return V.23 ModemConfig
+     */
+    public static ModemConfig v23(int sample_rate) {
+        return new ModemConfig(sample_rate, 1200, 1300, 2100);
+    }
+
+    /**
+     * Creates a ModemConfig for the Bell 103 originate channel (300 baud, mark 1270 Hz, space 1070 Hz),
+     * which the calling station of a full-duplex link transmits on.
+     * @param sample_rate Sample rate (Hz)
+     * @return Bell 103 originate ModemConfig
+     */
+    public static ModemConfig bell103Originate(int sample_rate) {
+        return new ModemConfig(sample_rate, 300, 1270, 1070);
+    }
+
+    /**
+     * Creates a ModemConfig for the Bell 103 answer channel (300 baud, mark 2225 Hz, space 2025 Hz),
+     * which the answering station of a full-duplex link transmits on.
+     * @param sample_rate Sample rate (Hz)
+     * @return Bell 103 answer ModemConfig
+     */
+    public static ModemConfig bell103Answer(int sample_rate) {
+        return new ModemConfig(sample_rate, 300, 2225, 2025);
+    }
+
+    /**
+     * Creates an M-ary FSK ModemConfig with full-scale sine tones evenly spaced from a first frequency.
+     * Tones are orthogonal over a symbol when the spacing is a multiple of the baud rate.
+     * @param sample_rate Sample rate (Hz)
+     * @param baud_rate Baud rate (symbols per second)
+     * @param n_tones Number of tones (2, 4, 8, or 16)
+     * @param first_frequency Frequency of the lowest tone (Hz)
+     * @param spacing Spacing between adjacent tones (Hz)
+     * @return M-ary FSK ModemConfig
+     * @throws IllegalArgumentException If any parameter is out of range
+     */
+    public static ModemConfig mfsk(int sample_rate, int baud_rate, int n_tones, int first_frequency, int spacing)
+            throws IllegalArgumentException {
+        int[] tones = new int[n_tones];
+        for(int i = 0; i < n_tones; i++) { tones[i] = first_frequency + i * spacing; }
+        return new ModemConfig(sample_rate, baud_rate, tones, 32767, Shape.SINE);
+    }
+
+    /**
+     * @return Sample rate (Hz)
+     */
+    public int getSampleRate() { return SAMPLE_RATE; }
+
+    /**
+     * @return Baud rate
+     */
+    public int getBaudRate() { return BAUD_RATE; }
+
+    /**
+     * @return Frequency of the mark tone (Hz)
+     */
+    public int getMarkFrequency() { return TONES[TONES.length - 1]; }
+
+    /**
+     * @return Frequency of the space tone (Hz)
+     */
+    public int getSpaceFrequency() { return TONES[0]; }
+
+    /**
+     * @return Number of tones (symbols)
+     */
+    public int getTones() { return TONES.length; }
+
+    /**
+     * @param symbol Symbol (0 to getTones() - 1)
+     * @return Frequency of the tone for the symbol (Hz)
+     */
+    public int getToneFrequency(int symbol) { return TONES[symbol]; }
+
+    /**
+     * @return Number of bits carried by each symbol
+     */
+    public int getBitsPerSymbol() { return BITS_PER_SYMBOL; }
+
+    /**
+     * @return Symbol of the mark tone
+     */
+    public int getMarkSymbol() { return TONES.length - 1; }
+
+    /**
+     * @return Symbol of the space tone
+     */
+    public int getSpaceSymbol() { return 0; }
+
+    /**
+     * Maps bits to the symbol that carries them (Gray coded).
+     * @param bits Bits (the low getBitsPerSymbol() bits are used)
+     * @return Symbol carrying the bits
+     */
+    public int getSymbol(int bits) { return bits ^ (bits >> 1); }
+
+    /**
+     * Maps a symbol to the bits it carries.
+     * @param symbol Symbol
+     * @return Bits carried by the symbol
+     */
+    public int getBits(int symbol) {
+        int bits = symbol;
+        for(int shift = 1; shift < BITS_PER_SYMBOL; shift <<= 1) { bits ^= bits >> shift; }
+        return bits;
+    }
+
+    /**
+     * @return Peak amplitude of the tones
+     */
+    public int getAmplitude() { return AMPLITUDE; }
+
+    /**
+     * @return Shape of the tones
+     */
+    public Shape getShape() { return SHAPE; }
+
+    /**
+     * @return Number of whole frames in a symbol (symbols may be a fraction of a frame longer)
+     */
+    public int getSymbolFrames() { return SAMPLE_RATE / BAUD_RATE; }
+
+    /**
+     * @return True if every symbol is a whole number of frames long
+     */
+    public boolean hasWholeSymbols() { return SAMPLE_RATE % BAUD_RATE == 0; }
+
+    /**
+     * Gets the default amplitude threshold to recognize the start of a signal,
+     * scaled from the 18000 used for full-scale square tones.
+     * @return Signal start threshold
+     */
+    public int getSignalStartThreshold() { return (int) (getMeanAmplitude() * 18000 / 32767); }
+
+    /**
+     * Gets the default amplitude threshold to recognize the end of a signal,
+     * scaled from the 14000 used for full-scale square tones.
+     * @return Signal end threshold
+     */
+    public int getSignalEndThreshold() { return (int) (getMeanAmplitude() * 14000 / 32767); }
+
+    /**
+     * @return Mean absolute amplitude of the tones
+     */
+    private double getMeanAmplitude() {
+        return SHAPE == Shape.SQUARE ? AMPLITUDE : AMPLITUDE * 2 / Math.PI;
+    }
+
+    /**
+     * Checks that a baud rate is a factor of the default sample rate.
+     * @param baud_rate Baud rate to check
+     * @return The baud rate
+     * @throws IllegalArgumentException If the baud rate is not a factor of 48000
+     */
+    private static int checkFactor(int baud_rate) throws IllegalArgumentException {
+        if(baud_rate <= 0 || DEFAULT_SAMPLE_RATE % baud_rate != 0) {
+            throw new IllegalArgumentException("Invalid baud rate.");
+        }
+        return baud_rate;
+    }
+
+    /**
+     * @return Description of this ModemConfig
+     */
+    @Override
+    public String toString() {
+        if(TONES.length > 2) {
+            return BAUD_RATE + " baud, " + TONES.length + " tones " + TONES[0] + "-" + TONES[TONES.length - 1]
+                    + " Hz, " + SAMPLE_RATE + " Hz " + SHAPE.name().toLowerCase();
+        }
+        return BAUD_RATE + " baud, mark " + getMarkFrequency() + " Hz, space " + getSpaceFrequency()
+                + " Hz, " + SAMPLE_RATE + " Hz " + SHAPE.name().toLowerCase();
+    }
+}
@@ -0,0 +1,115 @@
+package org.lavajuno.jfskmodem;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * RateSelector chooses the fastest of a list of modem configurations that a link can sustain.
+ * The SNR measured on a received signal is projected to each configuration's baud rate,
+ * and the fastest configuration that keeps enough margin is chosen. If error correction had
+ * to correct too many bits, the rate is lowered below the one that was measured.
+ * The rate rises by at most one step per measurement, so a single lucky signal
+ * does not jump straight to the fastest rate.
+ */
+public class RateSelector {
+    /**
+     * Default SNR (in dB, as measured by Demodulator) required to use a rate
+     */
+    public static final double DEFAULT_REQUIRED_SNR_DB = 15;
+
+    /**
+     * Default highest bit error rate before error correction that is tolerated at a rate
+     */
+    public static final double DEFAULT_MAX_BIT_ERROR_RATE = 1e-3;
+
+    private final List<ModemConfig> rates;
+    private final double REQUIRED_SNR;
+    private final double MAX_BIT_ERROR_RATE;
+    private int current;
+
+    /**
+     * Constructs a RateSelector, starting at the slowest rate.
+     * @param rates Configurations to choose from, from slowest to fastest, at the same sample rate
+     * @param required_snr_db SNR (in dB) required to use a rate
+     * @param max_bit_error_rate Highest bit error rate before error correction tolerated at a rate
+     * @throws IllegalArgumentException If there are no rates, or they are not in order
+     *                                  of increasing baud rate at the same sample rate
+     */
+    public RateSelector(List<ModemConfig> rates, double required_snr_db, double max_bit_error_rate)
+            throws IllegalArgumentException {
+        if(rates.isEmpty()) {
+            throw new IllegalArgumentException("Invalid rates. (None given)");
+        }
+        for(int i = 1; i < rates.size(); i++) {
+            if(rates.get(i).getSampleRate() != rates.get(0).getSampleRate()
+                    || rates.get(i).getBaudRate() <= rates.get(i - 1).getBaudRate()) {
+                throw new IllegalArgumentException("Invalid rates. (Must increase at the same sample rate)");
+            }
+        }
+        this.rates = List.copyOf(rates);
+        REQUIRED_SNR = Math.pow(10, required_snr_db / 10);
+        MAX_BIT_ERROR_RATE = max_bit_error_rate;
+        current = 0;
+    }
+
+    /**
+     * Constructs a RateSelector with the default thresholds, starting at the slowest rate.
+     * @param rates Configurations to choose from, from slowest to fastest, at the same sample rate
+     * @throws IllegalArgumentException If the rates are invalid
+     */
+    public RateSelector(List<ModemConfig> rates) throws IllegalArgumentException {
+        this(rates, DEFAULT_REQUIRED_SNR_DB, DEFAULT_MAX_BIT_ERROR_RATE);
+    }
+
+    /**
+     * Gets the legacy binary FSK configurations from 300 to 4800 baud, at 48000 Hz.
+     * @return Configurations from slowest to fastest
+     */
+    public static List<ModemConfig> getDefaultRates() {
+        return List.of(new ModemConfig(300), new ModemConfig(600), new ModemConfig(1200),
+                new ModemConfig(2400), new ModemConfig(4800));
+    }
+
+    /**
+     * Updates the chosen rate from the quality of a received signal.
+     * @param quality Quality of a signal received over the link
+     * @return Chosen configuration
+     */
+    public ModemConfig update(LinkQuality quality) {
+        if(quality.getSamples() == 0) { return getRate(); } /* Nothing was measured */
+        int best = 0;
+        for(int i = 1; i < rates.size(); i++) {
+            if(quality.getSnrAt(rates.get(i).getBaudRate()) >= REQUIRED_SNR) { best = i; }
+        }
+        if(quality.getBitErrorRate() > MAX_BIT_ERROR_RATE) {
+            /* Errors were seen at the measured rate, whatever the SNR suggests */
+            while(best > 0 && rates.get(best).getBaudRate() >= quality.getBaudRate()) { best--; }
+        }
+        current = Math.min(best, current + 1);
+        return getRate();
+    }
+
+    /**
+     * Sets the chosen rate.
+     * @param index Index of the configuration to choose
+     * @throws IndexOutOfBoundsException If there is no configuration with the given index
+     */
+    public void setRate(int index) throws IndexOutOfBoundsException {
+        current = Objects.checkIndex(index, rates.size());
+    }
+
+    /**
+     * @return Chosen configuration
+     */
+    public ModemConfig getRate() { return rates.get(current); }
+
+    /**
+     * @return Index of the chosen configuration
+     */
+    public int getRateIndex() { return current; }
+
+    /**
+     * @return Configurations to choose from, from slowest to fastest
+     */
+    public List<ModemConfig> getRates() { return rates; }
+}
@@ -1,32 +1,186 @@
 package org.lavajuno.jfskmodem;
 
+import org.lavajuno.jfskmodem.detector.CorrelationDetector;
+import org.lavajuno.jfskmodem.detector.SignalLevel;
+import org.lavajuno.jfskmodem.detector.SymbolDetector;
+import org.lavajuno.jfskmodem.ecc.ErrorCorrection;
 import org.lavajuno.jfskmodem.ecc.Hamming;
+import org.lavajuno.jfskmodem.io.SampleSource;
 import org.lavajuno.jfskmodem.io.SoundInput;
 import org.lavajuno.jfskmodem.log.Log;
-import org.lavajuno.jfskmodem.waveforms.Waveforms;
+import org.lavajuno.jfskmodem.metrics.ModemMetrics;
 
 import javax.sound.sampled.LineUnavailableException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 
 /**
- * Receiver manages a line to the default audio input device
+ * Receiver manages a line to the default audio input device (or another sample source)
  * and allows you to receive data over it.
+ * Asynchronous receives and message publishers run one at a time on a single I/O thread
+ * owned by the Receiver, which is started on first use.
  */
 @SuppressWarnings("unused")
 public class Receiver {
-    private static final int CLOCK_SCAN_WIDTH = 4096;
+    private final int SAMPLE_RATE;
 
-    private final int SIGNAL_START_THRESHOLD;
-    private final int SIGNAL_END_THRESHOLD;
-    private final int BIT_FRAMES;
-    private final List<Short> TONE_SPACE;
-    private final List<Short> TONE_MARK;
-    private final List<Short> TS_CYCLE;
-
-    private final SoundInput sound_in;
+    private final Demodulator demodulator;
+    private final SampleSource sound_in;
     private final Log log;
 
+    private final short[] block_frames;
+    private Demodulator.Listener listener;
+    private ModemMetrics metrics;
+    private byte[] rec_bytes;
+    private int n_rec_bytes;
+    private boolean source_ended;
+    private ExecutorService io_executor;
+    private volatile MessageSubscription active_subscription;
+    private volatile boolean closed;
+
+    /**
+     * Constructs a Receiver that reads from the given source, with the given configuration,
+     * signal level tracker, detector, error correction, and log level.
+     * @param source Source to read frames from
+     * @param config Modem configuration for this Receiver
+     * @param level Signal level tracker to recognize signals with
+     * @param detector Detector to decode symbols with
+     * @param ecc Error correction code the data was encoded with
+     * @param log_level Log level for this Receiver.
+     */
+    public Receiver(SampleSource source, ModemConfig config, SignalLevel level, SymbolDetector detector,
+                    ErrorCorrection ecc, Log.Level log_level) {
+        SAMPLE_RATE = config.getSampleRate();
+        demodulator = new Demodulator(config, level, detector, ecc, this::onByte, log_level);
+        sound_in = source;
+        log = new Log("Receiver", log_level);
+        block_frames = new short[SoundInput.BLOCK_FRAMES];
+        rec_bytes = new byte[256];
+    }
+
+    /**
+     * Constructs a Receiver that reads from the given source, with the given configuration,
+     * fixed sensitivity parameters, detector, error correction, and log level.
+     * @param source Source to read frames from
+     * @param config Modem configuration for this Receiver
+     * @param signal_start_threshold Amplitude threshold to recognize the start of a signal
+     * @param signal_end_threshold Amplitude threshold to recognize the end of a signal
+     * @param detector Detector to decode symbols with
+     * @param ecc Error correction code the data was encoded with
+     * @param log_level Log level for this Receiver.
+     */
+    public Receiver(SampleSource source, ModemConfig config, int signal_start_threshold,
+                    int signal_end_threshold, SymbolDetector detector, ErrorCorrection ecc, Log.Level log_level) {
+        this(source, config, new SignalLevel(config, signal_start_threshold, signal_end_threshold),
+                detector, ecc, log_level);
+    }
+
+    /**
+     * Constructs a Receiver that reads from the given source, with the given configuration,
+     * sensitivity parameters, bit detector, and log level, for data encoded with Hamming(7,4).
+     * @param source Source to read frames from
+     * @param config Modem configuration for this Receiver
+     * @param signal_start_threshold Amplitude threshold to recognize the start of a signal
+     * @param signal_end_threshold Amplitude threshold to recognize the end of a signal
+     * @param detector Detector to decode symbols with
+     * @param log_level Log level for this Receiver.
+     */
+    public Receiver(SampleSource source, ModemConfig config, int signal_start_threshold,
+                    int signal_end_threshold, SymbolDetector detector, Log.Level log_level) {
+        this(source, config, signal_start_threshold, signal_end_threshold, detector, new Hamming(), log_level);
+    }
+
+    /**
+     * Constructs a Receiver that reads from the given source, with the given configuration,
+     * error correction, and log level, using the configuration's default detector
+     * and adaptive sensitivity parameters.
+     * @param source Source to read frames from
+     * @param config Modem configuration for this Receiver
+     * @param ecc Error correction code the data was encoded with
+     * @param log_level Log level for this Receiver
+     */
+    public Receiver(SampleSource source, ModemConfig config, ErrorCorrection ecc, Log.Level log_level) {
+        this(source, config, new SignalLevel(config), SymbolDetector.create(config), ecc, log_level);
+    }
+
+    /**
+     * Constructs a Receiver that reads from the given source, with the given configuration and log level,
+     * using the configuration's default detector and adaptive sensitivity parameters.
+     * @param source Source to read frames from
+     * @param config Modem configuration for this Receiver
+     * @param log_level Log level for this Receiver
+     */
+    public Receiver(SampleSource source, ModemConfig config, Log.Level log_level) {
+        this(source, config, new Hamming(), log_level);
+    }
+
+    /**
+     * Constructs a Receiver with the given configuration and log level, that listens on
+     * the default audio input device at the configuration's sample rate.
+     * @param config Modem configuration for this Receiver
+     * @param log_level Log level for this Receiver
+     * @throws LineUnavailableException If the audio input line could not be created
+     */
+    public Receiver(ModemConfig config, Log.Level log_level) throws LineUnavailableException {
+        this(new SoundInput(config.getSampleRate(), 1, log_level), config, log_level);
+    }
+
+    /**
+     * Constructs a Receiver that reads from the given source, with the given baud rate,
+     * sensitivity parameters, bit detector, and log level.
+     * @param source Source to read frames from
+     * @param baud_rate Baud rate for this Receiver
+     * @param signal_start_threshold Amplitude threshold to recognize the start of a signal
+     * @param signal_end_threshold Amplitude threshold to recognize the end of a signal
+     * @param detector Detector to decode symbols with
+     * @param log_level Log level for this Receiver.
+     */
+    public Receiver(SampleSource source, int baud_rate, int signal_start_threshold, int signal_end_threshold,
+                    SymbolDetector detector, Log.Level log_level) {
+        this(source, new ModemConfig(baud_rate), signal_start_threshold, signal_end_threshold,
+                detector, log_level);
+    }
+
+    /**
+     * Constructs a Receiver that reads from the given source, with the given baud rate and log level,
+     * using adaptive sensitivity parameters.
+     * @param source Source to read frames from
+     * @param baud_rate Baud rate for this Receiver
+     * @param log_level Log level for this Receiver
+     */
+    public Receiver(SampleSource source, int baud_rate, Log.Level log_level) {
+        this(source, new ModemConfig(baud_rate), log_level);
+    }
+
+    /**
+     * Constructs a Receiver that reads from the given source, with the given baud rate.
+     * @param source Source to read frames from
+     * @param baud_rate Baud rate for this Receiver
+     */
+    public Receiver(SampleSource source, int baud_rate) {
+        this(source, baud_rate, Log.Level.WARN);
+    }
+
+    /**
+     * Constructs a Receiver with the given baud rate, sensitivity parameters, bit detector, and log level.
+     * @param baud_rate Baud rate for this Receiver
+     * @param signal_start_threshold Amplitude threshold to recognize the start of a signal
+     * @param signal_end_threshold Amplitude threshold to recognize the end of a signal
+     * @param detector Detector to decode symbols with
+     * @param log_level Log level for this Receiver.
+     * @throws LineUnavailableException If the audio input line could not be created
+     */
+    public Receiver(int baud_rate, int signal_start_threshold, int signal_end_threshold,
+                    SymbolDetector detector, Log.Level log_level) throws LineUnavailableException {
+        this(new SoundInput(), baud_rate, signal_start_threshold, signal_end_threshold, detector, log_level);
+    }
+
     /**
      * Constructs a Receiver with the given baud rate, sensitivity parameters, and log level.
      * @param baud_rate Baud rate for this Receiver
@@ -37,14 +191,8 @@ public class Receiver {
      */
     public Receiver(int baud_rate, int signal_start_threshold, int signal_end_threshold, Log.Level log_level)
             throws LineUnavailableException {
-        BIT_FRAMES = 48000 / baud_rate;
-        SIGNAL_START_THRESHOLD = signal_start_threshold;
-        SIGNAL_END_THRESHOLD = signal_end_threshold;
-        TONE_SPACE = Waveforms.getSpaceTone(baud_rate);
-        TONE_MARK = Waveforms.getMarkTone(baud_rate);
-        TS_CYCLE = Waveforms.getTrainingCycle(baud_rate);
-        sound_in = new SoundInput();
-        log = new Log("Receiver", log_level);
+        this(baud_rate, signal_start_threshold, signal_end_threshold,
+                new CorrelationDetector(baud_rate), log_level);
     }
 
     /**
@@ -60,13 +208,13 @@ public class Receiver {
     }
 
     /**
-     * Constructs a Receiver with the given baud rate and log level.
+     * Constructs a Receiver with the given baud rate and log level, using adaptive sensitivity parameters.
      * @param baud_rate Baud rate for this Receiver
      * @param log_level Log level for this Receiver
      * @throws LineUnavailableException If the audio input line could not be created
      */
     public Receiver(int baud_rate, Log.Level log_level) throws LineUnavailableException {
-        this(baud_rate, 18000, 14000, log_level);
+        this(new SoundInput(), baud_rate, log_level);
     }
 
     /**
@@ -84,182 +232,315 @@ public class Receiver {
      * @return Received bytes. Empty if signal cannot be decoded or timeout is reached.
      */
     public byte[] receive(int timeout) {
-        log.info("Listening...");
-        List<Short> rec_frames = record(timeout * 48000);
-        List<Byte> rec_bits = decodeBits(rec_frames);
-        return decodeBytes(rec_bits);
+        return receive(timeout, TimeUnit.SECONDS);
     }
 
     /**
-     * Closes this Receiver's audio input line.
+     * Receives and decodes bytes from this Receiver's audio input.
+     * The timeout is measured in frames of the source, to within one block of frames.
+     * @param timeout Listen timeout
+     * @param unit Unit of the timeout
+     * @return Received bytes. Empty if signal cannot be decoded or timeout is reached.
      */
-    public void close() { sound_in.close(); }
+    public byte[] receive(long timeout, TimeUnit unit) {
+        return receiveBytes(getTimeoutFrames(timeout, unit), () -> false);
+    }
 
     /**
-     * Records a signal and returns it as a list of frames
-     * @param timeout_frames Recording timeout in frames
-     * @return Recorded signal as a list of frames
+     * Receives bytes from this Receiver's audio input, passing each byte to the given
+     * listener as soon as it is decoded. Blocks until the end of the signal or the source.
+     * @param timeout Listen timeout in seconds
+     * @param listener Listener to pass decoded bytes to
+     * @return Number of bytes received. Zero if signal cannot be decoded or timeout is reached.
      */
-    private List<Short> record(int timeout_frames) {
-        ArrayList<Short> recorded_signal = new ArrayList<>();
-        sound_in.start();
-        sound_in.listen();
-        /* Wait for signal */
-        for(int i = 0; i < timeout_frames;) {
-            List<Short> frames = sound_in.listen();
-            if(Waveforms.getAmplitude(frames) > SIGNAL_START_THRESHOLD) {
-                log.debug("Signal start detected.");
-                recorded_signal.addAll(frames);
-                break; /* Start of signal */
-            }
-            i += frames.size();
+    public int receive(int timeout, Demodulator.Listener listener) {
+        return receive(timeout, TimeUnit.SECONDS, listener);
+    }
+
+    /**
+     * Receives bytes from this Receiver's audio input, passing each byte to the given
+     * listener as soon as it is decoded. Blocks until the end of the signal or the source.
+     * @param timeout Listen timeout
+     * @param unit Unit of the timeout
+     * @param listener Listener to pass decoded bytes to
+     * @return Number of bytes received. Zero if signal cannot be decoded or timeout is reached.
+     */
+    public int receive(long timeout, TimeUnit unit, Demodulator.Listener listener) {
+        return receive(getTimeoutFrames(timeout, unit), listener, () -> false);
+    }
+
+    /**
+     * Receives and decodes bytes on this Receiver's I/O thread, after any receives already queued.
+     * Cancelling the returned future stops listening within one block of frames.
+     * This Receiver must not be used synchronously until the future completes.
+     * @param timeout Listen timeout, from when the receive starts
+     * @param unit Unit of the timeout
+     * @return Future completed with the received bytes. Empty if signal cannot be decoded
+     *         or timeout is reached.
+     */
+    public CompletableFuture<byte[]> receiveAsync(long timeout, TimeUnit unit) {
+        long timeout_frames = getTimeoutFrames(timeout, unit);
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        try {
+            getExecutor().execute(() -> {
+                try {
+                    /* Skipped if cancelled while queued */
+                    byte[] data = null;
+                    if(!closed && !future.isDone()) {
+                        data = receiveBytes(timeout_frames, () -> closed || future.isDone());
+                    }
+                    if(closed || data == null) {
+                        future.completeExceptionally(new IllegalStateException("Receiver closed."));
+                    } else {
+                        future.complete(data);
+                    }
+                } catch(RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch(RejectedExecutionException e) {
+            future.completeExceptionally(new IllegalStateException("Receiver closed."));
         }
-        /* Record signal */
-        while(true) {
-            List<Short> frames = sound_in.listen();
-            recorded_signal.addAll(frames);
-            if(Waveforms.getAmplitude(frames) < SIGNAL_END_THRESHOLD) {
-                log.debug("Signal end detected.");
-                break; /* End of signal */
+        return future;
+    }
+
+    /**
+     * Gets a publisher of the messages this Receiver receives. Each subscriber is served
+     * on this Receiver's I/O thread, which listens for a message whenever the subscriber has
+     * requested one, until the subscription is cancelled or the source ends.
+     * Signals that arrive while no message is requested are missed, so ContinuousReceiver
+     * should be used for back-to-back signals.
+     * This Receiver must not be used synchronously while a subscription is active.
+     * @return Publisher of received messages
+     */
+    public Flow.Publisher<byte[]> messages() {
+        return subscriber -> {
+            MessageSubscription subscription = new MessageSubscription(subscriber);
+            subscriber.onSubscribe(subscription);
+            try {
+                getExecutor().execute(subscription::run);
+            } catch(RejectedExecutionException e) {
+                subscription.cancel();
+                subscriber.onError(new IllegalStateException("Receiver closed."));
             }
+        };
+    }
+
+    /**
+     * @return Quality of the last received signal
+     */
+    public LinkQuality getLinkQuality() { return demodulator.getLinkQuality(); }
+
+    /**
+     * @return Signal level tracker this Receiver recognizes signals with
+     */
+    public SignalLevel getSignalLevel() { return demodulator.getSignalLevel(); }
+
+    /**
+     * Sets the metrics this Receiver records to. Must not be called while receiving.
+     * @param metrics Metrics to record to, or null to record none
+     */
+    public void setMetrics(ModemMetrics metrics) {
+        this.metrics = metrics;
+        demodulator.setMetrics(metrics);
+    }
+
+    /**
+     * Closes this Receiver's audio input line (or sample source).
+     * Asynchronous receives that have not finished are stopped, and their futures
+     * complete exceptionally.
+     */
+    public void close() {
+        closed = true;
+        synchronized(this) {
+            if(io_executor != null) { io_executor.shutdown(); }
         }
-        sound_in.stop();
-        log.debug("Received " + recorded_signal.size() + " frames.");
-        return recorded_signal;
+        MessageSubscription subscription = active_subscription;
+        if(subscription != null) { subscription.wake(); }
+        sound_in.close();
     }
 
     /**
-     * Decodes bytes from a list of bits (including parity bits).
-     * @param rec_bits Bits to decode
-     * @return Decoded bytes
+     * Receives and decodes bytes, and collects them.
+     * @param timeout_frames Listen timeout in frames
+     * @param cancelled Checked after each block of frames; true to stop listening
+     * @return Received bytes. Empty if signal cannot be decoded, timeout is reached, or cancelled.
      */
-    private byte[] decodeBytes(List<Byte> rec_bits) {
-        if(rec_bits.isEmpty()) {
+    private byte[] receiveBytes(long timeout_frames, BooleanSupplier cancelled) {
+        n_rec_bytes = 0;
+        receive(timeout_frames, this::appendByte, cancelled);
+        if(n_rec_bytes == 0) {
             log.error("No data.");
-            return new byte[]{};
-        }
-        int n_bytes = rec_bits.size() / 14;
-        byte[] rec_bytes = new byte[n_bytes];
-        byte[] current_byte = new byte[14];
-        for(int i = 0; i < rec_bits.size(); i++) {
-            if(i % 14 == 0 && i > 0) {
-                rec_bytes[(i / 14) - 1] = Hamming.decodeByte(current_byte);
-                current_byte[0] = rec_bits.get(i);
-            } else {
-                current_byte[i % 14] = rec_bits.get(i);
-            }
         }
-        if(rec_bits.size() % 14 == 0) {
-            rec_bytes[n_bytes - 1] = Hamming.decodeByte(current_byte);
-        }
-        log.debug("Decoded " + rec_bytes.length + " bytes.");
-        return rec_bytes;
+        return Arrays.copyOf(rec_bytes, n_rec_bytes);
     }
 
     /**
-     * Decodes bits from a list of recorded frames.
-     * @param frames Frames to decode
-     * @return Decoded bits
+     * Receives bytes, passing each byte to the given listener as soon as it is decoded.
+     * Blocks until the end of the signal or the source, the timeout, or cancellation.
+     * @param timeout_frames Listen timeout in frames
+     * @param listener Listener to pass decoded bytes to
+     * @param cancelled Checked after each block of frames; true to stop listening
+     * @return Number of bytes received
      */
-    private List<Byte> decodeBits(List<Short> frames) {
-        // Recover clock index
-        int i = recoverClockIndex(frames);
-        if(i == -1) { return new ArrayList<>(); }
-        ArrayList<Byte> rec_bits = new ArrayList<>();
-
-        // Skip past training sequence
-        byte[] training_bits = {0,0,0,0};
-        for(; i < frames.size() - BIT_FRAMES; i += BIT_FRAMES) {
-            List<Short> bit_frames = frames.subList(i, i + BIT_FRAMES);
-            if(scanTraining(training_bits, decodeBit(bit_frames))) {
-                i += BIT_FRAMES;
-                log.debug("Training sequence terminated on frame " + i + ".");
-                break; // training sequence terminated
+    private int receive(long timeout_frames, Demodulator.Listener listener, BooleanSupplier cancelled) {
+        log.info("Listening...");
+        this.listener = listener;
+        demodulator.reset();
+        source_ended = false;
+        sound_in.start();
+        sound_in.read(block_frames, 0, block_frames.length);
+        for(long i = 0; !demodulator.isDone() && !cancelled.getAsBoolean();) {
+            long read_start = metrics != null ? System.nanoTime() : 0;
+            int n_frames = sound_in.read(block_frames, 0, block_frames.length);
+            if(metrics != null) { metrics.getRecordTime().recordSince(read_start); }
+            if(n_frames < 0) {
+                demodulator.end(); /* End of source */
+                source_ended = true;
+                break;
             }
-        }
-
-        // Decode and store received bits
-        for(; i < frames.size() - BIT_FRAMES; i += BIT_FRAMES) {
-            List<Short> bit_frames = frames.subList(i, i + BIT_FRAMES);
-            if(Waveforms.getAmplitude(bit_frames) < SIGNAL_END_THRESHOLD) {
-                break; // End of signal
+            demodulator.feed(block_frames, 0, n_frames);
+            if(!demodulator.isReceiving()) {
+                i += n_frames;
+                if(i >= timeout_frames) { break; } /* Timed out waiting for signal */
             }
-            rec_bits.add(decodeBit(bit_frames));
         }
-
-        log.debug("Decoded " + rec_bits.size() + " bits. (Including ECC)");
-        return rec_bits;
+        sound_in.stop();
+        this.listener = null;
+        return demodulator.getDecodedBytes();
     }
 
     /**
-     * Decodes a single bit from a list of frames.
-     * @param frames Frames to decode
-     * @return Decoded bit
+     * Converts a listen timeout to frames of the source.
+     * @param timeout Listen timeout
+     * @param unit Unit of the timeout
+     * @return Listen timeout in frames
      */
-    private byte decodeBit(List<Short> frames) {
-        List<Short> amp_frames = amplify(frames);
-        int space_diff = Waveforms.getDiff(TONE_SPACE, amp_frames);
-        int mark_diff = Waveforms.getDiff(TONE_MARK, amp_frames);
-        return (byte) (mark_diff < space_diff ? 1 : 0);
+    private long getTimeoutFrames(long timeout, TimeUnit unit) {
+        long millis = unit.toMillis(timeout);
+        return millis < Long.MAX_VALUE / SAMPLE_RATE ? millis * SAMPLE_RATE / 1000 : Long.MAX_VALUE;
     }
 
     /**
-     * Recovers the clock from a training sequence
-     * @param frames List of frames containing training sequence
-     * @return Index of the best match for clock recovery
+     * @return Executor for this Receiver's I/O thread, started on first use
      */
-    private int recoverClockIndex(List<Short> frames) {
-        if(frames.size() < CLOCK_SCAN_WIDTH) {
-            log.warn("Could not recover clock from received signal. (Not enough information)");
-            return -1;
-        }
-        ArrayList<Integer> scan_diffs = new ArrayList<>();
-        for(int i = 0; i < CLOCK_SCAN_WIDTH - BIT_FRAMES * 2; i++) {
-            scan_diffs.add(Waveforms.getDiff(TS_CYCLE, frames.subList(i, i + BIT_FRAMES * 2)));
-        }
-        int min_diff = scan_diffs.get(0);
-        int min_index = 0;
-        for(int i = 0; i < scan_diffs.size(); i++) {
-            if(scan_diffs.get(i) < min_diff) {
-                min_index = i;
-                min_diff = scan_diffs.get(i);
-            }
+    private synchronized ExecutorService getExecutor() {
+        if(io_executor == null) {
+            io_executor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "jfskmodem-rx-io");
+                thread.setDaemon(true);
+                return thread;
+            });
         }
-        log.debug("Recovered clock from signal. (Best match on frame " + min_index + ")");
-        return min_index;
+        return io_executor;
     }
 
     /**
-     * Updates a sliding window of training sequence bits with the given
-     * current bit, and returns true if the window matches the training sequence terminator.
-     * @param seq Training sequence window (byte[4])
-     * @param current_bit Current bit to push into the window
-     * @return True if the window matches the training sequence terminator
+     * Passes a decoded byte to the current listener.
+     * @param data Decoded byte
      */
-    private static boolean scanTraining(byte[] seq, byte current_bit) {
-        for(int i = 1; i < 4; i++) {
-            seq[i - 1] = seq[i];
+    private void onByte(byte data) {
+        if(listener != null) { listener.onByte(data); }
+    }
+
+    /**
+     * Appends a decoded byte to the received bytes, growing the buffer if needed
+     * @param data Decoded byte
+     */
+    private void appendByte(byte data) {
+        if(n_rec_bytes == rec_bytes.length) {
+            rec_bytes = Arrays.copyOf(rec_bytes, rec_bytes.length * 2);
         }
-        seq[3] = current_bit;
-        return seq[0] == 1 && seq[1] == 0 && seq[2] == 0 && seq[3] == 0;
+        rec_bytes[n_rec_bytes++] = data;
     }
 
     /**
-     * Amplifies a received signal
-     * @param frames List of frames
-     * @return Amplified list of frames
+     * MessageSubscription serves a subscriber to messages() on this Receiver's I/O thread.
+     * All signals to the subscriber are sent from the I/O thread.
      */
-    private static List<Short> amplify(List<Short> frames) {
-        ArrayList<Short> output = new ArrayList<>(frames.size());
-        for (Short frame : frames) {
-            if (frame > 512) {
-                output.add((short) 32767);
-            } else if (frame < -512) {
-                output.add((short) -32768);
+    private class MessageSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super byte[]> subscriber;
+        private long demand;
+        private Throwable error;
+        private volatile boolean cancelled;
+
+        /**
+         * Constructs a MessageSubscription for the given subscriber.
+         * @param subscriber Subscriber to pass received messages to
+         */
+        MessageSubscription(Flow.Subscriber<? super byte[]> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public synchronized void request(long n) {
+            if(n <= 0) {
+                error = new IllegalArgumentException("Invalid request count.");
+                cancelled = true;
             } else {
-                output.add((short) 0);
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            }
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void cancel() {
+            cancelled = true;
+            notifyAll();
+        }
+
+        /**
+         * Wakes the I/O thread if it is waiting for a request, to see that this Receiver has closed.
+         */
+        synchronized void wake() { notifyAll(); }
+
+        /**
+         * Receives messages while the subscriber requests them, until the subscription is cancelled,
+         * this Receiver is closed, or the source ends.
+         */
+        void run() {
+            active_subscription = this;
+            try {
+                while(awaitDemand()) {
+                    byte[] message = receiveBytes(Long.MAX_VALUE, () -> cancelled || closed);
+                    if(cancelled || closed) { break; }
+                    if(message.length > 0) {
+                        synchronized(this) { demand--; }
+                        subscriber.onNext(message);
+                    }
+                    if(source_ended) {
+                        cancelled = true;
+                        subscriber.onComplete();
+                        return;
+                    }
+                }
+                synchronized(this) {
+                    if(error == null && !cancelled) { error = new IllegalStateException("Receiver closed."); }
+                }
+                if(error != null) { subscriber.onError(error); }
+            } catch(RuntimeException e) {
+                if(!cancelled) { subscriber.onError(e); }
+            } finally {
+                cancelled = true;
+                active_subscription = null;
+            }
+        }
+
+        /**
+         * Blocks until the subscriber has requested a message, the subscription is cancelled,
+         * or this Receiver is closed.
+         * @return True if a message has been requested
+         */
+        private synchronized boolean awaitDemand() {
+            while(demand == 0 && !cancelled && !closed) {
+                try {
+                    wait();
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
             }
+            return !cancelled && !closed;
         }
-        return output;
     }
 }
@@ -0,0 +1,381 @@
+package org.lavajuno.jfskmodem;
+
+import org.lavajuno.jfskmodem.detector.SignalLevel;
+import org.lavajuno.jfskmodem.detector.SymbolDetector;
+import org.lavajuno.jfskmodem.ecc.ErrorCorrection;
+import org.lavajuno.jfskmodem.ecc.Hamming;
+import org.lavajuno.jfskmodem.io.SampleSource;
+import org.lavajuno.jfskmodem.log.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * ReceiverPool receives data on many channels at once.
+ * Each source is read by its own reader thread, which only moves blocks of frames into
+ * a bounded per-channel queue. Demodulation runs on a shared executor, one task per channel
+ * at a time, so decoding throughput scales with the executor and no decoding thread is
+ * tied to a blocking line. Sources may carry several interleaved channels (such as a
+ * multi-channel SoundInput), which are separated by their reader thread.
+ */
+public class ReceiverPool {
+    /**
+     * MessageListener receives messages decoded by a ReceiverPool.
+     * It is called from the executor, and may be called concurrently for different channels.
+     */
+    @FunctionalInterface
+    public interface MessageListener {
+        /**
+         * Called when a message has been decoded.
+         * @param channel Channel the message was received on
+         * @param data Decoded bytes
+         */
+        void onMessage(int channel, byte[] data);
+    }
+
+    private static final int BLOCK_FRAMES = 1024;
+    private static final int QUEUE_BLOCKS = 32;
+
+    private final int SIGNAL_START_THRESHOLD;
+    private final int SIGNAL_END_THRESHOLD;
+    private final boolean ADAPTIVE_LEVEL;
+
+    private final ModemConfig config;
+    private final Supplier<ErrorCorrection> ecc_factory;
+    private final Executor executor;
+    private final ExecutorService owned_executor;
+    private final MessageListener listener;
+    private final Log log;
+    private final Log.Level log_level;
+
+    private final List<Channel> channels;
+    private final List<SampleSource> sources;
+    private final List<Thread> readers;
+    private volatile boolean running;
+
+    /**
+     * Constructs a ReceiverPool with the given configuration, sensitivity parameters, error correction,
+     * executor, listener, and log level.
+     * @param config Modem configuration for all channels
+     * @param signal_start_threshold Amplitude threshold to recognize the start of a signal
+     * @param signal_end_threshold Amplitude threshold to recognize the end of a signal
+     * @param ecc_factory Creates the error correction code the data was encoded with (once per channel)
+     * @param executor Executor to demodulate on (not shut down by this ReceiverPool)
+     * @param listener Listener to pass decoded messages to
+     * @param log_level Log level for this ReceiverPool
+     */
+    public ReceiverPool(ModemConfig config, int signal_start_threshold, int signal_end_threshold,
+                        Supplier<ErrorCorrection> ecc_factory, Executor executor, MessageListener listener,
+                        Log.Level log_level) {
+        this(config, signal_start_threshold, signal_end_threshold, false, ecc_factory, executor, null,
+                listener, log_level);
+    }
+
+    /**
+     * Constructs a ReceiverPool with the given configuration, sensitivity parameters, executor,
+     * listener, and log level, for data encoded with Hamming(7,4).
+     * @param config Modem configuration for all channels
+     * @param signal_start_threshold Amplitude threshold to recognize the start of a signal
+     * @param signal_end_threshold Amplitude threshold to recognize the end of a signal
+     * @param executor Executor to demodulate on (not shut down by this ReceiverPool)
+     * @param listener Listener to pass decoded messages to
+     * @param log_level Log level for this ReceiverPool
+     */
+    public ReceiverPool(ModemConfig config, int signal_start_threshold, int signal_end_threshold,
+                        Executor executor, MessageListener listener, Log.Level log_level) {
+        this(config, signal_start_threshold, signal_end_threshold, Hamming::new, executor, listener, log_level);
+    }
+
+    /**
+     * Constructs a ReceiverPool with the given configuration, error correction, listener, and log level,
+     * that demodulates on a fixed pool with one thread per available processor.
+     * Each channel tracks its own noise floor with adaptive sensitivity parameters.
+     * @param config Modem configuration for all channels
+     * @param ecc_factory Creates the error correction code the data was encoded with (once per channel)
+     * @param listener Listener to pass decoded messages to
+     * @param log_level Log level for this ReceiverPool
+     */
+    public ReceiverPool(ModemConfig config, Supplier<ErrorCorrection> ecc_factory, MessageListener listener,
+                        Log.Level log_level) {
+        this(config, config.getSignalStartThreshold(), config.getSignalEndThreshold(), true, ecc_factory, null,
+                Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()), listener, log_level);
+    }
+
+    /**
+     * Constructs a ReceiverPool with the given configuration, listener, and log level,
+     * that demodulates on a fixed pool with one thread per available processor.
+     * Each channel tracks its own noise floor with adaptive sensitivity parameters,
+     * and data is encoded with Hamming(7,4).
+     * @param config Modem configuration for all channels
+     * @param listener Listener to pass decoded messages to
+     * @param log_level Log level for this ReceiverPool
+     */
+    public ReceiverPool(ModemConfig config, MessageListener listener, Log.Level log_level) {
+        this(config, Hamming::new, listener, log_level);
+    }
+
+    /**
+     * Constructs a ReceiverPool with the given baud rate, sensitivity parameters, executor,
+     * listener, and log level.
+     * @param baud_rate Baud rate for all channels
+     * @param signal_start_threshold Amplitude threshold to recognize the start of a signal
+     * @param signal_end_threshold Amplitude threshold to recognize the end of a signal
+     * @param executor Executor to demodulate on (not shut down by this ReceiverPool)
+     * @param listener Listener to pass decoded messages to
+     * @param log_level Log level for this ReceiverPool
+     */
+    public ReceiverPool(int baud_rate, int signal_start_threshold, int signal_end_threshold,
+                        Executor executor, MessageListener listener, Log.Level log_level) {
+        this(new ModemConfig(baud_rate), signal_start_threshold, signal_end_threshold, executor, listener,
+                log_level);
+    }
+
+    /**
+     * Constructs a ReceiverPool with the given baud rate, listener, and log level,
+     * that demodulates on a fixed pool with one thread per available processor.
+     * Each channel tracks its own noise floor with adaptive sensitivity parameters.
+     * @param baud_rate Baud rate for all channels
+     * @param listener Listener to pass decoded messages to
+     * @param log_level Log level for this ReceiverPool
+     */
+    public ReceiverPool(int baud_rate, MessageListener listener, Log.Level log_level) {
+        this(new ModemConfig(baud_rate), listener, log_level);
+    }
+
+    /**
+     * Constructs a ReceiverPool with the given baud rate and listener.
+     * @param baud_rate Baud rate for all channels
+     * @param listener Listener to pass decoded messages to
+     */
+    public ReceiverPool(int baud_rate, MessageListener listener) {
+        this(baud_rate, listener, Log.Level.WARN);
+    }
+
+    /**
+     * Constructs a ReceiverPool.
+     * @param config Modem configuration for all channels
+     * @param signal_start_threshold Amplitude threshold to recognize the start of a signal
+     * @param signal_end_threshold Amplitude threshold to recognize the end of a signal
+     * @param adaptive_level True to derive the thresholds from each channel's noise floor and signal level
+     * @param ecc_factory Creates the error correction code the data was encoded with (once per channel)
+     * @param executor Executor to demodulate on, or null to use owned_executor
+     * @param owned_executor Executor to demodulate on and shut down on close, or null
+     * @param listener Listener to pass decoded messages to
+     * @param log_level Log level for this ReceiverPool
+     */
+    private ReceiverPool(ModemConfig config, int signal_start_threshold, int signal_end_threshold,
+                         boolean adaptive_level, Supplier<ErrorCorrection> ecc_factory, Executor executor,
+                         ExecutorService owned_executor, MessageListener listener, Log.Level log_level) {
+        this.config = config;
+        this.ecc_factory = ecc_factory;
+        SIGNAL_START_THRESHOLD = signal_start_threshold;
+        SIGNAL_END_THRESHOLD = signal_end_threshold;
+        ADAPTIVE_LEVEL = adaptive_level;
+        this.executor = executor != null ? executor : owned_executor;
+        this.owned_executor = owned_executor;
+        this.listener = listener;
+        this.log_level = log_level;
+        log = new Log("ReceiverPool", log_level);
+        channels = new ArrayList<>();
+        sources = new ArrayList<>();
+        readers = new ArrayList<>();
+        running = true;
+    }
+
+    /**
+     * Adds a mono source. Its reader thread starts immediately.
+     * @param source Source to receive from
+     * @return Channel number of the source
+     * @throws IllegalStateException If this ReceiverPool has been closed
+     */
+    public synchronized int addSource(SampleSource source) {
+        return addInterleavedSource(source, 1);
+    }
+
+    /**
+     * Adds a source carrying several interleaved channels. Its reader thread starts immediately.
+     * @param source Source to receive from
+     * @param n_channels Number of interleaved channels in the source
+     * @return Channel number of the source's first channel (the rest are numbered consecutively)
+     * @throws IllegalStateException If this ReceiverPool has been closed
+     */
+    public synchronized int addInterleavedSource(SampleSource source, int n_channels) {
+        if(!running) {
+            throw new IllegalStateException("ReceiverPool closed.");
+        }
+        int first = channels.size();
+        Channel[] source_channels = new Channel[n_channels];
+        for(int i = 0; i < n_channels; i++) {
+            source_channels[i] = new Channel(first + i);
+            channels.add(source_channels[i]);
+        }
+        sources.add(source);
+        Thread reader = new Thread(() -> readSource(source, source_channels),
+                "jfskmodem-rx-" + first);
+        reader.setDaemon(true);
+        readers.add(reader);
+        reader.start();
+        log.debug(() -> "Added source with " + n_channels + " channel(s) starting at channel " + first + ".");
+        return first;
+    }
+
+    /**
+     * @return Number of channels in this ReceiverPool
+     */
+    public synchronized int getChannels() { return channels.size(); }
+
+    /**
+     * Stops all reader threads, closes all sources, and shuts down the executor if
+     * this ReceiverPool created it.
+     */
+    public synchronized void close() {
+        running = false;
+        for(SampleSource source : sources) { source.close(); }
+        for(Thread reader : readers) {
+            reader.interrupt();
+            try {
+                reader.join();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if(owned_executor != null) { owned_executor.shutdown(); }
+        log.debug("Closed.");
+    }
+
+    /**
+     * Reads blocks from a source and hands each channel's frames to that channel.
+     * @param source Source to read from
+     * @param source_channels Channels interleaved in the source
+     */
+    private void readSource(SampleSource source, Channel[] source_channels) {
+        int n_channels = source_channels.length;
+        short[] frames = new short[BLOCK_FRAMES * n_channels];
+        source.start();
+        try {
+            while(running) {
+                int n_frames = source.read(frames, 0, frames.length);
+                if(n_frames < 0) { break; } /* End of source */
+                n_frames -= n_frames % n_channels;
+                for(int c = 0; c < n_channels; c++) {
+                    Block block = source_channels[c].free.take();
+                    block.length = n_frames / n_channels;
+                    for(int i = 0; i < block.length; i++) {
+                        block.frames[i] = frames[i * n_channels + c];
+                    }
+                    source_channels[c].submit(block);
+                }
+            }
+            for(Channel channel : source_channels) {
+                Block block = channel.free.take();
+                block.length = -1;
+                channel.submit(block);
+            }
+        } catch(InterruptedException e) {
+            /* Closed */
+        } finally {
+            source.stop();
+        }
+    }
+
+    /**
+     * Block of frames for a single channel.
+     */
+    private static class Block {
+        final short[] frames = new short[BLOCK_FRAMES];
+        int length;
+    }
+
+    /**
+     * Demodulation state and block queue for a single channel.
+     */
+    private class Channel {
+        private final int number;
+        private final Demodulator demodulator;
+        private final BlockingQueue<Block> free;
+        private final BlockingQueue<Block> queue;
+        private final AtomicBoolean scheduled;
+        private byte[] rec_bytes;
+        private int n_rec_bytes;
+
+        /**
+         * Constructs a Channel.
+         * @param number Channel number
+         */
+        Channel(int number) {
+            this.number = number;
+            SignalLevel level = new SignalLevel(config.getSampleRate(), SIGNAL_START_THRESHOLD,
+                    SIGNAL_END_THRESHOLD, ADAPTIVE_LEVEL);
+            demodulator = new Demodulator(config, level, SymbolDetector.create(config), ecc_factory.get(),
+                    this::onByte, log_level);
+            free = new ArrayBlockingQueue<>(QUEUE_BLOCKS);
+            queue = new ArrayBlockingQueue<>(QUEUE_BLOCKS);
+            for(int i = 0; i < QUEUE_BLOCKS; i++) { free.add(new Block()); }
+            scheduled = new AtomicBoolean();
+            rec_bytes = new byte[256];
+        }
+
+        /**
+         * Queues a block for demodulation, scheduling this channel on the executor if needed.
+         * @param block Block to demodulate (length -1 for the end of the source)
+         * @throws InterruptedException If interrupted while waiting for queue space
+         */
+        void submit(Block block) throws InterruptedException {
+            queue.put(block);
+            if(scheduled.compareAndSet(false, true)) { executor.execute(this::drain); }
+        }
+
+        /**
+         * Demodulates all queued blocks.
+         */
+        private void drain() {
+            Block block;
+            while((block = queue.poll()) != null) {
+                if(block.length < 0) {
+                    demodulator.end();
+                    if(demodulator.isDone()) { deliver(); }
+                }
+                /* Frames after the end of a signal may start the next one */
+                for(int i = 0; i < block.length;) {
+                    i += demodulator.feed(block.frames, i, block.length - i);
+                    if(demodulator.isDone()) { deliver(); }
+                }
+                free.add(block);
+            }
+            scheduled.set(false);
+            /* Blocks may have been queued after the last poll */
+            if(!queue.isEmpty() && scheduled.compareAndSet(false, true)) { executor.execute(this::drain); }
+        }
+
+        /**
+         * Passes the current message to the listener and waits for the next signal.
+         */
+        private void deliver() {
+            if(n_rec_bytes > 0) {
+                listener.onMessage(number, Arrays.copyOf(rec_bytes, n_rec_bytes));
+            }
+            n_rec_bytes = 0;
+            demodulator.reset();
+        }
+
+        /**
+         * Appends a decoded byte to the current message.
+         * @param data Decoded byte
+         */
+        private void onByte(byte data) {
+            if(n_rec_bytes == rec_bytes.length) {
+                rec_bytes = Arrays.copyOf(rec_bytes, rec_bytes.length * 2);
+            }
+            rec_bytes[n_rec_bytes++] = data;
+        }
+    }
+}
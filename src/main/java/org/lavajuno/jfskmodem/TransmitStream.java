@@ -0,0 +1,197 @@
+package org.lavajuno.jfskmodem;
+
+import org.lavajuno.jfskmodem.ecc.ErrorCorrection;
+import org.lavajuno.jfskmodem.io.SampleSink;
+import org.lavajuno.jfskmodem.log.Log;
+import org.lavajuno.jfskmodem.waveforms.ToneSynthesizer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * TransmitStream modulates bytes as they are written and writes them to a sink in bounded chunks,
+ * so playback starts before the whole message has been modulated.
+ * Bytes are encoded a block of the error correction code at a time, so a block is
+ * only modulated once it is full, or when the stream is closed.
+ * The training sequence is written to the sink as soon as the stream is opened.
+ * When double buffered, chunks are written to the sink on a dedicated thread
+ * while the next chunk is modulated.
+ * Closing the stream blocks until all written bytes have been played.
+ */
+public class TransmitStream extends OutputStream {
+    private static final int CHUNK_CODE_BITS = 64 * 14;
+    private static final ByteBuffer END_OF_STREAM = ByteBuffer.allocate(0);
+
+    private final byte[] PCM_TAIL;
+    private final int MAX_BYTE_SIZE;
+
+    private final ToneSynthesizer synthesizer;
+    private final ErrorCorrection ecc;
+    private final SampleSink sound_out;
+    private final Log log;
+
+    private final BlockingQueue<ByteBuffer> free_chunks;
+    private final BlockingQueue<ByteBuffer> full_chunks;
+    private final Thread writer;
+    private final byte[] block;
+    private final byte[] code_bits;
+    private int n_block_bytes;
+    private ByteBuffer chunk;
+    private boolean closed;
+
+    /**
+     * Constructs a TransmitStream and starts playing the training sequence.
+     * @param sound_out Sink to write frames to
+     * @param pcm_preamble Training sequence and its termination as PCM bytes
+     * @param synthesizer Synthesizer to generate symbols with (at the end of the training sequence)
+     * @param ecc Error correction code to encode bytes with
+     * @param pcm_tail Silence to write after the data as PCM bytes
+     * @param double_buffered True to write to the sink on a dedicated thread
+     * @param log_level Log level for this TransmitStream
+     */
+    TransmitStream(SampleSink sound_out, byte[] pcm_preamble, ToneSynthesizer synthesizer, ErrorCorrection ecc,
+                   byte[] pcm_tail, boolean double_buffered, Log.Level log_level) {
+        PCM_TAIL = pcm_tail;
+        this.synthesizer = synthesizer;
+        this.ecc = ecc;
+        this.sound_out = sound_out;
+        log = new Log("TransmitStream", log_level);
+        block = new byte[ecc.getBlockBytes()];
+        code_bits = new byte[ecc.getEncodedBits(block.length)];
+        MAX_BYTE_SIZE = synthesizer.getMaxBytes(code_bits.length);
+        int chunk_size = synthesizer.getMaxBytes(Math.max(CHUNK_CODE_BITS, code_bits.length * 2));
+        sound_out.flush();
+        if(double_buffered) {
+            free_chunks = new ArrayBlockingQueue<>(2);
+            full_chunks = new ArrayBlockingQueue<>(2);
+            free_chunks.add(ByteBuffer.allocate(chunk_size));
+            chunk = ByteBuffer.allocate(chunk_size);
+            writer = new Thread(() -> writeChunks(pcm_preamble), "jfskmodem-tx");
+            writer.setDaemon(true);
+            writer.start();
+        } else {
+            free_chunks = null;
+            full_chunks = null;
+            writer = null;
+            chunk = ByteBuffer.allocate(chunk_size);
+            sound_out.write(pcm_preamble, 0, pcm_preamble.length);
+        }
+        log.debug(() -> "Opened stream. (" + (double_buffered ? "Double buffered" : "Single buffered") + ")");
+    }
+
+    /**
+     * Modulates and transmits a single byte.
+     * @param b Byte to transmit (the low 8 bits are used)
+     * @throws IOException If the stream is closed or the calling thread is interrupted
+     */
+    @Override
+    public void write(int b) throws IOException {
+        if(closed) { throw new IOException("Stream closed."); }
+        block[n_block_bytes++] = (byte) b;
+        if(n_block_bytes == block.length) { encodeBlock(); }
+    }
+
+    /**
+     * Modulates and transmits bytes.
+     * @param b Bytes to transmit
+     * @param off Index of the first byte to transmit
+     * @param len Number of bytes to transmit
+     * @throws IOException If the stream is closed or the calling thread is interrupted
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        for(int i = off; i < off + len; i++) { write(b[i]); }
+    }
+
+    /**
+     * Sends all modulated frames to the sink without waiting for them to play.
+     * Bytes in a partial block stay buffered until the block is full or the stream is closed,
+     * since receivers expect every block but the last to be full.
+     * @throws IOException If the stream is closed or the calling thread is interrupted
+     */
+    @Override
+    public void flush() throws IOException {
+        if(closed) { throw new IOException("Stream closed."); }
+        if(chunk.position() > 0) { emit(); }
+    }
+
+    /**
+     * Sends all modulated frames to the sink and blocks until they have been played.
+     * @throws IOException If the calling thread is interrupted
+     */
+    @Override
+    public void close() throws IOException {
+        if(closed) { return; }
+        if(n_block_bytes > 0) { encodeBlock(); }
+        synthesizer.finishBits(chunk);
+        flush();
+        closed = true;
+        if(writer != null) {
+            try {
+                full_chunks.put(END_OF_STREAM);
+                writer.join();
+            } catch(InterruptedException e) {
+                writer.interrupt();
+                throw new InterruptedIOException("Interrupted while closing stream.");
+            }
+        }
+        sound_out.write(PCM_TAIL, 0, PCM_TAIL.length);
+        sound_out.drain();
+        log.debug("Closed stream.");
+    }
+
+    /**
+     * Encodes and modulates the buffered bytes as a block, sending the chunk
+     * to the sink if it could not hold another block.
+     * @throws InterruptedIOException If the calling thread is interrupted
+     */
+    private void encodeBlock() throws InterruptedIOException {
+        int n_bits = ecc.encodeBlock(block, 0, n_block_bytes, code_bits);
+        n_block_bytes = 0;
+        for(int i = 0; i < n_bits; i++) { synthesizer.putBits(code_bits[i], 1, chunk); }
+        if(chunk.remaining() < MAX_BYTE_SIZE) { emit(); }
+    }
+
+    /**
+     * Sends the current chunk to the sink and starts a new one.
+     * @throws InterruptedIOException If the calling thread is interrupted
+     */
+    private void emit() throws InterruptedIOException {
+        chunk.flip();
+        if(writer == null) {
+            sound_out.write(chunk.array(), 0, chunk.limit());
+            chunk.clear();
+            return;
+        }
+        try {
+            full_chunks.put(chunk);
+            chunk = free_chunks.take();
+            chunk.clear();
+        } catch(InterruptedException e) {
+            throw new InterruptedIOException("Interrupted while transmitting.");
+        }
+    }
+
+    /**
+     * Writes the training sequence and then each full chunk to the sink,
+     * until the end of the stream.
+     * @param pcm_preamble Training sequence and its termination as PCM bytes
+     */
+    private void writeChunks(byte[] pcm_preamble) {
+        sound_out.write(pcm_preamble, 0, pcm_preamble.length);
+        try {
+            while(true) {
+                ByteBuffer c = full_chunks.take();
+                if(c == END_OF_STREAM) { return; }
+                sound_out.write(c.array(), 0, c.limit());
+                free_chunks.put(c);
+            }
+        } catch(InterruptedException e) {
+            log.warn("Transmit thread interrupted.");
+        }
+    }
+}
@@ -1,29 +1,131 @@
 package org.lavajuno.jfskmodem;
 
+import org.lavajuno.jfskmodem.ecc.ErrorCorrection;
 import org.lavajuno.jfskmodem.ecc.Hamming;
+import org.lavajuno.jfskmodem.io.SampleSink;
 import org.lavajuno.jfskmodem.io.SoundOutput;
 import org.lavajuno.jfskmodem.log.Log;
-import org.lavajuno.jfskmodem.waveforms.Waveforms;
+import org.lavajuno.jfskmodem.metrics.ModemMetrics;
+import org.lavajuno.jfskmodem.waveforms.ToneSynthesizer;
 
 import javax.sound.sampled.LineUnavailableException;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BooleanSupplier;
 
 /**
- * Transmitter manages a line to the default audio output device
+ * Transmitter manages a line to the default audio output device (or another sample sink)
  * and allows you to send data over it.
+ * Asynchronous transmissions are played one at a time on a single I/O thread
+ * owned by the Transmitter, which is started on first use.
  */
 @SuppressWarnings("unused")
 public class Transmitter {
     private static final double TRAINING_TIME = 0.5;
+    private static final double CHUNK_TIME = 0.05;
 
-    private final int N_TS_CYCLES;
-    private final List<Short> TONE_SPACE;
-    private final List<Short> TONE_MARK;
-    private final List<Short> TS_CYCLE;
+    private final byte[] PCM_PREAMBLE;
+    private final byte[] PCM_TAIL;
+    private final int PREAMBLE_PHASE;
+    private final int PREAMBLE_TIMING;
+    private final int CHUNK_BYTES;
 
-    private final SoundOutput sound_out;
+    private final ModemConfig config;
+    private final ToneSynthesizer synthesizer;
+    private final ErrorCorrection ecc;
+    private final SampleSink sound_out;
     private final Log log;
+    private final Log.Level log_level;
+
+    private final byte[] code_bits;
+    private ByteBuffer data_buffer;
+    private ExecutorService io_executor;
+    private volatile ModemMetrics metrics;
+    private volatile boolean closed;
+
+    /**
+     * Constructs a Transmitter that writes to the given sink, with the given configuration,
+     * error correction, and log level.
+     * @param sink Sink to write frames to
+     * @param config Modem configuration for this Transmitter
+     * @param ecc Error correction code to encode data with
+     * @param log_level Log level for this Transmitter
+     */
+    public Transmitter(SampleSink sink, ModemConfig config, ErrorCorrection ecc, Log.Level log_level) {
+        this.config = config;
+        this.ecc = ecc;
+        synthesizer = new ToneSynthesizer(config);
+        PCM_PREAMBLE = getPreamble(config, synthesizer);
+        /* Data continues the phase of the training sequence */
+        PREAMBLE_PHASE = synthesizer.getPhase();
+        PREAMBLE_TIMING = synthesizer.getTiming();
+        /* Silence after the data lets receivers see the end of the signal without an idle line */
+        PCM_TAIL = new byte[config.getSymbolFrames() * 2 * 2];
+        CHUNK_BYTES = (int) (config.getSampleRate() * CHUNK_TIME) * 2;
+        sound_out = sink;
+        log = new Log("Transmitter", log_level);
+        this.log_level = log_level;
+        code_bits = new byte[ecc.getEncodedBits(ecc.getBlockBytes())];
+        data_buffer = ByteBuffer.allocate(synthesizer.getMaxBytes(code_bits.length));
+    }
+
+    /**
+     * Constructs a Transmitter that writes to the given sink, with the given configuration and log level,
+     * that encodes data with Hamming(7,4).
+     * @param sink Sink to write frames to
+     * @param config Modem configuration for this Transmitter
+     * @param log_level Log level for this Transmitter
+     */
+    public Transmitter(SampleSink sink, ModemConfig config, Log.Level log_level) {
+        this(sink, config, new Hamming(), log_level);
+    }
+
+    /**
+     * Constructs a Transmitter that writes to the given sink, with the given baud rate and log level.
+     * @param sink Sink to write frames to
+     * @param baud_rate Baud rate for this Transmitter
+     * @param log_level Log level for this Transmitter
+     */
+    public Transmitter(SampleSink sink, int baud_rate, Log.Level log_level) {
+        this(sink, new ModemConfig(baud_rate), log_level);
+    }
+
+    /**
+     * Constructs a Transmitter that writes to the given sink, with the given baud rate.
+     * @param sink Sink to write frames to
+     * @param baud_rate Baud rate for this Transmitter
+     */
+    public Transmitter(SampleSink sink, int baud_rate) {
+        this(sink, baud_rate, Log.Level.WARN);
+    }
+
+    /**
+     * Constructs a Transmitter with the given configuration, error correction, and log level,
+     * that plays on the default audio output device at the configuration's sample rate.
+     * @param config Modem configuration for this Transmitter
+     * @param ecc Error correction code to encode data with
+     * @param log_level Log level for this Transmitter
+     * @throws LineUnavailableException If the audio output line could not be created
+     */
+    public Transmitter(ModemConfig config, ErrorCorrection ecc, Log.Level log_level)
+            throws LineUnavailableException {
+        this(new SoundOutput(config.getSampleRate(), log_level), config, ecc, log_level);
+    }
+
+    /**
+     * Constructs a Transmitter with the given configuration and log level, that plays
+     * on the default audio output device at the configuration's sample rate.
+     * @param config Modem configuration for this Transmitter
+     * @param log_level Log level for this Transmitter
+     * @throws LineUnavailableException If the audio output line could not be created
+     */
+    public Transmitter(ModemConfig config, Log.Level log_level) throws LineUnavailableException {
+        this(new SoundOutput(config.getSampleRate(), log_level), config, log_level);
+    }
 
     /**
      * Constructs a Transmitter with the given baud rate and log level.
@@ -32,12 +134,7 @@ public class Transmitter {
      * @throws LineUnavailableException If the audio output line could not be created
      */
     public Transmitter(int baud_rate, Log.Level log_level) throws LineUnavailableException {
-        N_TS_CYCLES = (int) (baud_rate * TRAINING_TIME / 2);
-        TONE_SPACE = Waveforms.getSpaceTone(baud_rate);
-        TONE_MARK = Waveforms.getMarkTone(baud_rate);
-        TS_CYCLE = Waveforms.getTrainingCycle(baud_rate);
-        sound_out = new SoundOutput();
-        log = new Log("Transmitter", log_level);
+        this(new SoundOutput(), baud_rate, log_level);
     }
 
     /**
@@ -51,35 +148,212 @@ public class Transmitter {
 
     /**
      * Encodes and transmits the given bytes on this Transmitter's audio output.
+     * Blocks until the bytes have been played.
      * @param data Bytes to transmit
      */
     public void transmit(byte[] data) {
-        log.info("Transmitting " + data.length + " bytes.");
-        ArrayList<Short> frames = new ArrayList<>();
+        play(data, () -> false);
+    }
+
+    /**
+     * Encodes and transmits the given bytes on this Transmitter's I/O thread, after any
+     * transmissions already queued. Cancelling the returned future skips the transmission
+     * if it has not started, or stops it within a moment and discards unplayed frames if it has.
+     * This Transmitter must not be used synchronously until the future completes.
+     * @param data Bytes to transmit (not copied, so they must not be changed until the future completes)
+     * @return Future completed when the bytes have been played
+     */
+    public CompletableFuture<Void> transmitAsync(byte[] data) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            getExecutor().execute(() -> {
+                try {
+                    /* Skipped if cancelled while queued */
+                    if(!closed && !future.isDone() && play(data, () -> closed || future.isDone())) {
+                        future.complete(null);
+                    } else {
+                        future.completeExceptionally(new IllegalStateException("Transmitter closed."));
+                    }
+                } catch(RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch(RejectedExecutionException e) {
+            future.completeExceptionally(new IllegalStateException("Transmitter closed."));
+        }
+        return future;
+    }
+
+    /**
+     * Opens a stream that modulates and transmits bytes as they are written.
+     * The training sequence starts playing immediately, and closing the stream
+     * blocks until all written bytes have been played.
+     * This Transmitter must not be used for anything else until the stream is closed.
+     * @param double_buffered True to write to the sink on a dedicated thread
+     *                        while the next chunk is modulated
+     * @return Stream to write bytes to
+     */
+    public TransmitStream openStream(boolean double_buffered) {
+        log.info("Opening transmit stream.");
+        synthesizer.restore(PREAMBLE_PHASE, PREAMBLE_TIMING);
+        return new TransmitStream(sound_out, PCM_PREAMBLE, synthesizer, ecc, PCM_TAIL, double_buffered, log_level);
+    }
+
+    /**
+     * Opens a single-buffered stream that modulates and transmits bytes as they are written.
+     * @return Stream to write bytes to
+     */
+    public TransmitStream openStream() { return openStream(false); }
+
+    /**
+     * Sets the metrics this Transmitter records to.
+     * Transmissions that have already started record to the metrics set when they started.
+     * @param metrics Metrics to record to, or null to record none
+     */
+    public void setMetrics(ModemMetrics metrics) { this.metrics = metrics; }
+
+    /**
+     * @return Modem configuration of this Transmitter
+     */
+    public ModemConfig getConfig() { return config; }
+
+    /**
+     * @return Error correction code of this Transmitter
+     */
+    public ErrorCorrection getErrorCorrection() { return ecc; }
+
+    /**
+     * @return Number of symbols of the training sequence (and its termination) before the data
+     */
+    public int getPreambleSymbols() { return getPreambleSymbols(config); }
+
+    /**
+     * Generates the training sequence and its termination, starting at zero phase
+     * @param config Modem configuration to use for generation
+     * @param synthesizer Synthesizer to generate with (left at the end of the training sequence)
+     * @return Training sequence as PCM bytes
+     */
+    private static byte[] getPreamble(ModemConfig config, ToneSynthesizer synthesizer) {
+        int n_ts_cycles = (int) (config.getBaudRate() * TRAINING_TIME / 2);
+        int mark = config.getMarkSymbol();
+        int space = config.getSpaceSymbol();
+        int n_symbols = getPreambleSymbols(config);
+        ByteBuffer buffer = ByteBuffer.allocate(synthesizer.getMaxBytes(n_symbols * config.getBitsPerSymbol()));
+        synthesizer.reset();
         // Generate training sequence frames
-        for(int i = 0; i < N_TS_CYCLES; i++) { frames.addAll(TS_CYCLE); }
+        for(int i = 0; i < n_ts_cycles; i++) {
+            synthesizer.putSymbol(mark, buffer);
+            synthesizer.putSymbol(space, buffer);
+        }
         // Generate training sequence termination frames
-        frames.addAll(TONE_MARK);
-        for(int i = 0; i < 3; i++) { frames.addAll(TONE_SPACE); }
+        synthesizer.putSymbol(mark, buffer);
+        for(int i = 0; i < 3; i++) { synthesizer.putSymbol(space, buffer); }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * Gets the number of symbols of the training sequence and its termination
+     * @param config Modem configuration to use for generation
+     * @return Number of symbols
+     */
+    private static int getPreambleSymbols(ModemConfig config) {
+        return (int) (config.getBaudRate() * TRAINING_TIME / 2) * 2 + 4;
+    }
+
+    /**
+     * Encodes and transmits the given bytes, writing them to the sink a chunk at a time
+     * so that the transmission can be stopped between chunks.
+     * @param data Bytes to transmit
+     * @param cancelled Checked between chunks; true to stop transmitting
+     * @return True if all bytes were played, false if the transmission was stopped
+     */
+    private boolean play(byte[] data, BooleanSupplier cancelled) {
+        log.info(() -> "Transmitting " + data.length + " bytes.");
+        ModemMetrics metrics = this.metrics;
+        long modulation_start = metrics != null ? System.nanoTime() : 0;
+        int block_bytes = ecc.getBlockBytes();
+        int n_code_bits = 0;
+        for(int i = 0; i < data.length; i += block_bytes) {
+            n_code_bits += ecc.getEncodedBits(Math.min(block_bytes, data.length - i));
+        }
+        int n_bytes = synthesizer.getMaxBytes(n_code_bits);
+        if(data_buffer.capacity() < n_bytes) {
+            data_buffer = ByteBuffer.allocate(Math.max(data_buffer.capacity() * 2, n_bytes));
+        }
+        data_buffer.clear();
+        synthesizer.restore(PREAMBLE_PHASE, PREAMBLE_TIMING);
         // Generate data frames
-        for(byte i : data) {
-            byte[] bits = Hamming.encodeByte(i);
-            for(byte j : bits) {
-                if(j == 0) {
-                    frames.addAll(TONE_SPACE);
-                } else {
-                    frames.addAll(TONE_MARK);
-                }
-            }
+        for(int i = 0; i < data.length; i += block_bytes) {
+            int n_block_bits = ecc.encodeBlock(data, i, Math.min(block_bytes, data.length - i), code_bits);
+            for(int j = 0; j < n_block_bits; j++) { synthesizer.putBits(code_bits[j], 1, data_buffer); }
+        }
+        synthesizer.finishBits(data_buffer);
+        data_buffer.flip();
+        log.debug(() -> "Transmitting " + (PCM_PREAMBLE.length + data_buffer.limit() + PCM_TAIL.length) / 2
+                + " frames.");
+        long playback_start = 0;
+        if(metrics != null) {
+            playback_start = System.nanoTime();
+            metrics.getModulationTime().record(playback_start - modulation_start);
+        }
+        // Play training sequence, data frames and tail
+        sound_out.flush();
+        if(!write(PCM_PREAMBLE, PCM_PREAMBLE.length, cancelled)
+                || !write(data_buffer.array(), data_buffer.limit(), cancelled)) {
+            sound_out.flush();
+            log.info("Transmission cancelled.");
+            return false;
+        }
+        sound_out.write(PCM_TAIL, 0, PCM_TAIL.length);
+        sound_out.drain();
+        if(metrics != null) {
+            metrics.getPlaybackTime().recordSince(playback_start);
+            metrics.getTransmissions().increment();
+            metrics.getBytesTransmitted().add(data.length);
+            metrics.getFramesTransmitted().add((PCM_PREAMBLE.length + data_buffer.limit() + PCM_TAIL.length) / 2);
+        }
+        return true;
+    }
 
+    /**
+     * Writes PCM bytes to the sink a chunk at a time until they are written or cancelled.
+     * @param buffer PCM bytes to write
+     * @param length Number of bytes to write
+     * @param cancelled Checked before each chunk; true to stop writing
+     * @return True if all bytes were written
+     */
+    private boolean write(byte[] buffer, int length, BooleanSupplier cancelled) {
+        for(int i = 0; i < length; i += CHUNK_BYTES) {
+            if(cancelled.getAsBoolean()) { return false; }
+            sound_out.write(buffer, i, Math.min(CHUNK_BYTES, length - i));
         }
-        log.debug("Transmitting " + frames.size() + " frames.");
-        // Play frames
-        sound_out.play(frames);
+        return true;
     }
 
     /**
-     * Closes this Transmitter's audio output line.
+     * @return Executor for this Transmitter's I/O thread, started on first use
      */
-    public void close() { sound_out.close(); }
+    private synchronized ExecutorService getExecutor() {
+        if(io_executor == null) {
+            io_executor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "jfskmodem-tx-io");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return io_executor;
+    }
+
+    /**
+     * Closes this Transmitter's audio output line (or sample sink).
+     * Asynchronous transmissions that have not finished are stopped, and their futures
+     * complete exceptionally.
+     */
+    public void close() {
+        closed = true;
+        synchronized(this) {
+            if(io_executor != null) { io_executor.shutdown(); }
+        }
+        sound_out.close();
+    }
 }
@@ -0,0 +1,61 @@
+package org.lavajuno.jfskmodem.channel;
+
+import java.util.Random;
+
+/**
+ * Channel simulates the path between a Transmitter's output and a Receiver's input,
+ * by applying a sequence of impairments (such as noise, echoes, and clock offsets)
+ * to the transmitted frames, in order. The result is rounded and clipped to 16 bits.
+ * A Channel can be used from several threads at once.
+ */
+@SuppressWarnings("unused")
+public class Channel {
+    private final Impairment[] impairments;
+
+    /**
+     * Constructs a Channel that applies the given impairments, in order.
+     * @param impairments Impairments to apply
+     */
+    public Channel(Impairment... impairments) {
+        this.impairments = impairments.clone();
+    }
+
+    /**
+     * Passes frames through this Channel.
+     * @param frames Transmitted frames (not modified)
+     * @param offset Index of the first frame to pass
+     * @param length Number of frames to pass
+     * @param random Source of randomness for the impairments
+     * @return Received frames
+     */
+    public short[] apply(short[] frames, int offset, int length, Random random) {
+        double[] signal = new double[length];
+        for(int i = 0; i < length; i++) { signal[i] = frames[offset + i]; }
+        for(Impairment impairment : impairments) { signal = impairment.apply(signal, random); }
+        short[] res = new short[signal.length];
+        for(int i = 0; i < res.length; i++) {
+            res[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(signal[i])));
+        }
+        return res;
+    }
+
+    /**
+     * Passes frames through this Channel.
+     * @param frames Transmitted frames (not modified)
+     * @param random Source of randomness for the impairments
+     * @return Received frames
+     */
+    public short[] apply(short[] frames, Random random) {
+        return apply(frames, 0, frames.length, random);
+    }
+
+    /**
+     * Passes frames through this Channel, with reproducible randomness.
+     * @param frames Transmitted frames (not modified)
+     * @param seed Seed for the impairments' randomness
+     * @return Received frames
+     */
+    public short[] apply(short[] frames, long seed) {
+        return apply(frames, 0, frames.length, new Random(seed));
+    }
+}
@@ -0,0 +1,324 @@
+package org.lavajuno.jfskmodem.channel;
+
+import org.lavajuno.jfskmodem.Demodulator;
+import org.lavajuno.jfskmodem.ModemConfig;
+import org.lavajuno.jfskmodem.Transmitter;
+import org.lavajuno.jfskmodem.ecc.ErrorCorrection;
+import org.lavajuno.jfskmodem.ecc.Hamming;
+import org.lavajuno.jfskmodem.io.MemorySink;
+import org.lavajuno.jfskmodem.log.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * ChannelSweep measures how well messages survive a simulated channel, by sending random
+ * payloads through a Transmitter, a Channel, and a Demodulator at each combination of
+ * configuration (such as baud rate) and SNR, and counting the bits and messages received wrong.
+ * Trials are split across a ForkJoinPool. Each trial's randomness comes from the sweep's seed,
+ * the point, and the trial's index, so results do not depend on how the trials were split.
+ * <p>
+ * Signals are either received as a Receiver would, recognized by their amplitude and synchronized
+ * by their training sequence, or decoded with their known timing. At low SNRs a Receiver misses
+ * signals, or loses their data to a single wrong training symbol, before any bit errors reach
+ * error correction, so the error rates of different codes only differ with Detection.KNOWN_TIMING.
+ * Missed signals are counted separately from bit and frame errors.
+ */
+@SuppressWarnings("unused")
+public class ChannelSweep {
+    /**
+     * ChannelFactory creates the channel to simulate for a configuration and SNR.
+     */
+    @FunctionalInterface
+    public interface ChannelFactory {
+        /**
+         * Creates the channel for a point of the sweep.
+         * @param config Modem configuration of the signal
+         * @param snr_db Signal-to-noise ratio (dB)
+         * @return Channel to pass the signal through
+         */
+        Channel create(ModemConfig config, double snr_db);
+    }
+
+    /**
+     * How the start of each signal and its data are found
+     */
+    public enum Detection {
+        /**
+         * As a Receiver would: by amplitude, with the configuration's adaptive SignalLevel,
+         * then by the symbol clock and termination of the training sequence.
+         * Each message is surrounded by silence (noise, after the channel).
+         */
+        SIGNAL_LEVEL,
+        /**
+         * From the known start of the signal and length of its training sequence,
+         * with the signal decoded to its last frame. This measures the detector and error correction alone.
+         */
+        KNOWN_TIMING
+    }
+
+    /* Trials run sequentially by each fork/join task */
+    private static final int TRIALS_PER_TASK = 4;
+    /* Silence around each message, so that the receiver hears the channel's noise before the signal */
+    private static final int PADDING_TIME = 100; // (ms)
+    /* Frames fed to the demodulator at a time, as a receiver would */
+    private static final int BLOCK_FRAMES = 1024;
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private final ModemConfig[] configs;
+    private final double[] snrs;
+    private final ChannelFactory channel_factory;
+    private final Supplier<ErrorCorrection> ecc_factory;
+    private final int payload_size;
+    private final int n_trials;
+    private final long seed;
+    private final Detection detection;
+
+    /**
+     * Constructs a ChannelSweep.
+     * @param configs Modem configurations to sweep
+     * @param snrs Signal-to-noise ratios to sweep (dB)
+     * @param channel_factory Creates the channel for each configuration and SNR
+     * @param ecc_factory Creates the error correction code to encode and decode with (once per thread)
+     * @param payload_size Number of bytes in each message
+     * @param n_trials Number of messages to send at each point
+     * @param seed Seed for the payloads and the channels' randomness
+     * @param detection How the start of each signal and its data are found
+     * @throws IllegalArgumentException If the payload size or number of trials is not positive
+     */
+    public ChannelSweep(ModemConfig[] configs, double[] snrs, ChannelFactory channel_factory,
+                        Supplier<ErrorCorrection> ecc_factory, int payload_size, int n_trials, long seed,
+                        Detection detection) throws IllegalArgumentException {
+        if(payload_size <= 0) {
+            throw new IllegalArgumentException("Invalid payload size.");
+        }
+        if(n_trials <= 0) {
+            throw new IllegalArgumentException("Invalid number of trials.");
+        }
+        this.configs = configs.clone();
+        this.snrs = snrs.clone();
+        this.channel_factory = channel_factory;
+        this.ecc_factory = ecc_factory;
+        this.payload_size = payload_size;
+        this.n_trials = n_trials;
+        this.seed = seed;
+        this.detection = detection;
+    }
+
+    /**
+     * Constructs a ChannelSweep that receives signals as a Receiver would.
+     * @param configs Modem configurations to sweep
+     * @param snrs Signal-to-noise ratios to sweep (dB)
+     * @param channel_factory Creates the channel for each configuration and SNR
+     * @param ecc_factory Creates the error correction code to encode and decode with (once per thread)
+     * @param payload_size Number of bytes in each message
+     * @param n_trials Number of messages to send at each point
+     * @param seed Seed for the payloads and the channels' randomness
+     * @throws IllegalArgumentException If the payload size or number of trials is not positive
+     */
+    public ChannelSweep(ModemConfig[] configs, double[] snrs, ChannelFactory channel_factory,
+                        Supplier<ErrorCorrection> ecc_factory, int payload_size, int n_trials, long seed)
+            throws IllegalArgumentException {
+        this(configs, snrs, channel_factory, ecc_factory, payload_size, n_trials, seed, Detection.SIGNAL_LEVEL);
+    }
+
+    /**
+     * Constructs a ChannelSweep over baud rates at the default sample rate, on a channel that
+     * only adds white Gaussian noise, for data encoded with Hamming(7,4).
+     * @param baud_rates Baud rates to sweep
+     * @param snrs Signal-to-noise ratios to sweep (dB)
+     * @param payload_size Number of bytes in each message
+     * @param n_trials Number of messages to send at each point
+     * @throws IllegalArgumentException If a baud rate is invalid, or the payload size
+     *                                  or number of trials is not positive
+     */
+    public ChannelSweep(int[] baud_rates, double[] snrs, int payload_size, int n_trials)
+            throws IllegalArgumentException {
+        this(getConfigs(baud_rates), snrs, (config, snr) -> new Channel(GaussianNoise.forSnr(config, snr)),
+                Hamming::new, payload_size, n_trials, 0);
+    }
+
+    /**
+     * Runs the sweep on the common ForkJoinPool.
+     * @return Result for each point, by configuration and then by SNR
+     */
+    public List<SweepResult> run() { return run(ForkJoinPool.commonPool()); }
+
+    /**
+     * Runs the sweep on the given ForkJoinPool.
+     * @param pool Pool to run trials on
+     * @return Result for each point, by configuration and then by SNR
+     */
+    public List<SweepResult> run(ForkJoinPool pool) {
+        List<ForkJoinTask<SweepResult>> tasks = new ArrayList<>();
+        for(int i = 0; i < configs.length; i++) {
+            for(int j = 0; j < snrs.length; j++) {
+                Channel channel = channel_factory.create(configs[i], snrs[j]);
+                tasks.add(pool.submit(new TrialTask(i * snrs.length + j, configs[i], snrs[j], channel,
+                        0, n_trials)));
+            }
+        }
+        List<SweepResult> res = new ArrayList<>();
+        for(ForkJoinTask<SweepResult> task : tasks) { res.add(task.join()); }
+        return res;
+    }
+
+    /**
+     * @param baud_rates Baud rates
+     * @return ModemConfig for each baud rate at the default sample rate
+     * @throws IllegalArgumentException If a baud rate is invalid
+     */
+    private static ModemConfig[] getConfigs(int[] baud_rates) throws IllegalArgumentException {
+        ModemConfig[] res = new ModemConfig[baud_rates.length];
+        for(int i = 0; i < baud_rates.length; i++) { res[i] = new ModemConfig(baud_rates[i]); }
+        return res;
+    }
+
+    /**
+     * Mixes the bits of a seed, so that nearby seeds give unrelated random sequences.
+     * @param x Seed to mix
+     * @return Mixed seed
+     */
+    private static long mix(long x) {
+        x = (x ^ (x >>> 33)) * 0xff51afd7ed558ccdL;
+        x = (x ^ (x >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return x ^ (x >>> 33);
+    }
+
+    /**
+     * TrialTask runs a range of trials at one point of the sweep, splitting it in half
+     * until each part is small enough to run on one thread.
+     */
+    private class TrialTask extends RecursiveTask<SweepResult> {
+        private static final long serialVersionUID = 1L;
+
+        private final int point;
+        private final ModemConfig config;
+        private final double snr;
+        private final Channel channel;
+        private final int first;
+        private final int end;
+
+        /**
+         * Constructs a TrialTask.
+         * @param point Index of the point in the sweep
+         * @param config Modem configuration to send with
+         * @param snr Signal-to-noise ratio of the channel (dB)
+         * @param channel Channel to pass the signal through
+         * @param first Index of the first trial to run
+         * @param end Index after the last trial to run
+         */
+        TrialTask(int point, ModemConfig config, double snr, Channel channel, int first, int end) {
+            this.point = point;
+            this.config = config;
+            this.snr = snr;
+            this.channel = channel;
+            this.first = first;
+            this.end = end;
+        }
+
+        @Override
+        protected SweepResult compute() {
+            if(end - first > TRIALS_PER_TASK) {
+                int middle = (first + end) >>> 1;
+                TrialTask second = new TrialTask(point, config, snr, channel, middle, end);
+                second.fork();
+                SweepResult res = new TrialTask(point, config, snr, channel, first, middle).compute();
+                return res.merge(second.join());
+            }
+            MemorySink sink = new MemorySink();
+            Transmitter transmitter = new Transmitter(sink, config, ecc_factory.get(), Log.Level.FATAL);
+            Payload received = new Payload(payload_size);
+            Demodulator demodulator = new Demodulator(config, ecc_factory.get(), received, Log.Level.FATAL);
+            boolean known_timing = detection == Detection.KNOWN_TIMING;
+            byte[] payload = new byte[payload_size];
+            int padding = known_timing ? 0 : config.getSampleRate() * PADDING_TIME / 1000;
+            long n_bit_errors = 0;
+            int n_frame_errors = 0;
+            int n_missed = 0;
+            long decode_time = 0;
+            for(int trial = first; trial < end; trial++) {
+                Random random = new Random(mix(mix(seed + point * GOLDEN_GAMMA) + trial * GOLDEN_GAMMA));
+                random.nextBytes(payload);
+                sink.reset();
+                sink.write(new short[padding], 0, padding);
+                transmitter.transmit(payload);
+                sink.write(new short[padding], 0, padding);
+                short[] frames = channel.apply(sink.getFrames(), random);
+                received.reset();
+                if(known_timing) {
+                    demodulator.startKnownSignal(transmitter.getPreambleSymbols());
+                } else {
+                    demodulator.reset();
+                }
+                long start = System.nanoTime();
+                for(int i = 0; i < frames.length && !demodulator.isDone(); i += BLOCK_FRAMES) {
+                    demodulator.feed(frames, i, Math.min(BLOCK_FRAMES, frames.length - i));
+                }
+                demodulator.end();
+                decode_time += System.nanoTime() - start;
+                if(received.n_bytes == 0) {
+                    n_missed++;
+                    continue;
+                }
+                int n_errors = received.countBitErrors(payload);
+                n_bit_errors += n_errors;
+                /* Signals with known timing are decoded through their tail, so only the payload is compared */
+                if(n_errors > 0 || (received.n_extra > 0 && !known_timing)) { n_frame_errors++; }
+            }
+            int n_detected = end - first - n_missed;
+            return new SweepResult(config, snr, end - first, n_missed, (long) n_detected * payload_size * 8,
+                    n_bit_errors, n_frame_errors, decode_time);
+        }
+    }
+
+    /**
+     * Payload collects the bytes decoded from one message.
+     */
+    private static class Payload implements Demodulator.Listener {
+        private final byte[] data;
+        private int n_bytes;
+        private int n_extra;
+
+        /**
+         * Constructs an empty Payload.
+         * @param size Number of bytes expected
+         */
+        Payload(int size) {
+            data = new byte[size];
+        }
+
+        @Override
+        public void onByte(byte b) {
+            if(n_bytes < data.length) {
+                data[n_bytes++] = b;
+            } else {
+                n_extra++;
+            }
+        }
+
+        /**
+         * Discards the bytes collected so far.
+         */
+        void reset() {
+            n_bytes = 0;
+            n_extra = 0;
+        }
+
+        /**
+         * Counts the bits that differ from the expected bytes, counting every bit of a missing byte.
+         * @param expected Bytes that were sent
+         * @return Number of bit errors
+         */
+        int countBitErrors(byte[] expected) {
+            int n_errors = (expected.length - n_bytes) * 8;
+            for(int i = 0; i < n_bytes; i++) { n_errors += Integer.bitCount((data[i] ^ expected[i]) & 0xff); }
+            return n_errors;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.lavajuno.jfskmodem.channel;
+
+import java.util.Random;
+
+/**
+ * Clipping limits every frame of a signal to a maximum magnitude, as an overdriven
+ * amplifier or sound card input would. Signals are always clipped to 16 bits
+ * when they leave the Channel, so this is only needed for lower limits.
+ */
+public class Clipping implements Impairment {
+    private final double LIMIT;
+
+    /**
+     * Constructs a Clipping.
+     * @param limit Largest magnitude of a frame, in 16-bit sample units
+     * @throws IllegalArgumentException If the limit is not positive
+     */
+    public Clipping(double limit) throws IllegalArgumentException {
+        if(!(limit > 0)) {
+            throw new IllegalArgumentException("Invalid clipping limit.");
+        }
+        LIMIT = limit;
+    }
+
+    @Override
+    public double[] apply(double[] signal, Random random) {
+        for(int i = 0; i < signal.length; i++) { signal[i] = Math.max(-LIMIT, Math.min(LIMIT, signal[i])); }
+        return signal;
+    }
+}
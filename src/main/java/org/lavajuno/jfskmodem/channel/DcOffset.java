@@ -0,0 +1,29 @@
+package org.lavajuno.jfskmodem.channel;
+
+import java.util.Random;
+
+/**
+ * DcOffset adds a constant to every frame of a signal, as a sound card input with a bias would.
+ */
+public class DcOffset implements Impairment {
+    private final double OFFSET;
+
+    /**
+     * Constructs a DcOffset.
+     * @param offset Constant to add, in 16-bit sample units
+     */
+    public DcOffset(double offset) {
+        OFFSET = offset;
+    }
+
+    @Override
+    public double[] apply(double[] signal, Random random) {
+        for(int i = 0; i < signal.length; i++) { signal[i] += OFFSET; }
+        return signal;
+    }
+
+    /**
+     * @return Constant added to each frame, in 16-bit sample units
+     */
+    public double getOffset() { return OFFSET; }
+}
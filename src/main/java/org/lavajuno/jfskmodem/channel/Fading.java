@@ -0,0 +1,47 @@
+package org.lavajuno.jfskmodem.channel;
+
+import java.util.Random;
+
+/**
+ * Fading varies the level of a signal slowly up and down, as a mobile radio moving
+ * through a changing field would hear it. The gain follows a raised cosine between
+ * 0 dB and the fade depth, starting at a random point in its cycle.
+ */
+public class Fading implements Impairment {
+    private final int SAMPLE_RATE;
+    private final double RATE;
+    private final double DEPTH;
+
+    /**
+     * Constructs a Fading.
+     * @param sample_rate Sample rate of the signal (Hz)
+     * @param rate Number of fades per second (Hz)
+     * @param depth Attenuation at the bottom of each fade (dB)
+     * @throws IllegalArgumentException If any parameter is out of range
+     */
+    public Fading(int sample_rate, double rate, double depth) throws IllegalArgumentException {
+        if(sample_rate <= 0) {
+            throw new IllegalArgumentException("Invalid sample rate.");
+        }
+        if(!(rate > 0) || rate * 2 > sample_rate) {
+            throw new IllegalArgumentException("Invalid fading rate.");
+        }
+        if(!(depth >= 0)) {
+            throw new IllegalArgumentException("Invalid fading depth.");
+        }
+        SAMPLE_RATE = sample_rate;
+        RATE = rate;
+        DEPTH = depth;
+    }
+
+    @Override
+    public double[] apply(double[] signal, Random random) {
+        double phase = random.nextDouble() * 2 * Math.PI;
+        double step = 2 * Math.PI * RATE / SAMPLE_RATE;
+        for(int i = 0; i < signal.length; i++) {
+            double attenuation = DEPTH * (1 - Math.cos(phase + step * i)) / 2;
+            signal[i] *= Math.pow(10, -attenuation / 20);
+        }
+        return signal;
+    }
+}
@@ -0,0 +1,43 @@
+package org.lavajuno.jfskmodem.channel;
+
+import java.util.Random;
+
+/**
+ * Gain scales a signal, by a constant or by a gain that changes steadily from
+ * the first frame to the last, as a radio's volume or automatic gain control would.
+ */
+public class Gain implements Impairment {
+    private final double START_GAIN;
+    private final double END_GAIN;
+
+    /**
+     * Constructs a Gain that changes across the signal.
+     * @param start_gain Gain at the first frame (dB)
+     * @param end_gain Gain at the last frame (dB)
+     */
+    public Gain(double start_gain, double end_gain) {
+        START_GAIN = start_gain;
+        END_GAIN = end_gain;
+    }
+
+    /**
+     * Constructs a constant Gain.
+     * @param gain Gain (dB)
+     */
+    public Gain(double gain) {
+        this(gain, gain);
+    }
+
+    @Override
+    public double[] apply(double[] signal, Random random) {
+        double step = signal.length > 1 ? (END_GAIN - START_GAIN) / (signal.length - 1) : 0;
+        /* The gain in dB changes linearly, so the scale changes by a constant factor each frame */
+        double scale = Math.pow(10, START_GAIN / 20);
+        double factor = Math.pow(10, step / 20);
+        for(int i = 0; i < signal.length; i++) {
+            signal[i] *= scale;
+            scale *= factor;
+        }
+        return signal;
+    }
+}
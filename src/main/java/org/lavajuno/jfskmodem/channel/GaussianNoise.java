@@ -0,0 +1,50 @@
+package org.lavajuno.jfskmodem.channel;
+
+import org.lavajuno.jfskmodem.ModemConfig;
+
+import java.util.Random;
+
+/**
+ * GaussianNoise adds white Gaussian noise to every frame of a signal.
+ */
+public class GaussianNoise implements Impairment {
+    private final double RMS;
+
+    /**
+     * Constructs a GaussianNoise with the given level.
+     * @param rms Standard deviation of the noise, in 16-bit sample units
+     * @throws IllegalArgumentException If the level is negative
+     */
+    public GaussianNoise(double rms) throws IllegalArgumentException {
+        if(!(rms >= 0)) {
+            throw new IllegalArgumentException("Invalid noise level.");
+        }
+        RMS = rms;
+    }
+
+    /**
+     * Creates a GaussianNoise for a signal-to-noise ratio, measured against the power of the
+     * configuration's tones over the whole band (up to half the sample rate). The same SNR
+     * therefore leaves less energy per bit at higher baud rates, as on a real channel.
+     * @param config Modem configuration of the signal
+     * @param snr_db Signal-to-noise ratio (dB)
+     * @return GaussianNoise for the SNR
+     */
+    public static GaussianNoise forSnr(ModemConfig config, double snr_db) {
+        double amplitude = config.getAmplitude();
+        double signal_power = config.getShape() == ModemConfig.Shape.SQUARE ? amplitude * amplitude
+                : amplitude * amplitude / 2;
+        return new GaussianNoise(Math.sqrt(signal_power / Math.pow(10, snr_db / 10)));
+    }
+
+    @Override
+    public double[] apply(double[] signal, Random random) {
+        for(int i = 0; i < signal.length; i++) { signal[i] += random.nextGaussian() * RMS; }
+        return signal;
+    }
+
+    /**
+     * @return Standard deviation of the noise, in 16-bit sample units
+     */
+    public double getRms() { return RMS; }
+}
@@ -0,0 +1,18 @@
+package org.lavajuno.jfskmodem.channel;
+
+import java.util.Random;
+
+/**
+ * Impairment is one effect of a simulated channel on a signal, such as noise or an echo.
+ * Signals are passed between impairments as frames scaled like 16-bit samples,
+ * but not rounded or clipped until they leave the Channel.
+ */
+public interface Impairment {
+    /**
+     * Applies this impairment to a signal.
+     * @param signal Frames of the signal, which may be modified
+     * @param random Source of randomness for this signal
+     * @return Impaired frames (the given array, or a new one if the length changes)
+     */
+    double[] apply(double[] signal, Random random);
+}
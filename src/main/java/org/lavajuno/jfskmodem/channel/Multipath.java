@@ -0,0 +1,56 @@
+package org.lavajuno.jfskmodem.channel;
+
+import java.util.Random;
+
+/**
+ * Multipath adds delayed and scaled copies of a signal to itself, as reflections
+ * that arrive after the direct path would. The signal is extended by the longest delay,
+ * so that the tail of each echo is kept.
+ */
+public class Multipath implements Impairment {
+    private final int[] DELAYS;
+    private final double[] GAINS;
+
+    /**
+     * Constructs a Multipath with the given echoes.
+     * @param delays Delay of each echo after the direct path (frames)
+     * @param gains Gain of each echo relative to the direct path (negative to invert it)
+     * @throws IllegalArgumentException If the arrays have different lengths, or a delay is not positive
+     */
+    public Multipath(int[] delays, double[] gains) throws IllegalArgumentException {
+        if(delays.length != gains.length) {
+            throw new IllegalArgumentException("Invalid number of gains.");
+        }
+        for(int delay : delays) {
+            if(delay <= 0) {
+                throw new IllegalArgumentException("Invalid delay.");
+            }
+        }
+        DELAYS = delays.clone();
+        GAINS = gains.clone();
+    }
+
+    /**
+     * Constructs a Multipath with one echo.
+     * @param delay Delay of the echo after the direct path (frames)
+     * @param gain Gain of the echo relative to the direct path (negative to invert it)
+     * @throws IllegalArgumentException If the delay is not positive
+     */
+    public Multipath(int delay, double gain) throws IllegalArgumentException {
+        this(new int[] { delay }, new double[] { gain });
+    }
+
+    @Override
+    public double[] apply(double[] signal, Random random) {
+        int max_delay = 0;
+        for(int delay : DELAYS) { max_delay = Math.max(max_delay, delay); }
+        double[] res = new double[signal.length + max_delay];
+        System.arraycopy(signal, 0, res, 0, signal.length);
+        for(int i = 0; i < DELAYS.length; i++) {
+            int delay = DELAYS[i];
+            double gain = GAINS[i];
+            for(int j = 0; j < signal.length; j++) { res[j + delay] += signal[j] * gain; }
+        }
+        return res;
+    }
+}
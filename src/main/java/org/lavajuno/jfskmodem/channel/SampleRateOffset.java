@@ -0,0 +1,49 @@
+package org.lavajuno.jfskmodem.channel;
+
+import java.util.Random;
+
+/**
+ * SampleRateOffset resamples a signal as if it were recorded by a sound card whose clock
+ * runs at a slightly different rate from the one that played it. Frames between the
+ * original samples are linearly interpolated.
+ */
+public class SampleRateOffset implements Impairment {
+    /**
+     * Largest offset allowed (ppm)
+     */
+    public static final double MAX_OFFSET = 100000;
+
+    private final double OFFSET;
+
+    /**
+     * Constructs a SampleRateOffset.
+     * @param offset Offset of the recording clock from the playback clock (ppm).
+     *               Positive offsets record more frames than were played.
+     * @throws IllegalArgumentException If the offset is larger than MAX_OFFSET
+     */
+    public SampleRateOffset(double offset) throws IllegalArgumentException {
+        if(!(Math.abs(offset) <= MAX_OFFSET)) {
+            throw new IllegalArgumentException("Invalid sample rate offset.");
+        }
+        OFFSET = offset;
+    }
+
+    @Override
+    public double[] apply(double[] signal, Random random) {
+        if(signal.length < 2) { return signal; }
+        double step = 1 / (1 + OFFSET * 1e-6);
+        double[] res = new double[(int) ((signal.length - 1) / step) + 1];
+        for(int i = 0; i < res.length; i++) {
+            double x = i * step;
+            int k = Math.min((int) x, signal.length - 2);
+            double mu = x - k;
+            res[i] = signal[k] * (1 - mu) + signal[k + 1] * mu;
+        }
+        return res;
+    }
+
+    /**
+     * @return Offset of the recording clock from the playback clock (ppm)
+     */
+    public double getOffset() { return OFFSET; }
+}
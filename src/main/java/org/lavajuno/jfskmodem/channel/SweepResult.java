@@ -0,0 +1,119 @@
+package org.lavajuno.jfskmodem.channel;
+
+import org.lavajuno.jfskmodem.ModemConfig;
+
+/**
+ * SweepResult holds the outcome of the trials a ChannelSweep ran at one configuration and SNR:
+ * the rate of missed signals (from which nothing was decoded), the bit error rate and frame
+ * (message) error rate after error correction of the signals that were not missed,
+ * and the time taken to decode each payload bit.
+ */
+public class SweepResult {
+    private final ModemConfig CONFIG;
+    private final double SNR;
+    private final int N_TRIALS;
+    private final int N_MISSED;
+    private final long N_BITS;
+    private final long N_BIT_ERRORS;
+    private final int N_FRAME_ERRORS;
+    private final long DECODE_TIME;
+
+    /**
+     * Constructs a SweepResult.
+     * @param config Modem configuration the trials used
+     * @param snr Signal-to-noise ratio of the channel (dB)
+     * @param n_trials Number of messages sent
+     * @param n_missed Number of messages from which nothing was decoded
+     * @param n_bits Number of payload bits sent in the messages that were not missed
+     * @param n_bit_errors Number of those payload bits received wrong or not received
+     * @param n_frame_errors Number of those messages not received exactly
+     * @param decode_time Total time spent decoding (ns)
+     */
+    public SweepResult(ModemConfig config, double snr, int n_trials, int n_missed, long n_bits,
+                       long n_bit_errors, int n_frame_errors, long decode_time) {
+        CONFIG = config;
+        SNR = snr;
+        N_TRIALS = n_trials;
+        N_MISSED = n_missed;
+        N_BITS = n_bits;
+        N_BIT_ERRORS = n_bit_errors;
+        N_FRAME_ERRORS = n_frame_errors;
+        DECODE_TIME = decode_time;
+    }
+
+    /**
+     * Combines this SweepResult with one for other trials at the same point.
+     * @param other SweepResult to combine with
+     * @return SweepResult for the trials of both
+     */
+    SweepResult merge(SweepResult other) {
+        return new SweepResult(CONFIG, SNR, N_TRIALS + other.N_TRIALS, N_MISSED + other.N_MISSED,
+                N_BITS + other.N_BITS, N_BIT_ERRORS + other.N_BIT_ERRORS, N_FRAME_ERRORS + other.N_FRAME_ERRORS,
+                DECODE_TIME + other.DECODE_TIME);
+    }
+
+    /**
+     * @return Modem configuration the trials used
+     */
+    public ModemConfig getConfig() { return CONFIG; }
+
+    /**
+     * @return Signal-to-noise ratio of the channel (dB)
+     */
+    public double getSnrDb() { return SNR; }
+
+    /**
+     * @return Number of messages sent
+     */
+    public int getTrials() { return N_TRIALS; }
+
+    /**
+     * @return Number of messages from which nothing was decoded
+     */
+    public int getMissed() { return N_MISSED; }
+
+    /**
+     * @return Number of payload bits sent in the messages that were not missed
+     */
+    public long getBits() { return N_BITS; }
+
+    /**
+     * @return Number of payload bits received wrong or not received, in the messages that were not missed
+     */
+    public long getBitErrors() { return N_BIT_ERRORS; }
+
+    /**
+     * @return Number of messages not received exactly, of those that were not missed
+     */
+    public int getFrameErrors() { return N_FRAME_ERRORS; }
+
+    /**
+     * @return Fraction of messages from which nothing was decoded
+     */
+    public double getMissRate() { return N_TRIALS > 0 ? (double) N_MISSED / N_TRIALS : 0; }
+
+    /**
+     * @return Fraction of payload bits received wrong or not received, in the messages that were not missed
+     */
+    public double getBitErrorRate() { return N_BITS > 0 ? (double) N_BIT_ERRORS / N_BITS : 0; }
+
+    /**
+     * @return Fraction of the messages that were not missed that were not received exactly
+     */
+    public double getFrameErrorRate() {
+        int n_detected = N_TRIALS - N_MISSED;
+        return n_detected > 0 ? (double) N_FRAME_ERRORS / n_detected : 0;
+    }
+
+    /**
+     * @return Mean time spent decoding each payload bit of the messages that were not missed (ns)
+     */
+    public double getDecodeTimePerBit() { return N_BITS > 0 ? (double) DECODE_TIME / N_BITS : 0; }
+
+    @Override
+    public String toString() {
+        return String.format("%d baud, SNR %.1f dB, missed %.2e, BER %.2e, FER %.2e, %.1f ns/bit (%d trials)",
+                CONFIG.getBaudRate(), SNR, getMissRate(), getBitErrorRate(), getFrameErrorRate(),
+                getDecodeTimePerBit(), N_TRIALS);
+    }
+}
@@ -0,0 +1,166 @@
+package org.lavajuno.jfskmodem.detector;
+
+import org.lavajuno.jfskmodem.ModemConfig;
+
+/**
+ * BandFilter passes the band of frequencies a received signal occupies and attenuates
+ * frequencies outside it, such as the tones a full-duplex modem transmits itself.
+ * It is a Butterworth high-pass filter at the lower edge of the band followed by a
+ * Butterworth low-pass filter at the upper edge, each made of cascaded biquad sections.
+ * Frames are filtered in place, one at a time, so a signal can be filtered in blocks
+ * of any size without allocation.
+ */
+public class BandFilter {
+    /**
+     * Order of the high-pass and low-pass filters (attenuation rises by 96 dB per octave)
+     */
+    public static final int ORDER = 16;
+
+    private final double LOW_FREQUENCY;
+    private final double HIGH_FREQUENCY;
+
+    /* Coefficients of each biquad section, normalized so that a0 = 1 */
+    private final double[] B0;
+    private final double[] B1;
+    private final double[] B2;
+    private final double[] A1;
+    private final double[] A2;
+
+    /* State of each section (transposed direct form II) */
+    private final double[] z1;
+    private final double[] z2;
+
+    /**
+     * Constructs a BandFilter that passes the given band.
+     * @param sample_rate Sample rate of the filtered signal (Hz)
+     * @param low_frequency Lower edge of the band (Hz), or 0 for no high-pass filter
+     * @param high_frequency Upper edge of the band (Hz)
+     * @throws IllegalArgumentException If the band is empty or not below the Nyquist frequency
+     */
+    public BandFilter(int sample_rate, double low_frequency, double high_frequency)
+            throws IllegalArgumentException {
+        if(sample_rate <= 0) {
+            throw new IllegalArgumentException("Invalid sample rate.");
+        }
+        if(low_frequency < 0 || high_frequency <= low_frequency || high_frequency * 2 >= sample_rate) {
+            throw new IllegalArgumentException("Invalid band.");
+        }
+        LOW_FREQUENCY = low_frequency;
+        HIGH_FREQUENCY = high_frequency;
+        int n_sections = low_frequency > 0 ? ORDER : ORDER / 2;
+        B0 = new double[n_sections];
+        B1 = new double[n_sections];
+        B2 = new double[n_sections];
+        A1 = new double[n_sections];
+        A2 = new double[n_sections];
+        z1 = new double[n_sections];
+        z2 = new double[n_sections];
+        for(int k = 0; k < ORDER / 2; k++) {
+            /* Q of each pole pair of a Butterworth filter */
+            double q = 1 / (2 * Math.cos(Math.PI * (2 * k + 1) / (2 * ORDER)));
+            setSection(k, sample_rate, high_frequency, q, false);
+            if(low_frequency > 0) { setSection(ORDER / 2 + k, sample_rate, low_frequency, q, true); }
+        }
+    }
+
+    /**
+     * Constructs a BandFilter that passes the tones of the given configuration, with
+     * half the baud rate to spare on either side for the sidebands of keying.
+     * @param config Modem configuration of the filtered signal
+     * @throws IllegalArgumentException If the band reaches the Nyquist frequency
+     */
+    public BandFilter(ModemConfig config) throws IllegalArgumentException {
+        this(config.getSampleRate(), Math.max(0, getLowestTone(config) - config.getBaudRate() / 2.0),
+                getHighestTone(config) + config.getBaudRate() / 2.0);
+    }
+
+    /**
+     * Filters frames in place.
+     * @param frames Frames to filter
+     * @param offset Index of the first frame to filter
+     * @param length Number of frames to filter
+     */
+    public void filter(short[] frames, int offset, int length) {
+        int n_sections = B0.length;
+        for(int i = offset; i < offset + length; i++) {
+            double x = frames[i];
+            for(int k = 0; k < n_sections; k++) {
+                double y = B0[k] * x + z1[k];
+                z1[k] = B1[k] * x - A1[k] * y + z2[k];
+                z2[k] = B2[k] * x - A2[k] * y;
+                x = y;
+            }
+            frames[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(x)));
+        }
+    }
+
+    /**
+     * Clears the state of this BandFilter, as if it had only filtered silence.
+     */
+    public void reset() {
+        for(int k = 0; k < B0.length; k++) {
+            z1[k] = 0;
+            z2[k] = 0;
+        }
+    }
+
+    /**
+     * Checks whether a frequency is inside the band this BandFilter passes.
+     * @param frequency Frequency to check (Hz)
+     * @return True if the frequency is inside the band
+     */
+    public boolean passes(double frequency) {
+        return frequency >= LOW_FREQUENCY && frequency <= HIGH_FREQUENCY;
+    }
+
+    /**
+     * @return Lower edge of the band (Hz)
+     */
+    public double getLowFrequency() { return LOW_FREQUENCY; }
+
+    /**
+     * @return Upper edge of the band (Hz)
+     */
+    public double getHighFrequency() { return HIGH_FREQUENCY; }
+
+    /**
+     * Sets the coefficients of a biquad section (from the Audio EQ Cookbook).
+     * @param k Index of the section
+     * @param sample_rate Sample rate (Hz)
+     * @param frequency Cutoff frequency (Hz)
+     * @param q Quality factor of the section
+     * @param high_pass True for a high-pass section, false for a low-pass section
+     */
+    private void setSection(int k, int sample_rate, double frequency, double q, boolean high_pass) {
+        double w0 = 2 * Math.PI * frequency / sample_rate;
+        double cos = Math.cos(w0);
+        double alpha = Math.sin(w0) / (2 * q);
+        double a0 = 1 + alpha;
+        double b = (high_pass ? 1 + cos : 1 - cos) / 2;
+        B0[k] = b / a0;
+        B1[k] = (high_pass ? -2 * b : 2 * b) / a0;
+        B2[k] = b / a0;
+        A1[k] = -2 * cos / a0;
+        A2[k] = (1 - alpha) / a0;
+    }
+
+    /**
+     * @param config Modem configuration
+     * @return Frequency of the configuration's lowest tone (Hz)
+     */
+    private static int getLowestTone(ModemConfig config) {
+        int lowest = Integer.MAX_VALUE;
+        for(int i = 0; i < config.getTones(); i++) { lowest = Math.min(lowest, config.getToneFrequency(i)); }
+        return lowest;
+    }
+
+    /**
+     * @param config Modem configuration
+     * @return Frequency of the configuration's highest tone (Hz)
+     */
+    private static int getHighestTone(ModemConfig config) {
+        int highest = 0;
+        for(int i = 0; i < config.getTones(); i++) { highest = Math.max(highest, config.getToneFrequency(i)); }
+        return highest;
+    }
+}
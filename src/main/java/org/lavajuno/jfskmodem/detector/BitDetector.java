@@ -0,0 +1,40 @@
+package org.lavajuno.jfskmodem.detector;
+
+import org.lavajuno.jfskmodem.ModemConfig;
+
+/**
+ * BitDetector decides which bit a single symbol of a binary FSK signal represents.
+ * Symbol 0 is space and symbol 1 is mark.
+ */
+public interface BitDetector extends SymbolDetector {
+    /**
+     * Gets a soft decision for the symbol starting at the given frame.
+     * @param frames Received frames
+     * @param offset Index of the first frame of the symbol
+     * @return Confidence between -1 (certainly space) and 1 (certainly mark)
+     */
+    double detect(short[] frames, int offset);
+
+    /**
+     * Gets a hard decision for the symbol starting at the given frame.
+     * @param frames Received frames
+     * @param offset Index of the first frame of the symbol
+     * @return Decoded bit
+     */
+    default byte detectBit(short[] frames, int offset) {
+        return (byte) (detect(frames, offset) > 0 ? 1 : 0);
+    }
+
+    @Override
+    default int detectSymbol(short[] frames, int offset) {
+        return detectBit(frames, offset);
+    }
+
+    @Override
+    default void detectSoftBits(short[] frames, int offset, ModemConfig config, float[] soft, int soft_offset) {
+        soft[soft_offset] = (float) detect(frames, offset);
+    }
+
+    @Override
+    default int getTones() { return 2; }
+}
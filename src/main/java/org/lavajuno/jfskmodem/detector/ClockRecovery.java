@@ -0,0 +1,216 @@
+package org.lavajuno.jfskmodem.detector;
+
+/**
+ * ClockRecovery finds the offset of a training cycle within a received signal.
+ * Every offset in the scan window is scored by its normalized correlation with the
+ * training cycle. Piecewise-constant (square) training cycles are correlated with
+ * running sums over the window, and other training cycles are correlated with an FFT,
+ * so the cost grows linearly (or as N log N) with the scan width instead of as
+ * the scan width times the length of the training cycle.
+ */
+public class ClockRecovery {
+    /**
+     * Largest number of constant runs in a training cycle to correlate with running sums
+     */
+    private static final int MAX_RUNS = 32;
+
+    private final int SCAN_WIDTH;
+    private final int CYCLE_FRAMES;
+    private final int N_OFFSETS;
+    private final double CYCLE_NORM;
+
+    /* Running-sum correlation */
+    private final int[] RUN_STARTS;
+    private final int[] RUN_ENDS;
+    private final int[] RUN_VALUES;
+    private final long[] sums;
+    private final long[] sq_sums;
+
+    /* FFT correlation */
+    private final int FFT_SIZE;
+    private final double[] CYCLE_RE;
+    private final double[] CYCLE_IM;
+    private final double[] fft_re;
+    private final double[] fft_im;
+
+    private final double[] scores;
+    private double score;
+
+    /**
+     * Constructs a ClockRecovery for the given training cycle and scan width.
+     * @param cycle Training cycle frames
+     * @param scan_width Number of frames to scan for the training cycle
+     * @throws IllegalArgumentException If the scan width is not longer than the training cycle
+     */
+    public ClockRecovery(short[] cycle, int scan_width) throws IllegalArgumentException {
+        if(scan_width <= cycle.length) {
+            throw new IllegalArgumentException("Scan width must be longer than the training cycle.");
+        }
+        SCAN_WIDTH = scan_width;
+        CYCLE_FRAMES = cycle.length;
+        N_OFFSETS = scan_width - cycle.length;
+        long norm = 0;
+        int n_runs = 1;
+        for(int i = 0; i < cycle.length; i++) {
+            norm += (long) cycle[i] * cycle[i];
+            if(i > 0 && cycle[i] != cycle[i - 1]) { n_runs++; }
+        }
+        CYCLE_NORM = Math.sqrt(norm);
+        sums = new long[scan_width + 1];
+        sq_sums = new long[scan_width + 1];
+        scores = new double[N_OFFSETS];
+
+        if(n_runs <= MAX_RUNS) {
+            RUN_STARTS = new int[n_runs];
+            RUN_ENDS = new int[n_runs];
+            RUN_VALUES = new int[n_runs];
+            for(int i = 0, r = 0; i < cycle.length; i++) {
+                if(i > 0 && cycle[i] != cycle[i - 1]) {
+                    RUN_ENDS[r] = i;
+                    r++;
+                    RUN_STARTS[r] = i;
+                }
+                RUN_VALUES[r] = cycle[i];
+            }
+            RUN_ENDS[n_runs - 1] = cycle.length;
+            FFT_SIZE = 0;
+            CYCLE_RE = null;
+            CYCLE_IM = null;
+            fft_re = null;
+            fft_im = null;
+        } else {
+            RUN_STARTS = null;
+            RUN_ENDS = null;
+            RUN_VALUES = null;
+            FFT_SIZE = Integer.highestOneBit(scan_width - 1) << 1;
+            CYCLE_RE = new double[FFT_SIZE];
+            CYCLE_IM = new double[FFT_SIZE];
+            for(int i = 0; i < cycle.length; i++) { CYCLE_RE[i] = cycle[i]; }
+            fft(CYCLE_RE, CYCLE_IM, false);
+            fft_re = new double[FFT_SIZE];
+            fft_im = new double[FFT_SIZE];
+        }
+    }
+
+    /**
+     * @return Number of frames that must be available to recover the clock
+     */
+    public int getScanWidth() { return SCAN_WIDTH; }
+
+    /**
+     * @return Normalized correlation (between -1 and 1) of the best match found by the last recovery
+     */
+    public double getScore() { return score; }
+
+    /**
+     * Finds the offset of the training cycle that best matches the received signal.
+     * @param frames Received frames (at least getScanWidth() frames from the offset)
+     * @param offset Index of the first frame to scan
+     * @return Offset of the best match from the first frame, with sub-frame precision
+     */
+    public double recover(short[] frames, int offset) {
+        sums[0] = 0;
+        sq_sums[0] = 0;
+        for(int i = 0; i < SCAN_WIDTH; i++) {
+            int frame = frames[offset + i];
+            sums[i + 1] = sums[i] + frame;
+            sq_sums[i + 1] = sq_sums[i] + (long) frame * frame;
+        }
+        if(RUN_VALUES != null) {
+            correlateRuns();
+        } else {
+            correlateFft(frames, offset);
+        }
+
+        int best = 0;
+        for(int i = 0; i < N_OFFSETS; i++) {
+            double energy = sq_sums[i + CYCLE_FRAMES] - sq_sums[i];
+            scores[i] = energy == 0 ? 0 : scores[i] / (CYCLE_NORM * Math.sqrt(energy));
+            if(scores[i] > scores[best]) { best = i; }
+        }
+        score = scores[best];
+
+        /* Fit a parabola through the peak and its neighbours */
+        if(best == 0 || best == N_OFFSETS - 1) { return best; }
+        double prev = scores[best - 1];
+        double next = scores[best + 1];
+        double curvature = prev - 2 * score + next;
+        if(curvature >= 0) { return best; }
+        return best + 0.5 * (prev - next) / curvature;
+    }
+
+    /**
+     * Correlates the training cycle at every offset using running sums over its constant runs.
+     */
+    private void correlateRuns() {
+        for(int i = 0; i < N_OFFSETS; i++) {
+            long total = 0;
+            for(int r = 0; r < RUN_VALUES.length; r++) {
+                total += RUN_VALUES[r] * (sums[i + RUN_ENDS[r]] - sums[i + RUN_STARTS[r]]);
+            }
+            scores[i] = total;
+        }
+    }
+
+    /**
+     * Correlates the training cycle at every offset using an FFT.
+     * @param frames Received frames
+     * @param offset Index of the first frame to scan
+     */
+    private void correlateFft(short[] frames, int offset) {
+        for(int i = 0; i < FFT_SIZE; i++) {
+            fft_re[i] = i < SCAN_WIDTH ? frames[offset + i] : 0;
+            fft_im[i] = 0;
+        }
+        fft(fft_re, fft_im, false);
+        /* Multiply by the conjugate of the training cycle's spectrum */
+        for(int i = 0; i < FFT_SIZE; i++) {
+            double re = fft_re[i] * CYCLE_RE[i] + fft_im[i] * CYCLE_IM[i];
+            double im = fft_im[i] * CYCLE_RE[i] - fft_re[i] * CYCLE_IM[i];
+            fft_re[i] = re;
+            fft_im[i] = im;
+        }
+        fft(fft_re, fft_im, true);
+        for(int i = 0; i < N_OFFSETS; i++) { scores[i] = fft_re[i] / FFT_SIZE; }
+    }
+
+    /**
+     * Computes an in-place radix-2 FFT (without scaling).
+     * @param re Real parts (length is a power of two)
+     * @param im Imaginary parts
+     * @param inverse True to compute the inverse transform
+     */
+    private static void fft(double[] re, double[] im, boolean inverse) {
+        int n = re.length;
+        for(int i = 1, j = 0; i < n; i++) {
+            int bit = n >> 1;
+            for(; (j & bit) != 0; bit >>= 1) { j ^= bit; }
+            j ^= bit;
+            if(i < j) {
+                double t = re[i]; re[i] = re[j]; re[j] = t;
+                t = im[i]; im[i] = im[j]; im[j] = t;
+            }
+        }
+        for(int len = 2; len <= n; len <<= 1) {
+            double angle = 2 * Math.PI / len * (inverse ? 1 : -1);
+            double w_re = Math.cos(angle);
+            double w_im = Math.sin(angle);
+            for(int i = 0; i < n; i += len) {
+                double u_re = 1, u_im = 0;
+                for(int j = 0; j < len / 2; j++) {
+                    int a = i + j;
+                    int b = a + len / 2;
+                    double v_re = re[b] * u_re - im[b] * u_im;
+                    double v_im = re[b] * u_im + im[b] * u_re;
+                    re[b] = re[a] - v_re;
+                    im[b] = im[a] - v_im;
+                    re[a] += v_re;
+                    im[a] += v_im;
+                    double t = u_re * w_re - u_im * w_im;
+                    u_im = u_re * w_im + u_im * w_re;
+                    u_re = t;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.lavajuno.jfskmodem.detector;
+
+import org.lavajuno.jfskmodem.ModemConfig;
+
+/**
+ * CorrelationDetector detects bits by correlating each symbol against sine and cosine
+ * references at the mark and space frequencies and comparing the energy at each.
+ * The comparison is insensitive to the phase of the received tones.
+ */
+public class CorrelationDetector implements BitDetector {
+    private final int BIT_FRAMES;
+    private final float[] SPACE_COS;
+    private final float[] SPACE_SIN;
+    private final float[] MARK_COS;
+    private final float[] MARK_SIN;
+
+    /**
+     * Constructs a CorrelationDetector for the given configuration.
+     * Symbols are correlated over their whole number of frames.
+     * @param config Modem configuration to detect bits for
+     */
+    public CorrelationDetector(ModemConfig config) {
+        BIT_FRAMES = config.getSymbolFrames();
+        SPACE_COS = new float[BIT_FRAMES];
+        SPACE_SIN = new float[BIT_FRAMES];
+        MARK_COS = new float[BIT_FRAMES];
+        MARK_SIN = new float[BIT_FRAMES];
+        double space_step = 2 * Math.PI * config.getSpaceFrequency() / config.getSampleRate();
+        double mark_step = 2 * Math.PI * config.getMarkFrequency() / config.getSampleRate();
+        for(int i = 0; i < BIT_FRAMES; i++) {
+            SPACE_COS[i] = (float) Math.cos(space_step * i);
+            SPACE_SIN[i] = (float) Math.sin(space_step * i);
+            MARK_COS[i] = (float) Math.cos(mark_step * i);
+            MARK_SIN[i] = (float) Math.sin(mark_step * i);
+        }
+    }
+
+    /**
+     * Constructs a CorrelationDetector for the given baud rate, with the default
+     * 48000 Hz configuration (space is one cycle per symbol, mark is two).
+     * @param baud_rate Baud rate to detect bits at
+     * @throws IllegalArgumentException If the baud rate is not a factor of 48000
+     */
+    public CorrelationDetector(int baud_rate) throws IllegalArgumentException {
+        this(new ModemConfig(baud_rate));
+    }
+
+    @Override
+    public double detect(short[] frames, int offset) {
+        float space_i = 0, space_q = 0, mark_i = 0, mark_q = 0;
+        for(int i = 0; i < BIT_FRAMES; i++) {
+            float frame = frames[offset + i];
+            space_i += frame * SPACE_COS[i];
+            space_q += frame * SPACE_SIN[i];
+            mark_i += frame * MARK_COS[i];
+            mark_q += frame * MARK_SIN[i];
+        }
+        double space_energy = (double) space_i * space_i + (double) space_q * space_q;
+        double mark_energy = (double) mark_i * mark_i + (double) mark_q * mark_q;
+        double total = space_energy + mark_energy;
+        return total == 0 ? 0 : (mark_energy - space_energy) / total;
+    }
+
+    @Override
+    public int getSymbolFrames() { return BIT_FRAMES; }
+}
@@ -0,0 +1,74 @@
+package org.lavajuno.jfskmodem.detector;
+
+import org.lavajuno.jfskmodem.waveforms.Waveforms;
+
+/**
+ * DiffDetector detects bits by hard-limiting each symbol and comparing its
+ * mean difference from the mark and space tones. Frames are sliced at a fixed level,
+ * or at the slicing level of a SignalLevel so that quiet signals are limited alike.
+ */
+public class DiffDetector implements BitDetector {
+    private static final int DEFAULT_SLICING_LEVEL = 512;
+
+    private final int BIT_FRAMES;
+    private final short[] TONE_SPACE;
+    private final short[] TONE_MARK;
+
+    private final SignalLevel level;
+    private final short[] amp_frames;
+
+    /**
+     * Constructs a DiffDetector for the given baud rate, that slices frames at the given
+     * signal level tracker's slicing level.
+     * @param baud_rate Baud rate to detect bits at
+     * @param level Signal level tracker to get the slicing level from, or null to slice at a fixed level
+     * @throws IllegalArgumentException If the baud rate is not a factor of 48000
+     */
+    public DiffDetector(int baud_rate, SignalLevel level) throws IllegalArgumentException {
+        TONE_SPACE = Waveforms.getSpaceToneFrames(baud_rate);
+        TONE_MARK = Waveforms.getMarkToneFrames(baud_rate);
+        BIT_FRAMES = TONE_SPACE.length;
+        this.level = level;
+        amp_frames = new short[BIT_FRAMES];
+    }
+
+    /**
+     * Constructs a DiffDetector for the given baud rate, that slices frames at a fixed level.
+     * @param baud_rate Baud rate to detect bits at
+     * @throws IllegalArgumentException If the baud rate is not a factor of 48000
+     */
+    public DiffDetector(int baud_rate) throws IllegalArgumentException {
+        this(baud_rate, null);
+    }
+
+    @Override
+    public double detect(short[] frames, int offset) {
+        amplify(frames, offset, level != null ? level.getSlicingLevel() : DEFAULT_SLICING_LEVEL, amp_frames);
+        int space_diff = Waveforms.getDiff(TONE_SPACE, 0, amp_frames, 0, BIT_FRAMES);
+        int mark_diff = Waveforms.getDiff(TONE_MARK, 0, amp_frames, 0, BIT_FRAMES);
+        return (space_diff - mark_diff) / 65535.0;
+    }
+
+    @Override
+    public int getSymbolFrames() { return BIT_FRAMES; }
+
+    /**
+     * Amplifies (hard-limits) BIT_FRAMES frames of a received signal
+     * @param frames Received frames
+     * @param offset Index of the first frame to amplify
+     * @param slicing_level Level to slice frames at
+     * @param output Array to store amplified frames in
+     */
+    private static void amplify(short[] frames, int offset, int slicing_level, short[] output) {
+        for(int i = 0; i < output.length; i++) {
+            short frame = frames[offset + i];
+            if(frame > slicing_level) {
+                output[i] = (short) 32767;
+            } else if(frame < -slicing_level) {
+                output[i] = (short) -32768;
+            } else {
+                output[i] = (short) 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.lavajuno.jfskmodem.detector;
+
+import org.lavajuno.jfskmodem.ModemConfig;
+
+/**
+ * MfskDetector detects M-ary FSK symbols by measuring the energy of each symbol at every
+ * tone frequency with the Goertzel algorithm, and choosing the tone with the most energy.
+ * All tones are measured in the same pass over the frames.
+ * Soft bits compare the strongest tone carrying a 1 with the strongest tone carrying a 0
+ * in each bit position.
+ */
+public class MfskDetector implements SymbolDetector {
+    private final int SYMBOL_FRAMES;
+    private final float[] COEFFICIENTS;
+
+    private final float[] s1;
+    private final float[] s2;
+    private final double[] energies;
+
+    /**
+     * Constructs an MfskDetector for the given configuration.
+     * Symbols are measured over their whole number of frames.
+     * @param config Modem configuration to detect symbols for
+     */
+    public MfskDetector(ModemConfig config) {
+        SYMBOL_FRAMES = config.getSymbolFrames();
+        int n_tones = config.getTones();
+        COEFFICIENTS = new float[n_tones];
+        for(int i = 0; i < n_tones; i++) {
+            COEFFICIENTS[i] = (float) (2 * Math.cos(2 * Math.PI * config.getToneFrequency(i) / config.getSampleRate()));
+        }
+        s1 = new float[n_tones];
+        s2 = new float[n_tones];
+        energies = new double[n_tones];
+    }
+
+    @Override
+    public int detectSymbol(short[] frames, int offset) {
+        measure(frames, offset);
+        int best = 0;
+        for(int t = 1; t < energies.length; t++) {
+            if(energies[t] > energies[best]) { best = t; }
+        }
+        return best;
+    }
+
+    @Override
+    public void detectSoftBits(short[] frames, int offset, ModemConfig config, float[] soft, int soft_offset) {
+        measure(frames, offset);
+        int n_bits = config.getBitsPerSymbol();
+        for(int i = 0; i < n_bits; i++) {
+            double one = 0;
+            double zero = 0;
+            for(int t = 0; t < energies.length; t++) {
+                if(((config.getBits(t) >> (n_bits - 1 - i)) & 1) == 0) {
+                    zero = Math.max(zero, energies[t]);
+                } else {
+                    one = Math.max(one, energies[t]);
+                }
+            }
+            soft[soft_offset + i] = one + zero == 0 ? 0 : (float) ((one - zero) / (one + zero));
+        }
+    }
+
+    /**
+     * Gets the energy of each tone measured by the last detection.
+     * @return Energy of each tone (not copied, overwritten by the next detection)
+     */
+    public double[] getEnergies() { return energies; }
+
+    @Override
+    public int getSymbolFrames() { return SYMBOL_FRAMES; }
+
+    @Override
+    public int getTones() { return COEFFICIENTS.length; }
+
+    /**
+     * Measures the energy of a symbol at every tone frequency.
+     * @param frames Received frames
+     * @param offset Index of the first frame of the symbol
+     */
+    private void measure(short[] frames, int offset) {
+        int n_tones = COEFFICIENTS.length;
+        for(int t = 0; t < n_tones; t++) {
+            s1[t] = 0;
+            s2[t] = 0;
+        }
+        for(int i = offset; i < offset + SYMBOL_FRAMES; i++) {
+            float frame = frames[i];
+            for(int t = 0; t < n_tones; t++) {
+                float s = frame + COEFFICIENTS[t] * s1[t] - s2[t];
+                s2[t] = s1[t];
+                s1[t] = s;
+            }
+        }
+        for(int t = 0; t < n_tones; t++) {
+            energies[t] = (double) s1[t] * s1[t] + (double) s2[t] * s2[t]
+                    - (double) COEFFICIENTS[t] * s1[t] * s2[t];
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package org.lavajuno.jfskmodem.detector;
+
+import org.lavajuno.jfskmodem.ModemConfig;
+
+/**
+ * SignalLevel tracks the noise floor and signal level of a received signal, and derives
+ * the amplitude thresholds to recognize the start and end of a signal and the level to
+ * slice (hard-limit) frames at. The noise floor is tracked from the amplitude of the frames
+ * between signals, falling quickly and rising slowly so that short bursts barely raise it,
+ * and the signal level is tracked from the amplitude of each symbol. The end of an adaptive
+ * signal is recognized from a short envelope of the symbol amplitudes rather than a single
+ * symbol, since the amplitude of short noisy symbols varies widely. All levels are running
+ * averages, so tracking takes constant time and no allocation.
+ * An adaptive SignalLevel uses its initial thresholds until it has measured the noise floor
+ * for a moment, and a fixed SignalLevel always uses them.
+ */
+public class SignalLevel {
+    /**
+     * Ratio of the start threshold to the noise floor (about 3.5 dB)
+     */
+    public static final double START_RATIO = 1.5;
+
+    /**
+     * Lowest adaptive start threshold, so that near-silent lines do not start signals
+     */
+    public static final int MIN_START_THRESHOLD = 256;
+
+    /**
+     * Fraction of the way from the noise floor to the signal level to put the end threshold at
+     */
+    public static final double END_FRACTION = 0.25;
+
+    /* Time constants in seconds */
+    private static final double NOISE_RISE_TIME = 1.0;
+    private static final double NOISE_FALL_TIME = 0.05;
+    private static final double SIGNAL_TIME = 0.1;
+    private static final double ENVELOPE_TIME = 0.001;
+    private static final double WARMUP_TIME = 0.1;
+
+    /**
+     * Slicing level for full-scale signals, and before any signal has been measured
+     */
+    private static final int DEFAULT_SLICING_LEVEL = 512;
+    private static final int FULL_SCALE = 32767;
+
+    private final int SIGNAL_START_THRESHOLD;
+    private final int SIGNAL_END_THRESHOLD;
+    private final boolean ADAPTIVE;
+    private final double NOISE_RISE_FRAMES;
+    private final double NOISE_FALL_FRAMES;
+    private final double SIGNAL_FRAMES;
+    private final double ENVELOPE_FRAMES;
+    private final long WARMUP_FRAMES;
+
+    private double noise_floor;
+    private double signal_level;
+    private double envelope;
+    private long n_noise_frames;
+
+    /**
+     * Constructs a SignalLevel with the given sample rate, thresholds, and mode.
+     * @param sample_rate Sample rate of the received signal in Hz
+     * @param signal_start_threshold Amplitude threshold to recognize the start of a signal
+     *                               (until the noise floor has been measured, if adaptive)
+     * @param signal_end_threshold Amplitude threshold to recognize the end of a signal (if not adaptive)
+     * @param adaptive True to derive the thresholds from the noise floor and signal level
+     * @throws IllegalArgumentException If the sample rate is not positive
+     */
+    public SignalLevel(int sample_rate, int signal_start_threshold, int signal_end_threshold, boolean adaptive)
+            throws IllegalArgumentException {
+        if(sample_rate <= 0) {
+            throw new IllegalArgumentException("Invalid sample rate.");
+        }
+        SIGNAL_START_THRESHOLD = signal_start_threshold;
+        SIGNAL_END_THRESHOLD = signal_end_threshold;
+        ADAPTIVE = adaptive;
+        NOISE_RISE_FRAMES = NOISE_RISE_TIME * sample_rate;
+        NOISE_FALL_FRAMES = NOISE_FALL_TIME * sample_rate;
+        SIGNAL_FRAMES = SIGNAL_TIME * sample_rate;
+        ENVELOPE_FRAMES = ENVELOPE_TIME * sample_rate;
+        WARMUP_FRAMES = (long) (WARMUP_TIME * sample_rate);
+    }
+
+    /**
+     * Constructs a SignalLevel with fixed thresholds for the given configuration.
+     * @param config Modem configuration of the received signal
+     * @param signal_start_threshold Amplitude threshold to recognize the start of a signal
+     * @param signal_end_threshold Amplitude threshold to recognize the end of a signal
+     */
+    public SignalLevel(ModemConfig config, int signal_start_threshold, int signal_end_threshold) {
+        this(config.getSampleRate(), signal_start_threshold, signal_end_threshold, false);
+    }
+
+    /**
+     * Constructs an adaptive SignalLevel for the given configuration, starting from
+     * the configuration's default thresholds.
+     * @param config Modem configuration of the received signal
+     */
+    public SignalLevel(ModemConfig config) {
+        this(config.getSampleRate(), config.getSignalStartThreshold(), config.getSignalEndThreshold(), true);
+    }
+
+    /**
+     * Updates the noise floor with a section of frames received between signals.
+     * @param amplitude Mean amplitude of the section
+     * @param n_frames Number of frames in the section
+     */
+    public void updateNoise(int amplitude, int n_frames) {
+        if(n_noise_frames < WARMUP_FRAMES) {
+            /* Plain average until the noise floor is known */
+            noise_floor += (amplitude - noise_floor) * n_frames / (n_noise_frames + n_frames);
+        } else {
+            double time = amplitude < noise_floor ? NOISE_FALL_FRAMES : NOISE_RISE_FRAMES;
+            noise_floor += (amplitude - noise_floor) * n_frames / (time + n_frames);
+        }
+        n_noise_frames += n_frames;
+    }
+
+    /**
+     * Starts tracking the level of a new signal.
+     * @param amplitude Mean amplitude of the section the signal was recognized in
+     */
+    public void startSignal(int amplitude) {
+        signal_level = amplitude;
+        envelope = amplitude;
+    }
+
+    /**
+     * Updates the signal level with a section of a signal.
+     * @param amplitude Mean amplitude of the section
+     * @param n_frames Number of frames in the section
+     */
+    public void updateSignal(int amplitude, int n_frames) {
+        signal_level += (amplitude - signal_level) * n_frames / (SIGNAL_FRAMES + n_frames);
+        envelope += (amplitude - envelope) * n_frames / (ENVELOPE_FRAMES + n_frames);
+    }
+
+    /**
+     * Checks whether a signal has ended, after updating the signal level with its latest section.
+     * Adaptive signals end when the envelope falls below the end threshold,
+     * or at once when a section falls to the noise floor.
+     * @param amplitude Mean amplitude of the latest section
+     * @return True if the signal has ended
+     */
+    public boolean isSignalEnd(int amplitude) {
+        if(!ADAPTIVE) { return amplitude < SIGNAL_END_THRESHOLD; }
+        return envelope < getEndThreshold() || amplitude < noise_floor + MIN_START_THRESHOLD / 2;
+    }
+
+    /**
+     * @return True if the noise floor has been measured
+     */
+    public boolean isSettled() { return n_noise_frames >= WARMUP_FRAMES; }
+
+    /**
+     * @return Amplitude threshold to recognize the start of a signal
+     */
+    public int getStartThreshold() {
+        if(!ADAPTIVE || !isSettled()) { return SIGNAL_START_THRESHOLD; }
+        return (int) Math.max(MIN_START_THRESHOLD, noise_floor * START_RATIO);
+    }
+
+    /**
+     * Gets the amplitude threshold to recognize the end of a signal. Adaptive thresholds are
+     * nearer the noise floor than the level of the current signal, since noisy symbols are short
+     * and their amplitude varies more than the amplitude of the noise between signals.
+     * @return Signal end threshold
+     */
+    public int getEndThreshold() {
+        if(!ADAPTIVE) { return SIGNAL_END_THRESHOLD; }
+        double threshold = noise_floor + (signal_level - noise_floor) * END_FRACTION;
+        return (int) Math.max(MIN_START_THRESHOLD / 2, threshold);
+    }
+
+    /**
+     * Gets the level to slice frames at when hard-limiting them. The level follows the signal,
+     * so slicing at it is the same as slicing a full-scale signal at a fixed level after AGC.
+     * @return Slicing level
+     */
+    public int getSlicingLevel() {
+        return (int) Math.max(1, DEFAULT_SLICING_LEVEL / getGain());
+    }
+
+    /**
+     * @return Gain that would bring the current signal to full scale (1 before any signal)
+     */
+    public double getGain() { return signal_level > 0 ? FULL_SCALE / signal_level : 1; }
+
+    /**
+     * @return Mean amplitude of the noise between signals
+     */
+    public int getNoiseFloor() { return (int) noise_floor; }
+
+    /**
+     * @return Mean amplitude of the current (or last) signal
+     */
+    public int getSignalLevel() { return (int) signal_level; }
+
+    /**
+     * @return True if the thresholds are derived from the noise floor and signal level
+     */
+    public boolean isAdaptive() { return ADAPTIVE; }
+}
@@ -0,0 +1,54 @@
+package org.lavajuno.jfskmodem.detector;
+
+import org.lavajuno.jfskmodem.ModemConfig;
+
+/**
+ * SymbolDetector decides which tone a single symbol of a received signal carries.
+ */
+public interface SymbolDetector {
+    /**
+     * Gets a hard decision for the symbol starting at the given frame.
+     * @param frames Received frames
+     * @param offset Index of the first frame of the symbol
+     * @return Detected symbol (0 to getTones() - 1)
+     */
+    int detectSymbol(short[] frames, int offset);
+
+    /**
+     * Gets soft decisions for the bits carried by the symbol starting at the given frame,
+     * most significant bit first. By default these are the bits of the hard decision,
+     * with full confidence.
+     * @param frames Received frames
+     * @param offset Index of the first frame of the symbol
+     * @param config Modem configuration mapping symbols to bits
+     * @param soft Array to store soft bits in, between -1 (certainly 0) and 1 (certainly 1)
+     * @param soft_offset Index of the first soft bit
+     */
+    default void detectSoftBits(short[] frames, int offset, ModemConfig config, float[] soft, int soft_offset) {
+        int bits = config.getBits(detectSymbol(frames, offset));
+        int n_bits = config.getBitsPerSymbol();
+        for(int i = 0; i < n_bits; i++) {
+            soft[soft_offset + i] = ((bits >> (n_bits - 1 - i)) & 1) == 0 ? -1 : 1;
+        }
+    }
+
+    /**
+     * @return Number of frames in one symbol
+     */
+    int getSymbolFrames();
+
+    /**
+     * @return Number of tones (symbols) this SymbolDetector distinguishes
+     */
+    int getTones();
+
+    /**
+     * Creates the default detector for a configuration: a CorrelationDetector for
+     * two tones, or an MfskDetector for more.
+     * @param config Modem configuration to detect symbols for
+     * @return Detector for the configuration
+     */
+    static SymbolDetector create(ModemConfig config) {
+        return config.getTones() == 2 ? new CorrelationDetector(config) : new MfskDetector(config);
+    }
+}
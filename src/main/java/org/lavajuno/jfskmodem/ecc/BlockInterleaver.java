@@ -0,0 +1,64 @@
+package org.lavajuno.jfskmodem.ecc;
+
+/**
+ * BlockInterleaver spreads the code bits of each block of another ErrorCorrection,
+ * so that a burst of errors on the channel becomes scattered single errors for its decoder.
+ * Code bits are written into a matrix row by row, with as many rows as the interleaving
+ * depth, and sent column by column. Shorter blocks use a matrix with fewer columns.
+ */
+public class BlockInterleaver implements ErrorCorrection {
+    private final ErrorCorrection code;
+    private final int DEPTH;
+
+    private final byte[] bits;
+    private final float[] soft;
+
+    /**
+     * Constructs a BlockInterleaver.
+     * @param code Code to interleave the code bits of
+     * @param depth Number of rows (consecutive channel bits are this far apart in the code)
+     * @throws IllegalArgumentException If the depth is not positive
+     */
+    public BlockInterleaver(ErrorCorrection code, int depth) throws IllegalArgumentException {
+        if(depth <= 0) {
+            throw new IllegalArgumentException("Invalid interleaver depth.");
+        }
+        this.code = code;
+        DEPTH = depth;
+        int n_bits = code.getEncodedBits(code.getBlockBytes());
+        bits = new byte[n_bits];
+        soft = new float[n_bits];
+    }
+
+    @Override
+    public int getBlockBytes() { return code.getBlockBytes(); }
+
+    @Override
+    public int getEncodedBits(int n_bytes) { return code.getEncodedBits(n_bytes); }
+
+    @Override
+    public int getDecodedLength(int n_bits) { return code.getDecodedLength(n_bits); }
+
+    @Override
+    public int encodeBlock(byte[] in, int in_offset, int length, byte[] out) {
+        int n_bits = code.encodeBlock(in, in_offset, length, bits);
+        int n_columns = (n_bits + DEPTH - 1) / DEPTH;
+        int pos = 0;
+        for(int column = 0; column < n_columns; column++) {
+            for(int i = column; i < n_bits; i += n_columns) { out[pos++] = bits[i]; }
+        }
+        return n_bits;
+    }
+
+    @Override
+    public int decodeBlock(float[] in, int offset, int n_received, byte[] out, int out_offset) {
+        /* Extra bits at the end of a signal are not part of the matrix */
+        int n_bits = code.getEncodedBits(code.getDecodedLength(n_received));
+        int n_columns = (n_bits + DEPTH - 1) / DEPTH;
+        int pos = offset;
+        for(int column = 0; column < n_columns; column++) {
+            for(int i = column; i < n_bits; i += n_columns) { soft[i] = in[pos++]; }
+        }
+        return code.decodeBlock(soft, 0, n_bits, out, out_offset);
+    }
+}
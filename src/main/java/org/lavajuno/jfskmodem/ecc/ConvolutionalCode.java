@@ -0,0 +1,144 @@
+package org.lavajuno.jfskmodem.ecc;
+
+import java.util.Arrays;
+
+/**
+ * ConvolutionalCode provides a rate-1/2, constraint length 7 convolutional code
+ * (generator polynomials 171 and 133 octal) with a soft-decision Viterbi decoder.
+ * Each block is terminated with six zero bits, so the decoder ends in a known state.
+ * The decoder keeps one 64-bit word of survivor decisions per step, so its memory is
+ * proportional to the block length and traceback is a single pass.
+ */
+public class ConvolutionalCode implements ErrorCorrection {
+    /**
+     * Default number of data bytes in a block
+     */
+    public static final int DEFAULT_BLOCK_BYTES = 32;
+
+    private static final int N_STATES = 64;
+    private static final int TAIL_BITS = 6;
+    private static final int G1 = 0171;
+    private static final int G2 = 0133;
+
+    /**
+     * Output bits (G1 output in bit 1, G2 output in bit 0) for each 7-bit shift register value
+     */
+    private static final byte[] OUTPUTS = new byte[128];
+
+    static {
+        for(int reg = 0; reg < 128; reg++) {
+            OUTPUTS[reg] = (byte) ((Integer.bitCount(reg & G1) & 1) << 1 | (Integer.bitCount(reg & G2) & 1));
+        }
+    }
+
+    private final int BLOCK_BYTES;
+
+    private final float[] metrics;
+    private final float[] next_metrics;
+    private final float[] branch_metrics;
+    private final long[] decisions;
+
+    /**
+     * Constructs a ConvolutionalCode with the given block size.
+     * @param block_bytes Number of data bytes in a block
+     * @throws IllegalArgumentException If the block size is not positive
+     */
+    public ConvolutionalCode(int block_bytes) throws IllegalArgumentException {
+        if(block_bytes <= 0) {
+            throw new IllegalArgumentException("Invalid block size.");
+        }
+        BLOCK_BYTES = block_bytes;
+        metrics = new float[N_STATES];
+        next_metrics = new float[N_STATES];
+        branch_metrics = new float[4];
+        decisions = new long[block_bytes * 8 + TAIL_BITS];
+    }
+
+    /**
+     * Constructs a ConvolutionalCode with the default block size.
+     */
+    public ConvolutionalCode() {
+        this(DEFAULT_BLOCK_BYTES);
+    }
+
+    @Override
+    public int getBlockBytes() { return BLOCK_BYTES; }
+
+    @Override
+    public int getEncodedBits(int n_bytes) { return (n_bytes * 8 + TAIL_BITS) * 2; }
+
+    @Override
+    public int getDecodedLength(int n_bits) {
+        return Math.max(0, Math.min(BLOCK_BYTES, (n_bits / 2 - TAIL_BITS) / 8));
+    }
+
+    @Override
+    public int encodeBlock(byte[] in, int in_offset, int length, byte[] bits) {
+        int reg = 0;
+        int pos = 0;
+        for(int i = 0; i < length * 8 + TAIL_BITS; i++) {
+            int bit = i < length * 8 ? (in[in_offset + i / 8] >> (7 - i % 8)) & 1 : 0;
+            reg = ((reg << 1) | bit) & 0x7f;
+            bits[pos++] = (byte) (OUTPUTS[reg] >> 1);
+            bits[pos++] = (byte) (OUTPUTS[reg] & 1);
+        }
+        return pos;
+    }
+
+    @Override
+    public int decodeBlock(float[] soft, int offset, int n_bits, byte[] out, int out_offset) {
+        int length = getDecodedLength(n_bits);
+        int n_steps = length * 8 + TAIL_BITS;
+        float[] m = metrics;
+        float[] next = next_metrics;
+        Arrays.fill(m, Float.NEGATIVE_INFINITY);
+        m[0] = 0;
+
+        /* Add-compare-select: state is the last six input bits, newest in bit 0 */
+        for(int t = 0; t < n_steps; t++) {
+            float a = soft[offset + t * 2];
+            float b = soft[offset + t * 2 + 1];
+            branch_metrics[0] = -a - b;
+            branch_metrics[1] = -a + b;
+            branch_metrics[2] = a - b;
+            branch_metrics[3] = a + b;
+            long decision = 0;
+            for(int state = 0; state < N_STATES; state++) {
+                int prev = state >> 1;
+                float m0 = m[prev] + branch_metrics[OUTPUTS[state]];
+                float m1 = m[prev | 32] + branch_metrics[OUTPUTS[state | 64]];
+                if(m1 > m0) {
+                    next[state] = m1;
+                    decision |= 1L << state;
+                } else {
+                    next[state] = m0;
+                }
+            }
+            decisions[t] = decision;
+            float[] tmp = m;
+            m = next;
+            next = tmp;
+        }
+
+        /* Trace back from the terminated (zero) state */
+        Arrays.fill(out, out_offset, out_offset + length, (byte) 0);
+        int state = 0;
+        for(int t = n_steps - 1; t >= 0; t--) {
+            if(t < length * 8) {
+                out[out_offset + t / 8] |= (byte) ((state & 1) << (7 - t % 8));
+            }
+            state = (int) ((decisions[t] >>> state) & 1) << 5 | state >> 1;
+        }
+
+        /* Count received hard decisions that differ from the decoded path */
+        int corrections = 0;
+        int reg = 0;
+        for(int t = 0; t < n_steps; t++) {
+            int bit = t < length * 8 ? (out[out_offset + t / 8] >> (7 - t % 8)) & 1 : 0;
+            reg = ((reg << 1) | bit) & 0x7f;
+            if((OUTPUTS[reg] >> 1) != (soft[offset + t * 2] > 0 ? 1 : 0)) { corrections++; }
+            if((OUTPUTS[reg] & 1) != (soft[offset + t * 2 + 1] > 0 ? 1 : 0)) { corrections++; }
+        }
+        return corrections;
+    }
+}
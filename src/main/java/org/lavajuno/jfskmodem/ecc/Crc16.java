@@ -0,0 +1,61 @@
+package org.lavajuno.jfskmodem.ecc;
+
+/**
+ * Crc16 provides functionality for computing CRC-16/CCITT-FALSE checksums
+ * (polynomial 0x1021, initial value 0xFFFF) with a 256-entry table.
+ */
+public class Crc16 {
+    /**
+     * Initial CRC value
+     */
+    public static final int INITIAL = 0xffff;
+
+    private static final int POLYNOMIAL = 0x1021;
+    private static final short[] TABLE = new short[256];
+
+    static {
+        for(int i = 0; i < 256; i++) {
+            int crc = i << 8;
+            for(int j = 0; j < 8; j++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ POLYNOMIAL : crc << 1;
+            }
+            TABLE[i] = (short) crc;
+        }
+    }
+
+    /**
+     * Updates a CRC with a single byte.
+     * @param crc Current CRC
+     * @param b Byte to add
+     * @return Updated CRC
+     */
+    public static int update(int crc, byte b) {
+        return ((crc << 8) ^ (TABLE[((crc >> 8) ^ b) & 0xff] & 0xffff)) & 0xffff;
+    }
+
+    /**
+     * Updates a CRC with bytes.
+     * @param crc Current CRC
+     * @param data Bytes to add
+     * @param offset Index of the first byte
+     * @param length Number of bytes
+     * @return Updated CRC
+     */
+    public static int update(int crc, byte[] data, int offset, int length) {
+        for(int i = offset; i < offset + length; i++) {
+            crc = ((crc << 8) ^ (TABLE[((crc >> 8) ^ data[i]) & 0xff] & 0xffff)) & 0xffff;
+        }
+        return crc;
+    }
+
+    /**
+     * Computes the CRC of bytes.
+     * @param data Bytes to check
+     * @param offset Index of the first byte
+     * @param length Number of bytes
+     * @return CRC of the bytes
+     */
+    public static int compute(byte[] data, int offset, int length) {
+        return update(INITIAL, data, offset, length);
+    }
+}
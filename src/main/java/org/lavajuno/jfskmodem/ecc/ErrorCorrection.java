@@ -0,0 +1,52 @@
+package org.lavajuno.jfskmodem.ecc;
+
+/**
+ * ErrorCorrection encodes data into code bits for transmission, and decodes
+ * received soft bits back into data.
+ * Data is coded in blocks of up to getBlockBytes() bytes. The last block of a
+ * transmission may be shorter, and its length is recovered from the number of
+ * code bits received, so a few extra bits at the end of a signal are ignored.
+ * Implementations keep scratch buffers and are not thread-safe.
+ */
+public interface ErrorCorrection {
+    /**
+     * @return Largest number of data bytes in a block
+     */
+    int getBlockBytes();
+
+    /**
+     * Gets the number of code bits for a block.
+     * @param n_bytes Number of data bytes in the block (at most getBlockBytes())
+     * @return Number of code bits
+     */
+    int getEncodedBits(int n_bytes);
+
+    /**
+     * Gets the number of data bytes in a block from the number of code bits received for it.
+     * @param n_bits Number of code bits received (may include a few extra bits)
+     * @return Number of data bytes
+     */
+    int getDecodedLength(int n_bits);
+
+    /**
+     * Encodes a block of data.
+     * @param in Data bytes
+     * @param in_offset Index of the first data byte
+     * @param length Number of data bytes (at most getBlockBytes())
+     * @param bits Array to store code bits in, one bit (0 or 1) per element
+     *             (at least getEncodedBits(length) long)
+     * @return Number of code bits
+     */
+    int encodeBlock(byte[] in, int in_offset, int length, byte[] bits);
+
+    /**
+     * Decodes a block of data from soft bits.
+     * @param soft Soft bits, between -1 (certainly 0) and 1 (certainly 1)
+     * @param offset Index of the first soft bit
+     * @param n_bits Number of soft bits received for the block
+     * @param out Array to store decoded bytes in (getDecodedLength(n_bits) bytes from out_offset)
+     * @param out_offset Index of the first decoded byte
+     * @return Number of code bits that were corrected while decoding
+     */
+    int decodeBlock(float[] soft, int offset, int n_bits, byte[] out, int out_offset);
+}
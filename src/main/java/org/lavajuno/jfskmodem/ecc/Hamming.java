@@ -1,12 +1,14 @@
 package org.lavajuno.jfskmodem.ecc;
 
-import java.util.Arrays;
-
 /**
  * Hamming provides functionality for encoding
- * and decoding data with Hamming(4,3).
+ * and decoding data with Hamming(7,4).
+ * Each byte is encoded as a 14-bit word (high nibble first), with each 7-bit
+ * codeword ordered p1 p2 d1 p3 d2 d3 d4 from its most significant bit.
+ * Encoding and decoding are table-driven.
+ * As an ErrorCorrection, each block is a single byte, decoded from hard decisions.
  */
-public class Hamming {
+public class Hamming implements ErrorCorrection {
     /**
      * Generator matrix to encode data
      */
@@ -30,99 +32,222 @@ public class Hamming {
     };
 
     /**
-     * Multiplies a matrix and vector modulo 2.
-     * @param a Matrix
-     * @param b Vector
-     * @return Product of the matrix and vector (modulo 2)
+     * Codeword for each nibble
      */
-    private static byte[] multiply(byte[][] a, byte[] b) {
-        byte[] res = new byte[a.length];
-        for(int i = 0; i < a.length; i++) {
-            for(int j = 0; j < b.length; j++) {
-                res[i] += (byte) (a[i][j] * b[j]);
+    private static final byte[] ENCODE_TABLE = new byte[16];
+
+    /**
+     * Corrected nibble for each received codeword
+     */
+    private static final byte[] DECODE_TABLE = new byte[128];
+
+    /**
+     * Number of bits corrected (0 or 1) for each received codeword
+     */
+    private static final byte[] ERROR_TABLE = new byte[128];
+
+    static {
+        for(int nibble = 0; nibble < 16; nibble++) {
+            ENCODE_TABLE[nibble] = (byte) toWord(multiply(M_GENERATOR, toBits(nibble, 4)));
+        }
+        for(int word = 0; word < 128; word++) {
+            byte[] bits = toBits(word, 7);
+            byte[] syn = multiply(M_PARITY, bits);
+            int error_pos = syn[2] * 4 + syn[1] * 2 + syn[0];
+            if(error_pos != 0) {
+                bits[error_pos - 1] ^= 1;
+                ERROR_TABLE[word] = 1;
             }
-            res[i] %= 2;
+            DECODE_TABLE[word] = (byte) toWord(new byte[]{bits[2], bits[4], bits[5], bits[6]});
         }
-        return res;
     }
 
     /**
-     * Encodes 4 data bits with Hamming(4,3)
-     * @param data Data to encode
-     * @return Encoded data
+     * Encodes a byte to a 14-bit word with Hamming(7,4)
+     * @param data Byte to encode
+     * @return Encoded word in the low 14 bits
      */
-    private static byte[] encode(byte[] data) { return multiply(M_GENERATOR, data); }
+    public static int encodeWord(byte data) {
+        return (ENCODE_TABLE[(data >> 4) & 0xf] << 7) | ENCODE_TABLE[data & 0xf];
+    }
+
+    /**
+     * Decodes a byte from a 14-bit word with Hamming(7,4)
+     * @param word Encoded word in the low 14 bits
+     * @return Decoded byte
+     */
+    public static byte decodeWord(int word) {
+        return (byte) ((DECODE_TABLE[(word >> 7) & 0x7f] << 4) | DECODE_TABLE[word & 0x7f]);
+    }
+
+    /**
+     * Gets the number of bits that decoding a 14-bit word corrects.
+     * @param word Encoded word in the low 14 bits
+     * @return Number of corrected bits (0 to 2)
+     */
+    public static int getCorrections(int word) {
+        return ERROR_TABLE[(word >> 7) & 0x7f] + ERROR_TABLE[word & 0x7f];
+    }
 
     /**
-     * Encodes a byte to 14 encoded bits with Hamming(4,3)
+     * Encodes a byte to 14 encoded bits with Hamming(7,4)
      * @param data Data bits to encode
      * @return Encoded bits
      */
     public static byte[] encodeByte(byte data) {
-        byte[] res = new byte[14];
-        byte[] bits = byteToBits(data);
-        byte[] nibble0 = encode(Arrays.copyOfRange(bits,0, 4));
-        byte[] nibble1 = encode(Arrays.copyOfRange(bits, 4, 8));
-        System.arraycopy(nibble0, 0, res, 0, 7);
-        System.arraycopy(nibble1, 0, res, 7, 7);
-        return res;
+        return toBits(encodeWord(data), 14);
     }
 
     /**
-     * Decodes 4 data bits from 7 received bits with Hamming(4,3)
+     * Decodes a byte from 14 encoded bits with Hamming(7,4)
      * @param data Bits to decode
-     * @return Decoded data bits
-     */
-    private static byte[] decode(byte[] data) {
-        byte[] syn = multiply(M_PARITY, data);
-        int error_pos = syn[2] * 4 + syn[1] * 2 + syn[0];
-        byte[] res = data.clone();
-        if(error_pos != 0) {
-            res[error_pos - 1] = (byte) (res[error_pos - 1] == 1 ? 0 : 1);
+     * @return Decoded byte
+     */
+    public static byte decodeByte(byte[] data) {
+        return decodeWord(toWord(data));
+    }
+
+    /**
+     * Encodes bytes to packed bits with Hamming(7,4). Each input byte becomes 14 bits
+     * in the output, packed from the most significant bit of each output byte.
+     * The unused bits of the last output byte are zero.
+     * @param in Bytes to encode
+     * @param in_offset Index of the first byte to encode
+     * @param length Number of bytes to encode
+     * @param out Array to store packed bits in (at least getEncodedLength(length) bytes from out_offset)
+     * @param out_offset Index of the first output byte
+     * @return Number of output bytes written
+     */
+    public static int encode(byte[] in, int in_offset, int length, byte[] out, int out_offset) {
+        int n_out = getEncodedLength(length);
+        int acc = 0;
+        int n_acc = 0;
+        int pos = out_offset;
+        for(int i = in_offset; i < in_offset + length; i++) {
+            acc = (acc << 14) | encodeWord(in[i]);
+            n_acc += 14;
+            while(n_acc >= 8) {
+                n_acc -= 8;
+                out[pos++] = (byte) (acc >> n_acc);
+            }
         }
-        return new byte[]{res[2], res[4], res[5], res[6]};
+        if(n_acc > 0) {
+            out[pos] = (byte) (acc << (8 - n_acc));
+        }
+        return n_out;
     }
 
     /**
-     * Decodes a byte from 14 encoded bits with Hamming(4,3)
-     * @param data Bits to decode
-     * @return Decoded byte
+     * Decodes bytes from packed bits with Hamming(7,4).
+     * @param in Packed bits to decode, as written by encode()
+     * @param in_offset Index of the first packed byte
+     * @param length Number of bytes to decode
+     * @param out Array to store decoded bytes in
+     * @param out_offset Index of the first decoded byte
+     * @return Number of bits that were corrected while decoding
      */
-    public static byte decodeByte(byte[] data) {
-        byte[] res = new byte[8];
-        byte[] nibble0 = decode(Arrays.copyOfRange(data, 0, 7));
-        byte[] nibble1 = decode(Arrays.copyOfRange(data, 7, 14));
-        System.arraycopy(nibble0, 0, res, 0, 4);
-        System.arraycopy(nibble1, 0, res, 4, 4);
-        return bitsToByte(res);
+    public static int decode(byte[] in, int in_offset, int length, byte[] out, int out_offset) {
+        int corrections = 0;
+        int acc = 0;
+        int n_acc = 0;
+        int pos = in_offset;
+        for(int i = out_offset; i < out_offset + length; i++) {
+            while(n_acc < 14) {
+                acc = (acc << 8) | (in[pos++] & 0xff);
+                n_acc += 8;
+            }
+            n_acc -= 14;
+            int word = (acc >> n_acc) & 0x3fff;
+            out[i] = decodeWord(word);
+            corrections += getCorrections(word);
+        }
+        return corrections;
+    }
+
+    /**
+     * Gets the number of packed bytes needed to encode the given number of bytes.
+     * @param length Number of bytes to encode
+     * @return Number of packed bytes
+     */
+    public static int getEncodedLength(int length) {
+        return (length * 14 + 7) / 8;
+    }
+
+    @Override
+    public int getBlockBytes() { return 1; }
+
+    @Override
+    public int getEncodedBits(int n_bytes) { return n_bytes * 14; }
+
+    @Override
+    public int getDecodedLength(int n_bits) { return n_bits / 14; }
+
+    @Override
+    public int encodeBlock(byte[] in, int in_offset, int length, byte[] bits) {
+        for(int i = 0; i < length; i++) {
+            int word = encodeWord(in[in_offset + i]);
+            for(int j = 0; j < 14; j++) {
+                bits[i * 14 + j] = (byte) ((word >> (13 - j)) & 1);
+            }
+        }
+        return length * 14;
+    }
+
+    @Override
+    public int decodeBlock(float[] soft, int offset, int n_bits, byte[] out, int out_offset) {
+        int corrections = 0;
+        int length = getDecodedLength(n_bits);
+        for(int i = 0; i < length; i++) {
+            int word = 0;
+            for(int j = offset + i * 14; j < offset + i * 14 + 14; j++) {
+                word = (word << 1) | (soft[j] > 0 ? 1 : 0);
+            }
+            out[out_offset + i] = decodeWord(word);
+            corrections += getCorrections(word);
+        }
+        return corrections;
+    }
+
+    /**
+     * Multiplies a matrix and vector modulo 2.
+     * @param a Matrix
+     * @param b Vector
+     * @return Product of the matrix and vector (modulo 2)
+     */
+    private static byte[] multiply(byte[][] a, byte[] b) {
+        byte[] res = new byte[a.length];
+        for(int i = 0; i < a.length; i++) {
+            for(int j = 0; j < b.length; j++) {
+                res[i] += (byte) (a[i][j] * b[j]);
+            }
+            res[i] %= 2;
+        }
+        return res;
     }
 
     /**
-     * Converts a byte to bits
-     * @param b Byte to convert
+     * Converts the low bits of a word to an array of bits (most significant first)
+     * @param word Word to convert
+     * @param n_bits Number of bits to convert
      * @return Converted bits
      */
-    private static byte[] byteToBits(byte b) {
-        byte[] res = new byte[8];
-        byte mask = 1;
-        for(int i = 0; i < 8; i++) {
-            res[7 - i] = (byte) ((b & mask) == 0 ? 0 : 1);
-            mask <<= 1;
+    private static byte[] toBits(int word, int n_bits) {
+        byte[] res = new byte[n_bits];
+        for(int i = 0; i < n_bits; i++) {
+            res[i] = (byte) ((word >> (n_bits - 1 - i)) & 1);
         }
         return res;
     }
 
     /**
-     * Converts an array of bits to a byte
-     * @param b Array of bits to convert
-     * @return Converted byte
+     * Converts an array of bits (most significant first) to a word
+     * @param bits Array of bits to convert
+     * @return Converted word
      */
-    private static byte bitsToByte(byte[] b) {
-        byte res = 0;
-        byte mask = 1;
-        for(int i = 0; i < 8; i++) {
-            res += (b[7 - i] == 0) ? 0 : mask;
-            mask <<= 1;
+    private static int toWord(byte[] bits) {
+        int res = 0;
+        for(byte bit : bits) {
+            res = (res << 1) | (bit == 0 ? 0 : 1);
         }
         return res;
     }
@@ -0,0 +1,390 @@
+package org.lavajuno.jfskmodem.ecc;
+
+/**
+ * ReedSolomon provides a systematic Reed-Solomon code over GF(256) (primitive polynomial 0x11D,
+ * generator roots alpha^0 to alpha^(n_parity - 1)), used as an outer code around another ErrorCorrection.
+ * Each block of data bytes is followed by its parity bytes, and the whole codeword is passed
+ * to the inner code. Shorter blocks are coded as shortened codewords.
+ * A codeword with n_parity parity bytes can recover from e errors and f erasures
+ * as long as 2e + f is at most n_parity. The default is RS(255,223), which corrects
+ * up to 16 wrong bytes in every block of 223 data bytes.
+ * Blocks that cannot be corrected are passed on as received, and counted.
+ */
+public class ReedSolomon implements ErrorCorrection {
+    /**
+     * Default number of parity bytes in a codeword
+     */
+    public static final int DEFAULT_PARITY_BYTES = 32;
+
+    /**
+     * Largest number of bytes in a codeword
+     */
+    public static final int MAX_CODEWORD_BYTES = 255;
+
+    private static final int PRIMITIVE = 0x11d;
+
+    /**
+     * Powers of alpha, repeated so that sums of two logarithms can index it directly
+     */
+    private static final int[] EXP = new int[512];
+
+    /**
+     * Logarithms to the base alpha (LOG[0] is unused)
+     */
+    private static final int[] LOG = new int[256];
+
+    static {
+        int x = 1;
+        for(int i = 0; i < 255; i++) {
+            EXP[i] = x;
+            LOG[x] = i;
+            x <<= 1;
+            if(x > 0xff) { x ^= PRIMITIVE; }
+        }
+        for(int i = 255; i < 512; i++) { EXP[i] = EXP[i - 255]; }
+    }
+
+    private final ErrorCorrection inner;
+    private final int PARITY_BYTES;
+    private final int BLOCK_BYTES;
+
+    /**
+     * Generator polynomial, highest degree first
+     */
+    private final int[] generator;
+    private final byte[] codeword;
+    private final byte[] received;
+    private final byte[] inner_bits;
+    private final int[] remainder;
+    private final int[] syndromes;
+    private final int[] locator;
+    private final int[] old_locator;
+    private final int[] evaluator;
+    private final int[] error_positions;
+    private final int[] error_values;
+    private int n_failed_blocks;
+
+    /**
+     * Constructs a ReedSolomon code.
+     * @param inner Inner code to pass codewords to
+     * @param parity_bytes Number of parity bytes in a codeword
+     * @param block_bytes Largest number of data bytes in a codeword
+     * @throws IllegalArgumentException If the parity or block size is not positive,
+     *                                  or a codeword would be longer than 255 bytes
+     */
+    public ReedSolomon(ErrorCorrection inner, int parity_bytes, int block_bytes) throws IllegalArgumentException {
+        if(parity_bytes <= 0 || parity_bytes >= MAX_CODEWORD_BYTES) {
+            throw new IllegalArgumentException("Invalid number of parity bytes.");
+        }
+        if(block_bytes <= 0 || block_bytes + parity_bytes > MAX_CODEWORD_BYTES) {
+            throw new IllegalArgumentException("Invalid block size.");
+        }
+        this.inner = inner;
+        PARITY_BYTES = parity_bytes;
+        BLOCK_BYTES = block_bytes;
+        generator = getGenerator(parity_bytes);
+        codeword = new byte[MAX_CODEWORD_BYTES];
+        received = new byte[MAX_CODEWORD_BYTES];
+        inner_bits = new byte[inner.getEncodedBits(inner.getBlockBytes())];
+        remainder = new int[parity_bytes];
+        syndromes = new int[parity_bytes];
+        locator = new int[parity_bytes + 1];
+        old_locator = new int[parity_bytes + 2];
+        evaluator = new int[parity_bytes];
+        error_positions = new int[parity_bytes];
+        error_values = new int[parity_bytes];
+    }
+
+    /**
+     * Constructs a ReedSolomon code with the given number of parity bytes,
+     * and as many data bytes as fit in a 255-byte codeword.
+     * @param inner Inner code to pass codewords to
+     * @param parity_bytes Number of parity bytes in a codeword
+     * @throws IllegalArgumentException If the number of parity bytes is invalid
+     */
+    public ReedSolomon(ErrorCorrection inner, int parity_bytes) throws IllegalArgumentException {
+        this(inner, parity_bytes, MAX_CODEWORD_BYTES - parity_bytes);
+    }
+
+    /**
+     * Constructs an RS(255,223) code.
+     * @param inner Inner code to pass codewords to
+     */
+    public ReedSolomon(ErrorCorrection inner) {
+        this(inner, DEFAULT_PARITY_BYTES);
+    }
+
+    /**
+     * @return Number of parity bytes in a codeword
+     */
+    public int getParityBytes() { return PARITY_BYTES; }
+
+    /**
+     * @return Number of blocks that could not be corrected since this ReedSolomon was constructed
+     */
+    public int getFailedBlocks() { return n_failed_blocks; }
+
+    @Override
+    public int getBlockBytes() { return BLOCK_BYTES; }
+
+    @Override
+    public int getEncodedBits(int n_bytes) { return getInnerBits(n_bytes + PARITY_BYTES); }
+
+    @Override
+    public int getDecodedLength(int n_bits) {
+        return Math.max(0, getInnerLength(n_bits) - PARITY_BYTES);
+    }
+
+    @Override
+    public int encodeBlock(byte[] in, int in_offset, int length, byte[] bits) {
+        System.arraycopy(in, in_offset, codeword, 0, length);
+        encode(codeword, 0, length, codeword, length);
+        int inner_bytes = inner.getBlockBytes();
+        int n_codeword = length + PARITY_BYTES;
+        int n_bits = 0;
+        for(int i = 0; i < n_codeword; i += inner_bytes) {
+            int n_inner = inner.encodeBlock(codeword, i, Math.min(inner_bytes, n_codeword - i), inner_bits);
+            System.arraycopy(inner_bits, 0, bits, n_bits, n_inner);
+            n_bits += n_inner;
+        }
+        return n_bits;
+    }
+
+    @Override
+    public int decodeBlock(float[] soft, int offset, int n_bits, byte[] out, int out_offset) {
+        int n_codeword = getInnerLength(n_bits);
+        if(n_codeword <= PARITY_BYTES) { return 0; }
+        int inner_bytes = inner.getBlockBytes();
+        int n_corrections = 0;
+        int pos = offset;
+        for(int i = 0; i < n_codeword; i += inner_bytes) {
+            int n = Math.min(inner_bytes, n_codeword - i);
+            int n_inner = inner.getEncodedBits(n);
+            n_corrections += inner.decodeBlock(soft, pos, n_inner, received, i);
+            pos += n_inner;
+        }
+        System.arraycopy(received, 0, codeword, 0, n_codeword);
+        if(decode(codeword, 0, n_codeword, null, 0) < 0) {
+            n_failed_blocks++;
+        } else {
+            for(int i = 0; i < n_codeword; i++) {
+                n_corrections += Integer.bitCount((codeword[i] ^ received[i]) & 0xff);
+            }
+        }
+        System.arraycopy(codeword, 0, out, out_offset, n_codeword - PARITY_BYTES);
+        return n_corrections;
+    }
+
+    /**
+     * Computes the parity bytes for a block of data.
+     * @param data Data bytes
+     * @param offset Index of the first data byte
+     * @param length Number of data bytes (at most 255 minus the number of parity bytes)
+     * @param parity Array to store parity bytes in
+     * @param parity_offset Index of the first parity byte
+     */
+    public void encode(byte[] data, int offset, int length, byte[] parity, int parity_offset) {
+        /* Remainder of data(x) * x^n_parity divided by the generator, by synthetic division */
+        for(int i = 0; i < PARITY_BYTES; i++) { remainder[i] = 0; }
+        for(int i = offset; i < offset + length; i++) {
+            int feedback = (data[i] & 0xff) ^ remainder[0];
+            for(int j = 0; j < PARITY_BYTES - 1; j++) {
+                remainder[j] = remainder[j + 1] ^ mul(generator[j + 1], feedback);
+            }
+            remainder[PARITY_BYTES - 1] = mul(generator[PARITY_BYTES], feedback);
+        }
+        for(int i = 0; i < PARITY_BYTES; i++) { parity[parity_offset + i] = (byte) remainder[i]; }
+    }
+
+    /**
+     * Corrects a codeword in place.
+     * @param data Codeword (data bytes followed by parity bytes)
+     * @param offset Index of the first byte of the codeword
+     * @param length Number of bytes in the codeword, including parity
+     * @param erasures Indices of bytes known to be wrong, relative to the start of the codeword
+     *                 (may be null if there are none)
+     * @param n_erasures Number of erasures
+     * @return Number of bytes corrected, or -1 if the codeword could not be corrected
+     *         (it is left unchanged)
+     * @throws IllegalArgumentException If the codeword length is invalid
+     */
+    public int decode(byte[] data, int offset, int length, int[] erasures, int n_erasures)
+            throws IllegalArgumentException {
+        if(length <= PARITY_BYTES || length > MAX_CODEWORD_BYTES) {
+            throw new IllegalArgumentException("Invalid codeword length.");
+        }
+        if(n_erasures > PARITY_BYTES) { return -1; }
+        if(!computeSyndromes(data, offset, length)) { return 0; }
+
+        /* Berlekamp-Massey, starting from the erasure locator */
+        int n_locator = 1;
+        locator[0] = 1;
+        for(int i = 0; i < n_erasures; i++) {
+            if(erasures[i] < 0 || erasures[i] >= length) { return -1; }
+            int log_x = length - 1 - erasures[i];
+            /* Multiply by (1 + X x) */
+            locator[n_locator] = 0;
+            for(int j = n_locator; j > 0; j--) { locator[j] ^= mul(locator[j - 1], EXP[log_x]); }
+            n_locator++;
+        }
+        System.arraycopy(locator, 0, old_locator, 0, n_locator);
+        int n_old = n_locator;
+        for(int k = n_erasures; k < PARITY_BYTES; k++) {
+            int delta = syndromes[k];
+            for(int j = 1; j < n_locator && j <= k; j++) { delta ^= mul(locator[j], syndromes[k - j]); }
+            /* Multiply the old locator by x */
+            System.arraycopy(old_locator, 0, old_locator, 1, n_old);
+            old_locator[0] = 0;
+            n_old++;
+            if(delta == 0) { continue; }
+            if(n_old > n_locator) {
+                /* Swap, scaling the new old locator by 1 / delta */
+                int inverse_delta = EXP[255 - LOG[delta]];
+                for(int j = 0; j < n_old; j++) {
+                    int l = j < n_locator ? locator[j] : 0;
+                    locator[j] = mul(old_locator[j], delta);
+                    old_locator[j] = mul(l, inverse_delta);
+                }
+                int n = n_locator;
+                n_locator = n_old;
+                n_old = n;
+            }
+            for(int j = 0; j < n_old; j++) { locator[j] ^= mul(old_locator[j], delta); }
+        }
+        while(n_locator > 1 && locator[n_locator - 1] == 0) { n_locator--; }
+        int n_errors = n_locator - 1;
+        if((n_errors - n_erasures) * 2 + n_erasures > PARITY_BYTES) { return -1; }
+
+        /* Chien search over the positions of this (possibly shortened) codeword */
+        int n_found = 0;
+        for(int i = 0; i < length; i++) {
+            int log_x_inverse = (255 - (length - 1 - i)) % 255;
+            int value = 0;
+            for(int j = n_locator - 1; j >= 0; j--) {
+                value = mul(value, EXP[log_x_inverse]) ^ locator[j];
+            }
+            if(value == 0) {
+                if(n_found == n_errors) { return -1; }
+                error_positions[n_found++] = i;
+            }
+        }
+        if(n_found != n_errors) { return -1; }
+
+        /* Error evaluator: syndromes times locator, mod x^n_parity */
+        for(int i = 0; i < PARITY_BYTES; i++) {
+            int value = 0;
+            for(int j = 0; j <= i && j < n_locator; j++) { value ^= mul(locator[j], syndromes[i - j]); }
+            evaluator[i] = value;
+        }
+
+        /* Forney: e = X * evaluator(X^-1) / locator'(X^-1) */
+        for(int e = 0; e < n_found; e++) {
+            int log_x = length - 1 - error_positions[e];
+            int x_inverse = EXP[(255 - log_x) % 255];
+            int numerator = 0;
+            for(int j = PARITY_BYTES - 1; j >= 0; j--) { numerator = mul(numerator, x_inverse) ^ evaluator[j]; }
+            int denominator = 0;
+            for(int j = n_locator - 1; j >= 1; j--) {
+                if((j & 1) == 1) { denominator ^= mul(locator[j], pow(x_inverse, j - 1)); }
+            }
+            if(denominator == 0) { return -1; }
+            error_values[e] = mul(EXP[log_x], div(numerator, denominator));
+        }
+        /* Corrected only once all values are known, so a failure leaves the codeword unchanged */
+        for(int e = 0; e < n_found; e++) {
+            data[offset + error_positions[e]] ^= (byte) error_values[e];
+        }
+        return n_found;
+    }
+
+    /**
+     * Computes the syndromes of a codeword, evaluating it at each root of the generator.
+     * @param data Codeword
+     * @param offset Index of the first byte of the codeword
+     * @param length Number of bytes in the codeword
+     * @return True if any syndrome is nonzero (the codeword has errors)
+     */
+    private boolean computeSyndromes(byte[] data, int offset, int length) {
+        int errors = 0;
+        for(int i = 0; i < PARITY_BYTES; i++) {
+            /* Horner's method in the log domain, multiplying by alpha^i at each step */
+            int s = 0;
+            for(int j = offset; j < offset + length; j++) {
+                s = (s == 0 ? 0 : EXP[LOG[s] + i]) ^ (data[j] & 0xff);
+            }
+            syndromes[i] = s;
+            errors |= s;
+        }
+        return errors != 0;
+    }
+
+    /**
+     * Gets the number of bits the inner code produces for a number of codeword bytes.
+     * @param n_bytes Number of codeword bytes
+     * @return Number of code bits
+     */
+    private int getInnerBits(int n_bytes) {
+        int inner_bytes = inner.getBlockBytes();
+        int n_bits = (n_bytes / inner_bytes) * inner.getEncodedBits(inner_bytes);
+        if(n_bytes % inner_bytes > 0) { n_bits += inner.getEncodedBits(n_bytes % inner_bytes); }
+        return n_bits;
+    }
+
+    /**
+     * Gets the number of codeword bytes from the number of code bits received.
+     * @param n_bits Number of code bits received
+     * @return Number of codeword bytes
+     */
+    private int getInnerLength(int n_bits) {
+        int inner_bytes = inner.getBlockBytes();
+        int inner_bits = inner.getEncodedBits(inner_bytes);
+        int n_blocks = n_bits / inner_bits;
+        int n_bytes = n_blocks * inner_bytes + inner.getDecodedLength(n_bits - n_blocks * inner_bits);
+        return Math.min(BLOCK_BYTES + PARITY_BYTES, n_bytes);
+    }
+
+    /**
+     * Computes the generator polynomial (x - alpha^0)(x - alpha^1)...(x - alpha^(n_parity - 1)).
+     * @param n_parity Number of parity bytes
+     * @return Coefficients, highest degree first
+     */
+    private static int[] getGenerator(int n_parity) {
+        int[] g = new int[n_parity + 1];
+        g[0] = 1;
+        for(int i = 0; i < n_parity; i++) {
+            for(int j = i + 1; j > 0; j--) { g[j] ^= mul(g[j - 1], EXP[i]); }
+        }
+        return g;
+    }
+
+    /**
+     * Multiplies two field elements.
+     * @param a First element
+     * @param b Second element
+     * @return Product
+     */
+    private static int mul(int a, int b) {
+        return a == 0 || b == 0 ? 0 : EXP[LOG[a] + LOG[b]];
+    }
+
+    /**
+     * Divides two field elements.
+     * @param a Dividend
+     * @param b Divisor (nonzero)
+     * @return Quotient
+     */
+    private static int div(int a, int b) {
+        return a == 0 ? 0 : EXP[LOG[a] + 255 - LOG[b]];
+    }
+
+    /**
+     * Raises a field element to a power.
+     * @param a Element
+     * @param n Exponent (not negative)
+     * @return a^n
+     */
+    private static int pow(int a, int n) {
+        if(n == 0) { return 1; }
+        return a == 0 ? 0 : EXP[(LOG[a] * n) % 255];
+    }
+}
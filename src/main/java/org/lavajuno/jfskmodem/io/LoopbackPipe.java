@@ -0,0 +1,201 @@
+package org.lavajuno.jfskmodem.io;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * LoopbackPipe connects a SampleSink to a SampleSource in the same process,
+ * so frames written by a transmitter can be read by a receiver without audio hardware.
+ * Frames are passed through a lock-free ring buffer, which supports one writing thread
+ * and one reading thread. Waiting threads spin briefly and then park.
+ * Frames pass through as fast as they are written and read, not in real time.
+ */
+public class LoopbackPipe {
+    private static final int SPIN_LIMIT = 256;
+    private static final long PARK_NANOS = 50_000;
+
+    private final short[] ring;
+    private final int mask;
+    private final AtomicLong write_pos;
+    private final AtomicLong read_pos;
+    private volatile boolean sink_closed;
+    private volatile boolean source_closed;
+
+    private final Source source;
+    private final Sink sink;
+
+    /**
+     * Constructs a LoopbackPipe with the given capacity.
+     * @param capacity Minimum number of frames the pipe can hold (rounded up to a power of two)
+     */
+    public LoopbackPipe(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        ring = new short[size];
+        mask = size - 1;
+        write_pos = new AtomicLong();
+        read_pos = new AtomicLong();
+        source = new Source();
+        sink = new Sink();
+    }
+
+    /**
+     * Constructs a LoopbackPipe that can hold one second of frames.
+     */
+    public LoopbackPipe() {
+        this(48000);
+    }
+
+    /**
+     * @return Source that reads frames written to this pipe's sink
+     */
+    public SampleSource getSource() { return source; }
+
+    /**
+     * @return Sink that writes frames to this pipe's source
+     */
+    public SampleSink getSink() { return sink; }
+
+    /**
+     * Waits for the other end of the pipe.
+     * @param spins Number of times the caller has already waited
+     */
+    private static void await(int spins) {
+        if(spins < SPIN_LIMIT) {
+            Thread.onSpinWait();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    /**
+     * Reading end of a LoopbackPipe.
+     */
+    private class Source implements SampleSource {
+        /**
+         * Blocks until at least one frame has been written, and reads frames.
+         * @param frames Array to store frames in
+         * @param offset Index of the first frame to store
+         * @param length Maximum number of frames to read
+         * @return Number of frames read, or -1 if the sink is closed and all frames have been read
+         */
+        @Override
+        public int read(short[] frames, int offset, int length) {
+            long r = read_pos.get();
+            long available;
+            for(int spins = 0; (available = write_pos.get() - r) == 0; spins++) {
+                if(sink_closed && write_pos.get() == r) { return -1; }
+                if(source_closed) { return -1; }
+                await(spins);
+            }
+            int n_frames = (int) Math.min(length, available);
+            int start = (int) (r & mask);
+            int first = Math.min(n_frames, ring.length - start);
+            System.arraycopy(ring, start, frames, offset, first);
+            System.arraycopy(ring, 0, frames, offset + first, n_frames - first);
+            read_pos.lazySet(r + n_frames);
+            return n_frames;
+        }
+
+        /**
+         * Does nothing, as frames written before the source starts are kept.
+         */
+        @Override
+        public void start() { }
+
+        @Override
+        public void stop() { }
+
+        /**
+         * Closes the source. Frames written afterwards are discarded.
+         */
+        @Override
+        public void close() { source_closed = true; }
+    }
+
+    /**
+     * Writing end of a LoopbackPipe.
+     */
+    private class Sink implements SampleSink {
+        private final short[] scratch = new short[1024];
+        private byte odd_byte;
+        private boolean has_odd_byte;
+
+        /**
+         * Writes PCM bytes, blocking while the pipe is full.
+         * @param buffer PCM bytes to write
+         * @param offset Index of the first byte to write
+         * @param length Number of bytes to write
+         * @throws IllegalStateException If the sink is closed
+         */
+        @Override
+        public void write(byte[] buffer, int offset, int length) {
+            if(sink_closed) { throw new IllegalStateException("Sink closed."); }
+            int end = offset + length;
+            if(has_odd_byte && length > 0) {
+                scratch[0] = (short) ((odd_byte << 8) | (buffer[offset++] & 0xff));
+                write(scratch, 0, 1);
+                has_odd_byte = false;
+            }
+            while(end - offset >= 2) {
+                int n_bytes = Math.min((end - offset) & ~1, scratch.length * 2);
+                int n_frames = Pcm.decode(buffer, offset, n_bytes, scratch, 0);
+                write(scratch, 0, n_frames);
+                offset += n_bytes;
+            }
+            if(offset < end) {
+                odd_byte = buffer[offset];
+                has_odd_byte = true;
+            }
+        }
+
+        /**
+         * Writes frames, blocking while the pipe is full.
+         * @param frames Frames to write
+         * @param offset Index of the first frame to write
+         * @param length Number of frames to write
+         * @throws IllegalStateException If the sink is closed
+         */
+        @Override
+        public void write(short[] frames, int offset, int length) {
+            if(sink_closed) { throw new IllegalStateException("Sink closed."); }
+            while(length > 0) {
+                long w = write_pos.get();
+                long free;
+                for(int spins = 0; (free = ring.length - (w - read_pos.get())) == 0; spins++) {
+                    if(source_closed) { return; }
+                    await(spins);
+                }
+                int n_frames = (int) Math.min(length, free);
+                int start = (int) (w & mask);
+                int first = Math.min(n_frames, ring.length - start);
+                System.arraycopy(frames, offset, ring, start, first);
+                System.arraycopy(frames, offset + first, ring, 0, n_frames - first);
+                write_pos.lazySet(w + n_frames);
+                offset += n_frames;
+                length -= n_frames;
+            }
+        }
+
+        /**
+         * Blocks until all written frames have been read, or the source is closed.
+         */
+        @Override
+        public void drain() {
+            for(int spins = 0; read_pos.get() != write_pos.get() && !source_closed; spins++) {
+                await(spins);
+            }
+        }
+
+        /**
+         * Does nothing, as written frames are kept until they are read.
+         */
+        @Override
+        public void flush() { }
+
+        /**
+         * Closes the sink. The source returns the end of the stream once all frames have been read.
+         */
+        @Override
+        public void close() { sink_closed = true; }
+    }
+}
@@ -0,0 +1,81 @@
+package org.lavajuno.jfskmodem.io;
+
+import java.util.Arrays;
+
+/**
+ * MemorySink collects written frames in memory.
+ */
+public class MemorySink implements SampleSink {
+    private short[] frames;
+    private int n_frames;
+    private byte odd_byte;
+    private boolean has_odd_byte;
+
+    /**
+     * Constructs an empty MemorySink.
+     */
+    public MemorySink() {
+        frames = new short[48000];
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) {
+        int end = offset + length;
+        if(has_odd_byte && length > 0) {
+            ensureCapacity(1);
+            frames[n_frames++] = (short) ((odd_byte << 8) | (buffer[offset++] & 0xff));
+            has_odd_byte = false;
+        }
+        int n_new = (end - offset) / 2;
+        ensureCapacity(n_new);
+        n_frames += Pcm.decode(buffer, offset, n_new * 2, frames, n_frames);
+        if(offset + n_new * 2 < end) {
+            odd_byte = buffer[end - 1];
+            has_odd_byte = true;
+        }
+    }
+
+    @Override
+    public void write(short[] frames, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(frames, offset, this.frames, n_frames, length);
+        n_frames += length;
+    }
+
+    /**
+     * @return Copy of the frames written so far
+     */
+    public short[] getFrames() { return Arrays.copyOf(frames, n_frames); }
+
+    /**
+     * @return Number of frames written so far
+     */
+    public int size() { return n_frames; }
+
+    /**
+     * Discards all written frames.
+     */
+    public void reset() {
+        n_frames = 0;
+        has_odd_byte = false;
+    }
+
+    @Override
+    public void drain() { }
+
+    @Override
+    public void flush() { }
+
+    @Override
+    public void close() { }
+
+    /**
+     * Grows the frame buffer to fit the given number of new frames
+     * @param n_new Number of new frames
+     */
+    private void ensureCapacity(int n_new) {
+        if(n_frames + n_new > frames.length) {
+            frames = Arrays.copyOf(frames, Math.max(frames.length * 2, n_frames + n_new));
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.lavajuno.jfskmodem.io;
+
+/**
+ * MemorySource reads frames from an array in memory.
+ */
+public class MemorySource implements SampleSource {
+    private final short[] frames;
+    private int pos;
+
+    /**
+     * Constructs a MemorySource that reads the given frames.
+     * @param frames Frames to read (not copied)
+     */
+    public MemorySource(short[] frames) {
+        this.frames = frames;
+    }
+
+    /**
+     * Reads frames without blocking.
+     * @param frames Array to store frames in
+     * @param offset Index of the first frame to store
+     * @param length Maximum number of frames to read
+     * @return Number of frames read, or -1 if all frames have been read
+     */
+    @Override
+    public int read(short[] frames, int offset, int length) {
+        if(pos >= this.frames.length) { return -1; }
+        int n_frames = Math.min(length, this.frames.length - pos);
+        System.arraycopy(this.frames, pos, frames, offset, n_frames);
+        pos += n_frames;
+        return n_frames;
+    }
+
+    /**
+     * Rewinds this source to its first frame.
+     */
+    public void rewind() { pos = 0; }
+
+    @Override
+    public void start() { }
+
+    @Override
+    public void stop() { }
+
+    @Override
+    public void close() { }
+}
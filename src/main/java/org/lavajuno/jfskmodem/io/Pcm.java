@@ -0,0 +1,51 @@
+package org.lavajuno.jfskmodem.io;
+
+/**
+ * Pcm provides functionality for converting between frames and
+ * 16-bit signed big-endian PCM bytes.
+ */
+public class Pcm {
+    /**
+     * Converts frames to PCM bytes.
+     * @param frames Frames to convert
+     * @param offset Index of the first frame to convert
+     * @param length Number of frames to convert
+     * @param out Array to store PCM bytes in (at least length * 2 bytes from out_offset)
+     * @param out_offset Index of the first output byte
+     */
+    public static void encode(short[] frames, int offset, int length, byte[] out, int out_offset) {
+        for(int i = 0; i < length; i++) {
+            short fv = frames[offset + i];
+            out[out_offset + i * 2] = (byte) (fv >> 8);
+            out[out_offset + i * 2 + 1] = (byte) fv;
+        }
+    }
+
+    /**
+     * Converts frames to PCM bytes.
+     * @param frames Frames to convert
+     * @return Frames as PCM bytes
+     */
+    public static byte[] encode(short[] frames) {
+        byte[] res = new byte[frames.length * 2];
+        encode(frames, 0, frames.length, res, 0);
+        return res;
+    }
+
+    /**
+     * Converts PCM bytes to frames. A trailing odd byte is ignored.
+     * @param in PCM bytes to convert
+     * @param offset Index of the first byte to convert
+     * @param n_bytes Number of bytes to convert
+     * @param frames Array to store frames in (at least n_bytes / 2 frames from frames_offset)
+     * @param frames_offset Index of the first output frame
+     * @return Number of frames converted
+     */
+    public static int decode(byte[] in, int offset, int n_bytes, short[] frames, int frames_offset) {
+        int n_frames = n_bytes / 2;
+        for(int i = 0; i < n_frames; i++) {
+            frames[frames_offset + i] = (short) ((in[offset + i * 2] << 8) | (in[offset + i * 2 + 1] & 0xff));
+        }
+        return n_frames;
+    }
+}
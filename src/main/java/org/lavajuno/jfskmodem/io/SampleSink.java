@@ -0,0 +1,43 @@
+package org.lavajuno.jfskmodem.io;
+
+/**
+ * SampleSink consumes frames (16-bit signed mono samples
+ * at the modem's sample rate, 48000 Hz by default) from a transmitter.
+ * Frames are written as big-endian PCM bytes, two bytes per frame.
+ */
+public interface SampleSink {
+    /**
+     * Blocks and writes PCM bytes without waiting for them to be consumed.
+     * @param buffer PCM bytes to write
+     * @param offset Index of the first byte to write
+     * @param length Number of bytes to write
+     */
+    void write(byte[] buffer, int offset, int length);
+
+    /**
+     * Blocks and writes frames without waiting for them to be consumed.
+     * @param frames Frames to write
+     * @param offset Index of the first frame to write
+     * @param length Number of frames to write
+     */
+    default void write(short[] frames, int offset, int length) {
+        byte[] buffer = new byte[length * 2];
+        Pcm.encode(frames, offset, length, buffer, 0);
+        write(buffer, 0, buffer.length);
+    }
+
+    /**
+     * Blocks until all written frames have been consumed.
+     */
+    void drain();
+
+    /**
+     * Discards written frames that have not been consumed, if possible.
+     */
+    void flush();
+
+    /**
+     * Releases this sink's resources.
+     */
+    void close();
+}
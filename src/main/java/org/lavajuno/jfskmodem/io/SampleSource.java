@@ -0,0 +1,31 @@
+package org.lavajuno.jfskmodem.io;
+
+/**
+ * SampleSource provides frames (16-bit signed mono samples
+ * at the modem's sample rate, 48000 Hz by default) to a receiver.
+ */
+public interface SampleSource {
+    /**
+     * Blocks until at least one frame is available, and reads frames.
+     * @param frames Array to store frames in
+     * @param offset Index of the first frame to store
+     * @param length Maximum number of frames to read
+     * @return Number of frames read, or -1 if the end of the source has been reached
+     */
+    int read(short[] frames, int offset, int length);
+
+    /**
+     * Starts capturing frames. Frames captured before this call may be discarded.
+     */
+    void start();
+
+    /**
+     * Temporarily stops capturing frames.
+     */
+    void stop();
+
+    /**
+     * Stops capturing frames and releases this source's resources.
+     */
+    void close();
+}
@@ -3,34 +3,67 @@ package org.lavajuno.jfskmodem.io;
 import org.lavajuno.jfskmodem.log.Log;
 
 import javax.sound.sampled.*;
-import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.ArrayList;
 
 /**
  * SoundInput provides functionality for reading frames from the default audio input device.
+ * A SoundInput may capture several channels, in which case the samples of each channel
+ * are interleaved in the frames it returns.
  */
-public class SoundInput {
+public class SoundInput implements SampleSource {
     private static final int INPUT_BLOCK_SIZE = 2048;
 
+    /**
+     * Number of frames returned by each call to listen()
+     */
+    public static final int BLOCK_FRAMES = INPUT_BLOCK_SIZE / 2;
+
+    private final int CHANNELS;
+
     private final TargetDataLine line;
+    private final byte[] buffer;
     private final Log log;
 
     /**
-     * Constructs a SoundInput that listens on the default input device.
+     * Constructs a SoundInput that listens to the given number of channels on the default input device
+     * at the given sample rate.
+     * @param sample_rate Sample rate to capture at (Hz)
+     * @param channels Number of channels to capture
      * @param log_level Log level for this SoundInput
      * @throws LineUnavailableException If the input line could not be created
      */
-    public SoundInput(Log.Level log_level) throws LineUnavailableException {
+    public SoundInput(int sample_rate, int channels, Log.Level log_level) throws LineUnavailableException {
         log = new Log("SoundInput", log_level);
         log.debug("Opening line to default audio input device...");
-        AudioFormat format = new AudioFormat(48000, 16, 1, true, true);
+        CHANNELS = channels;
+        AudioFormat format = new AudioFormat(sample_rate, 16, channels, true, true);
         DataLine.Info info = new DataLine.Info(TargetDataLine.class, format);
         line = (TargetDataLine) AudioSystem.getLine(info);
         line.open(format);
+        buffer = new byte[INPUT_BLOCK_SIZE * channels];
         log.debug("Done setting up audio input.");
     }
 
+    /**
+     * Constructs a SoundInput that listens to the given number of channels on the default input device.
+     * @param channels Number of channels to capture
+     * @param log_level Log level for this SoundInput
+     * @throws LineUnavailableException If the input line could not be created
+     */
+    public SoundInput(int channels, Log.Level log_level) throws LineUnavailableException {
+        this(48000, channels, log_level);
+    }
+
+    /**
+     * Constructs a SoundInput that listens on the default input device.
+     * @param log_level Log level for this SoundInput
+     * @throws LineUnavailableException If the input line could not be created
+     */
+    public SoundInput(Log.Level log_level) throws LineUnavailableException {
+        this(1, log_level);
+    }
+
     /**
      * Constructs a SoundInput that listens on the default input device.
      * @throws LineUnavailableException If the input line could not be created
@@ -39,19 +72,53 @@ public class SoundInput {
         this(Log.Level.WARN);
     }
 
+    /**
+     * Blocks and listens on the audio input device, filling the given array with
+     * BLOCK_FRAMES frames.
+     * @param frames Array to store frames in (at least BLOCK_FRAMES long)
+     * @return Number of frames read
+     */
+    public int listen(short[] frames) {
+        return read(frames, 0, frames.length);
+    }
+
+    /**
+     * Blocks and reads at most BLOCK_FRAMES frames per channel from the audio input device.
+     * With several channels, a whole number of frames is read for every channel.
+     * @param frames Array to store frames in
+     * @param offset Index of the first frame to store
+     * @param length Maximum number of frames to read (across all channels)
+     * @return Number of frames read (across all channels)
+     */
+    @Override
+    public int read(short[] frames, int offset, int length) {
+        int n_bytes = Math.min(buffer.length, length * 2);
+        n_bytes -= n_bytes % (CHANNELS * 2);
+        n_bytes = line.read(buffer, 0, n_bytes);
+        return Pcm.decode(buffer, 0, n_bytes, frames, offset);
+    }
+
+    /**
+     * @return Number of channels captured by this SoundInput
+     */
+    public int getChannels() { return CHANNELS; }
+
     /**
      * Blocks and listens on the audio input device.
      * @return List of frames from the input buffer
      */
     public List<Short> listen() {
-        byte[] buffer = new byte[INPUT_BLOCK_SIZE];
-        line.read(buffer, 0, buffer.length);
-        return bytesToFrames(buffer);
+        short[] frames = new short[BLOCK_FRAMES];
+        int n_frames = listen(frames);
+        ArrayList<Short> out_frames = new ArrayList<>(n_frames);
+        for(int i = 0; i < n_frames; i++) { out_frames.add(frames[i]); }
+        return out_frames;
     }
 
     /**
      * Temporarily stops the line and flushes the input buffer.
      */
+    @Override
     public void stop() {
         log.debug("Stopping audio input line.");
         line.stop();
@@ -61,6 +128,7 @@ public class SoundInput {
     /**
      * Starts the line and flushes the input buffer.
      */
+    @Override
     public void start() {
         log.debug("Starting audio input line.");
         line.flush();
@@ -75,24 +143,10 @@ public class SoundInput {
     /**
      * Stops and closes the line.
      */
+    @Override
     public void close() {
         log.debug("Closing audio input line.");
         line.stop();
         line.close();
     }
-
-    /**
-     * @param buffer Array of frames as bytes to convert
-     * @return List of frames as signed shorts
-     */
-    private static List<Short> bytesToFrames(byte[] buffer) {
-        ArrayList<Short> out_frames = new ArrayList<>(buffer.length / 2);
-        byte[] frame = new byte[2];
-        for(int i = 0; i < buffer.length - 1; i += 2) {
-            frame[0] = buffer[i];
-            frame[1] = buffer[i + 1];
-            out_frames.add(ByteBuffer.wrap(frame).getShort());
-        }
-        return out_frames;
-    }
 }
@@ -8,19 +8,20 @@ import java.util.List;
 /**
  * SoundOutput provides functionality for writing frames to the default audio output device.
  */
-public class SoundOutput {
+public class SoundOutput implements SampleSink {
     private final SourceDataLine line;
     private final Log log;
 
     /**
-     * Constructs a SoundOutput that listens on the default input device.
+     * Constructs a SoundOutput that plays on the default output device at the given sample rate.
+     * @param sample_rate Sample rate to play at (Hz)
      * @param log_level Log level for this SoundOutput
      * @throws LineUnavailableException If the output line could not be created
      */
-    public SoundOutput(Log.Level log_level) throws LineUnavailableException {
+    public SoundOutput(int sample_rate, Log.Level log_level) throws LineUnavailableException {
         log = new Log("SoundOutput", log_level);
         log.debug("Opening line to default audio output device...");
-        AudioFormat format = new AudioFormat(48000, 16, 1, true, true);
+        AudioFormat format = new AudioFormat(sample_rate, 16, 1, true, true);
         DataLine.Info info = new DataLine.Info(SourceDataLine.class, format);
         line = (SourceDataLine) AudioSystem.getLine(info);
         line.open(format);
@@ -28,6 +29,15 @@ public class SoundOutput {
         log.debug("Done setting up audio output.");
     }
 
+    /**
+     * Constructs a SoundOutput that listens on the default input device.
+     * @param log_level Log level for this SoundOutput
+     * @throws LineUnavailableException If the output line could not be created
+     */
+    public SoundOutput(Log.Level log_level) throws LineUnavailableException {
+        this(48000, log_level);
+    }
+
     /**
      * Constructs a SoundOutput that listens on the default input device.
      * @throws LineUnavailableException If the output line could not be created
@@ -38,44 +48,65 @@ public class SoundOutput {
 
     /**
      * Blocks and plays on the audio output device.
-     * @param frames List of frames to play
+     * @param frames Frames to play
+     * @param offset Index of the first frame to play
+     * @param length Number of frames to play
      */
-    public void play(List<Short> frames) {
-        log.debug("Playing " + frames.size() + " frames.");
-        byte[] buffer = framesToBytes(frames);
+    public void play(short[] frames, int offset, int length) {
+        log.debug(() -> "Playing " + length + " frames.");
+        byte[] buffer = new byte[length * 2];
+        Pcm.encode(frames, offset, length, buffer, 0);
         line.flush();
         line.write(buffer, 0, buffer.length);
         line.drain();
     }
 
+    /**
+     * Blocks and plays on the audio output device.
+     * @param frames Frames to play
+     */
+    public void play(short[] frames) { play(frames, 0, frames.length); }
+
+    /**
+     * Blocks and plays on the audio output device.
+     * @param frames List of frames to play
+     */
+    public void play(List<Short> frames) {
+        short[] buffer = new short[frames.size()];
+        for(int i = 0; i < buffer.length; i++) { buffer[i] = frames.get(i); }
+        play(buffer, 0, buffer.length);
+    }
+
+    /**
+     * Blocks and writes PCM bytes to the audio output device without waiting for them to play.
+     * @param buffer PCM bytes to write
+     * @param offset Index of the first byte to write
+     * @param length Number of bytes to write
+     */
+    @Override
+    public void write(byte[] buffer, int offset, int length) {
+        line.write(buffer, offset, length);
+    }
+
+    /**
+     * Blocks until all written frames have been played.
+     */
+    @Override
+    public void drain() { line.drain(); }
+
     /**
      * Flushes the output buffer.
      */
+    @Override
     public void flush() { line.flush(); }
 
     /**
      * Stops and closes the line.
      */
+    @Override
     public void close() {
         log.debug("Closing audio output line.");
         line.stop();
         line.close();
     }
-
-    /**
-     * @param frames List of frames as signed shorts to convert
-     * @return Array of frames as bytes
-     */
-    private static byte[] framesToBytes(List<Short> frames) {
-        byte[] buffer = new byte[frames.size() * 2];
-        byte[] frame = new byte[2];
-        for(int i = 0; i < frames.size(); i++) {
-            short fv = frames.get(i);
-            frame[0] = (byte) (fv >> 8);
-            frame[1] = (byte) fv;
-            buffer[i * 2] = frame[0];
-            buffer[i * 2 + 1] = frame[1];
-        }
-        return buffer;
-    }
 }
@@ -0,0 +1,81 @@
+package org.lavajuno.jfskmodem.io;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * StreamSink writes frames as raw 16-bit signed big-endian mono PCM to a stream.
+ */
+public class StreamSink implements SampleSink {
+    private final OutputStream out;
+
+    /**
+     * Constructs a StreamSink that writes to a stream.
+     * @param out Stream to write to
+     */
+    public StreamSink(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Creates (or truncates) a raw PCM file.
+     * @param path Path of the file
+     * @return StreamSink writing to the file
+     * @throws IOException If the file could not be created
+     */
+    public static StreamSink createRaw(Path path) throws IOException {
+        return new StreamSink(new BufferedOutputStream(Files.newOutputStream(path)));
+    }
+
+    /**
+     * Writes PCM bytes to the stream.
+     * @param buffer PCM bytes to write
+     * @param offset Index of the first byte to write
+     * @param length Number of bytes to write
+     * @throws UncheckedIOException If the stream could not be written
+     */
+    @Override
+    public void write(byte[] buffer, int offset, int length) {
+        try {
+            out.write(buffer, offset, length);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Flushes the stream.
+     * @throws UncheckedIOException If the stream could not be flushed
+     */
+    @Override
+    public void drain() {
+        try {
+            out.flush();
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Does nothing, as written bytes cannot be discarded from a stream.
+     */
+    @Override
+    public void flush() { }
+
+    /**
+     * Closes the stream.
+     * @throws UncheckedIOException If the stream could not be closed
+     */
+    @Override
+    public void close() {
+        try {
+            out.close();
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
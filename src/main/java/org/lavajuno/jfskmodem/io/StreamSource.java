@@ -0,0 +1,120 @@
+package org.lavajuno.jfskmodem.io;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * StreamSource reads frames from a stream of big-endian PCM bytes, such as a raw PCM
+ * file or an audio file decoded by Java Sound.
+ */
+public class StreamSource implements SampleSource {
+    private static final int BUFFER_SIZE = 4096;
+
+    private final InputStream in;
+    private final byte[] buffer;
+    private int n_buffered;
+
+    /**
+     * Constructs a StreamSource that reads raw 16-bit signed big-endian mono PCM from a stream.
+     * @param in Stream to read from
+     */
+    public StreamSource(InputStream in) {
+        this.in = in;
+        buffer = new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * Opens a raw 16-bit signed big-endian mono PCM file.
+     * @param path Path of the file
+     * @return StreamSource reading from the file
+     * @throws IOException If the file could not be opened
+     */
+    public static StreamSource openRaw(Path path) throws IOException {
+        return new StreamSource(new BufferedInputStream(Files.newInputStream(path)));
+    }
+
+    /**
+     * Opens an audio file (such as WAV) and converts it to 16-bit signed big-endian mono PCM.
+     * @param file Audio file
+     * @param sample_rate Sample rate of the file (Hz)
+     * @return StreamSource reading from the file
+     * @throws IOException If the file could not be read
+     * @throws UnsupportedAudioFileException If the file is not a supported audio file
+     * @throws IllegalArgumentException If the file is not mono at the given sample rate, or cannot be converted
+     */
+    public static StreamSource openAudioFile(File file, int sample_rate)
+            throws IOException, UnsupportedAudioFileException {
+        AudioFormat format = new AudioFormat(sample_rate, 16, 1, true, true);
+        AudioInputStream in = AudioSystem.getAudioInputStream(file);
+        return new StreamSource(AudioSystem.getAudioInputStream(format, in));
+    }
+
+    /**
+     * Opens a 48000 Hz audio file (such as WAV) and converts it to 16-bit signed big-endian mono PCM.
+     * @param file Audio file
+     * @return StreamSource reading from the file
+     * @throws IOException If the file could not be read
+     * @throws UnsupportedAudioFileException If the file is not a supported audio file
+     * @throws IllegalArgumentException If the file is not 48000 Hz mono, or cannot be converted
+     */
+    public static StreamSource openAudioFile(File file) throws IOException, UnsupportedAudioFileException {
+        return openAudioFile(file, 48000);
+    }
+
+    /**
+     * Blocks and reads frames from the stream.
+     * @param frames Array to store frames in
+     * @param offset Index of the first frame to store
+     * @param length Maximum number of frames to read
+     * @return Number of frames read, or -1 if the end of the stream has been reached
+     * @throws UncheckedIOException If the stream could not be read
+     */
+    @Override
+    public int read(short[] frames, int offset, int length) {
+        if(length <= 0) { return 0; }
+        try {
+            int n_bytes = Math.min(buffer.length, length * 2);
+            while(n_buffered < 2) {
+                int n_read = in.read(buffer, n_buffered, n_bytes - n_buffered);
+                if(n_read < 0) { return -1; }
+                n_buffered += n_read;
+            }
+            int n_frames = Pcm.decode(buffer, 0, n_buffered, frames, offset);
+            /* Keep a trailing odd byte for the next read */
+            int n_used = n_frames * 2;
+            if(n_buffered > n_used) { buffer[0] = buffer[n_used]; }
+            n_buffered -= n_used;
+            return n_frames;
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void start() { }
+
+    @Override
+    public void stop() { }
+
+    /**
+     * Closes the stream.
+     * @throws UncheckedIOException If the stream could not be closed
+     */
+    @Override
+    public void close() {
+        try {
+            in.close();
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
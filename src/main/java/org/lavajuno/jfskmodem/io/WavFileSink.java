@@ -0,0 +1,137 @@
+package org.lavajuno.jfskmodem.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * WavFileSink writes frames to a 16-bit mono WAV file (48000 Hz by default).
+ * The sizes in the WAV header are written when the sink is drained or closed.
+ */
+public class WavFileSink implements SampleSink {
+    private static final int HEADER_SIZE = 44;
+
+    private final int SAMPLE_RATE;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private long n_data_bytes;
+
+    /**
+     * Creates (or truncates) a WAV file with the given sample rate.
+     * @param path Path of the file
+     * @param sample_rate Sample rate of the file (Hz)
+     * @throws IOException If the file could not be created
+     */
+    public WavFileSink(Path path, int sample_rate) throws IOException {
+        SAMPLE_RATE = sample_rate;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = ByteBuffer.allocate(8192).order(ByteOrder.LITTLE_ENDIAN);
+        writeHeader();
+    }
+
+    /**
+     * Creates (or truncates) a 48000 Hz WAV file.
+     * @param path Path of the file
+     * @throws IOException If the file could not be created
+     */
+    public WavFileSink(Path path) throws IOException {
+        this(path, 48000);
+    }
+
+    /**
+     * Writes PCM bytes to the file, converting them to little-endian.
+     * @param pcm PCM bytes to write
+     * @param offset Index of the first byte to write
+     * @param length Number of bytes to write
+     * @throws UncheckedIOException If the file could not be written
+     */
+    @Override
+    public void write(byte[] pcm, int offset, int length) {
+        try {
+            for(int i = offset; i < offset + length - 1; i += 2) {
+                if(buffer.remaining() < 2) { writeBuffer(); }
+                buffer.put(pcm[i + 1]);
+                buffer.put(pcm[i]);
+            }
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes buffered frames and updates the WAV header.
+     * @throws UncheckedIOException If the file could not be written
+     */
+    @Override
+    public void drain() {
+        try {
+            writeBuffer();
+            writeHeader();
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Does nothing, as written frames cannot be discarded from the file.
+     */
+    @Override
+    public void flush() { }
+
+    /**
+     * Writes buffered frames, updates the WAV header and closes the file.
+     * @throws UncheckedIOException If the file could not be written
+     */
+    @Override
+    public void close() {
+        try {
+            drain();
+        } finally {
+            try {
+                channel.close();
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Writes the buffer to the end of the file.
+     * @throws IOException If the file could not be written
+     */
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while(buffer.hasRemaining()) {
+            n_data_bytes += channel.write(buffer, HEADER_SIZE + n_data_bytes);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes the WAV header with the current data size.
+     * @throws IOException If the file could not be written
+     */
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[]{'R', 'I', 'F', 'F'});
+        header.putInt((int) (36 + n_data_bytes));
+        header.put(new byte[]{'W', 'A', 'V', 'E', 'f', 'm', 't', ' '});
+        header.putInt(16);              /* fmt chunk size */
+        header.putShort((short) 1);     /* PCM */
+        header.putShort((short) 1);     /* Channels */
+        header.putInt(SAMPLE_RATE);     /* Sample rate */
+        header.putInt(SAMPLE_RATE * 2); /* Byte rate */
+        header.putShort((short) 2);     /* Block align */
+        header.putShort((short) 16);    /* Bits per sample */
+        header.put(new byte[]{'d', 'a', 't', 'a'});
+        header.putInt((int) n_data_bytes);
+        header.flip();
+        channel.write(header, 0);
+    }
+}
@@ -0,0 +1,144 @@
+package org.lavajuno.jfskmodem.log;
+
+import java.io.PrintStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AsyncAppender prints log lines on a dedicated thread, so that logging threads
+ * (such as audio capture and decode threads) never wait for the console.
+ * Lines are queued in a bounded queue, and are dropped rather than blocking when it is full.
+ * Part of the queue is reserved for lines that should not be dropped, so they are only dropped
+ * if the console falls far behind. The number of lines dropped is printed once there is room again.
+ * At shutdown the printing thread is stopped, and the lines still queued are printed in order.
+ */
+class AsyncAppender {
+    private static final int MAX_QUEUED_LINES = 4096;
+    /* Room in the queue that droppable lines do not use */
+    private static final int RESERVED_LINES = 1024;
+
+    private final PrintStream out;
+    private final BlockingQueue<String> lines;
+    private final AtomicLong n_queued;
+    private final AtomicLong n_dropped;
+    private final Object printed;
+    private final Thread writer;
+    private long n_printed;
+    private volatile boolean stopped;
+
+    /**
+     * Constructs an AsyncAppender and starts its thread.
+     * @param out Stream to print lines to
+     */
+    AsyncAppender(PrintStream out) {
+        this.out = out;
+        lines = new ArrayBlockingQueue<>(MAX_QUEUED_LINES);
+        n_queued = new AtomicLong();
+        n_dropped = new AtomicLong();
+        printed = new Object();
+        writer = new Thread(this::run, "jfskmodem-log");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::stop, "jfskmodem-log-flush"));
+    }
+
+    /**
+     * Queues a line to print, or drops it if there is no room. Never waits for the console,
+     * but prints the line at once after shutdown has begun.
+     * @param line Line to print
+     * @param droppable True to drop the line once the unreserved part of the queue is full,
+     *                  false to use the reserved part too
+     */
+    void append(String line, boolean droppable) {
+        if(stopped) {
+            awaitWriter();
+            drain();
+            print(line);
+            return;
+        }
+        if((droppable && lines.remainingCapacity() <= RESERVED_LINES) || !lines.offer(line)) {
+            n_dropped.incrementAndGet();
+        } else {
+            n_queued.incrementAndGet();
+        }
+        /* The queue may have been drained already if shutdown began while the line was queued */
+        if(stopped) {
+            awaitWriter();
+            drain();
+        }
+    }
+
+    /**
+     * Blocks until all lines queued before this call have been printed.
+     * @throws InterruptedException If interrupted while waiting
+     */
+    void flush() throws InterruptedException {
+        long target = n_queued.get();
+        synchronized(printed) {
+            while(n_printed < target) { printed.wait(); }
+        }
+    }
+
+    /**
+     * Prints lines as they are queued, until interrupted.
+     */
+    private void run() {
+        try {
+            while(true) { printQueued(lines.take()); }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops the printing thread, then prints the lines that are still queued.
+     */
+    private void stop() {
+        stopped = true;
+        writer.interrupt();
+        awaitWriter();
+        drain();
+    }
+
+    /**
+     * Waits for the printing thread to stop, after shutdown has begun.
+     */
+    private void awaitWriter() {
+        try {
+            writer.join();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Prints the lines that are still queued, in order. Only called once the printing thread has stopped.
+     */
+    private synchronized void drain() {
+        String line;
+        while((line = lines.poll()) != null) { printQueued(line); }
+    }
+
+    /**
+     * Prints a line that was taken from the queue, and counts it as printed.
+     * @param line Line to print
+     */
+    private void printQueued(String line) {
+        print(line);
+        synchronized(printed) {
+            n_printed++;
+            printed.notifyAll();
+        }
+    }
+
+    /**
+     * Prints a line, after reporting any lines dropped before it.
+     * @param line Line to print
+     */
+    private synchronized void print(String line) {
+        long dropped = n_dropped.getAndSet(0);
+        if(dropped > 0) { out.println("(jfskmodem) " + dropped + " log line(s) dropped."); }
+        out.println(line);
+    }
+}
@@ -1,16 +1,24 @@
 package org.lavajuno.jfskmodem.log;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.function.Supplier;
 
 /**
  * Log provides simple functionality for logging events by class.
  * Log events can have one of five severity levels:
  * DEBUG, INFO, WARN, ERROR and FATAL.
+ * Messages can be given as Suppliers, which are only called if the event's level is enabled,
+ * so disabled events cost a level check. Enabled events are printed by a shared background
+ * thread, so logging never blocks the caller on the console. If events are logged faster
+ * than they can be printed, DEBUG and INFO events are dropped first, and more severe events
+ * only once the room reserved for them is used up. Dropped events are counted.
  */
 @SuppressWarnings("unused")
 public class Log {
-    private static final SimpleDateFormat LOG_DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter LOG_DATE_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
     private static final String LOG_PREFIX = " (jfskmodem)";
     private static final String LOG_DEBUG = " \u001B[34m[ DEBUG ]\u001B[0m ";
     private static final String LOG_INFO = " \u001B[32m[ INFO ]\u001B[0m  ";
@@ -18,6 +26,13 @@ public class Log {
     private static final String LOG_ERROR = " \u001B[31m[ ERROR ]\u001B[0m ";
     private static final String LOG_FATAL = " \u001B[31m[ FATAL ]\u001B[0m ";
 
+    private static final AsyncAppender APPENDER = new AsyncAppender(System.out);
+
+    /**
+     * Timestamp of the current second, formatted once per second
+     */
+    private static volatile Timestamp timestamp = new Timestamp(Long.MIN_VALUE, "");
+
     public enum Level {
         DEBUG, INFO, WARN, ERROR, FATAL
     }
@@ -35,15 +50,22 @@ public class Log {
         this.log_level = log_level;
     }
 
+    /**
+     * Checks whether events with a specified severity are logged
+     * @param level Severity of the log event
+     * @return True if events with this severity are logged
+     */
+    public boolean isEnabled(Level level) { return level.ordinal() >= log_level.ordinal(); }
+
     /**
      * Logs an event with a specified severity
      * @param level Severity of the log event
      * @param message Message to log
      */
     private void print(Level level, String message) {
-        if(level.ordinal() < log_level.ordinal()) { return; }
+        if(!isEnabled(level)) { return; }
         StringBuilder sb = new StringBuilder();
-        sb.append(LOG_DATE_FORMAT.format(new Date()));
+        sb.append(getTimestamp());
         sb.append(LOG_PREFIX);
         switch (level) {
             case DEBUG -> sb.append(LOG_DEBUG);
@@ -56,7 +78,16 @@ public class Log {
         sb.append(" ".repeat(Math.max(0, 20 - class_name.length())));
         sb.append(": ");
         sb.append(message);
-        System.out.println(sb);
+        APPENDER.append(sb.toString(), level.ordinal() < Level.WARN.ordinal());
+    }
+
+    /**
+     * Logs an event with a specified severity, getting its message only if the severity is enabled
+     * @param level Severity of the log event
+     * @param message Supplier of the message to log
+     */
+    private void print(Level level, Supplier<String> message) {
+        if(isEnabled(level)) { print(level, message.get()); }
     }
 
     /**
@@ -65,28 +96,97 @@ public class Log {
      */
     public void debug(String message) { this.print(Level.DEBUG, message); }
 
+    /**
+     * Logs an event with severity DEBUG
+     * @param message Supplier of the message to log, called only if DEBUG is enabled
+     */
+    public void debug(Supplier<String> message) { this.print(Level.DEBUG, message); }
+
     /**
      * Logs an event with severity INFO
      * @param message Message to log
      */
     public void info(String message) { this.print(Level.INFO, message); }
 
+    /**
+     * Logs an event with severity INFO
+     * @param message Supplier of the message to log, called only if INFO is enabled
+     */
+    public void info(Supplier<String> message) { this.print(Level.INFO, message); }
+
     /**
      * Logs an event with severity WARN
      * @param message Message to log
      */
     public void warn(String message) { this.print(Level.WARN, message); }
 
+    /**
+     * Logs an event with severity WARN
+     * @param message Supplier of the message to log, called only if WARN is enabled
+     */
+    public void warn(Supplier<String> message) { this.print(Level.WARN, message); }
+
     /**
      * Logs an event with severity ERROR
      * @param message Message to log
      */
     public void error(String message) { this.print(Level.ERROR, message); }
 
+    /**
+     * Logs an event with severity ERROR
+     * @param message Supplier of the message to log, called only if ERROR is enabled
+     */
+    public void error(Supplier<String> message) { this.print(Level.ERROR, message); }
+
     /**
      * Logs an event with severity FATAL
      * @param message Message to log
      */
     public void fatal(String message) { this.print(Level.FATAL, message); }
 
-}
\ No newline at end of file
+    /**
+     * Logs an event with severity FATAL
+     * @param message Supplier of the message to log, called only if FATAL is enabled
+     */
+    public void fatal(Supplier<String> message) { this.print(Level.FATAL, message); }
+
+    /**
+     * Blocks until all events logged so far have been printed.
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public static void flush() throws InterruptedException { APPENDER.flush(); }
+
+    /**
+     * Gets the formatted timestamp of the current second, formatting it if the second has changed
+     * @return Formatted timestamp
+     */
+    private static String getTimestamp() {
+        long second = System.currentTimeMillis() / 1000;
+        Timestamp current = timestamp;
+        if(current.second != second) {
+            current = new Timestamp(second, LOG_DATE_FORMAT.format(Instant.ofEpochSecond(second)));
+            timestamp = current;
+        }
+        return current.text;
+    }
+
+    /**
+     * Timestamp is a formatted second, replaced as a whole so that threads never see
+     * the second of one timestamp with the text of another.
+     */
+    private static class Timestamp {
+        private final long second;
+        private final String text;
+
+        /**
+         * Constructs a Timestamp.
+         * @param second Seconds since the epoch
+         * @param text Formatted timestamp
+         */
+        Timestamp(long second, String text) {
+            this.second = second;
+            this.text = text;
+        }
+    }
+
+}
@@ -0,0 +1,18 @@
+package org.lavajuno.jfskmodem.metrics;
+
+/**
+ * Counter counts events, such as frames received or signals detected.
+ * Implementations must not allocate when counting, since counters are updated on the sample path.
+ */
+public interface Counter {
+    /**
+     * Adds one to this Counter.
+     */
+    default void increment() { add(1); }
+
+    /**
+     * Adds to this Counter.
+     * @param n Number of events to add (not negative)
+     */
+    void add(long n);
+}
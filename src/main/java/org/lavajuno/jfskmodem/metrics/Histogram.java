@@ -0,0 +1,20 @@
+package org.lavajuno.jfskmodem.metrics;
+
+/**
+ * Histogram records the distribution of a measurement, such as a detector margin or the time
+ * taken by a decoding stage. Implementations must not allocate when recording,
+ * since histograms are updated on the sample path.
+ */
+public interface Histogram {
+    /**
+     * Records a measurement.
+     * @param value Measured value
+     */
+    void record(double value);
+
+    /**
+     * Records the time elapsed since a start time.
+     * @param start_nanos Start time from System.nanoTime()
+     */
+    default void recordSince(long start_nanos) { record(System.nanoTime() - start_nanos); }
+}
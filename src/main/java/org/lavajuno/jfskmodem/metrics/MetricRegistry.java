@@ -0,0 +1,24 @@
+package org.lavajuno.jfskmodem.metrics;
+
+/**
+ * MetricRegistry creates the counters and histograms that metrics are recorded to.
+ * Implementing it exports jfskmodem's metrics to another metrics library.
+ */
+public interface MetricRegistry {
+    /**
+     * Gets the counter with the given name, creating it if needed.
+     * @param name Name of the counter
+     * @param description Description of what the counter counts
+     * @return Counter with the given name
+     */
+    Counter counter(String name, String description);
+
+    /**
+     * Gets the histogram with the given name, creating it if needed.
+     * @param name Name of the histogram
+     * @param description Description of what the histogram measures, including its unit
+     * @param bounds Upper bounds of the histogram's buckets, in ascending order
+     * @return Histogram with the given name
+     */
+    Histogram histogram(String name, String description, double[] bounds);
+}
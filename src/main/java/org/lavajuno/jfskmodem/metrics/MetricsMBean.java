@@ -0,0 +1,118 @@
+package org.lavajuno.jfskmodem.metrics;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * MetricsMBean exports the metrics of a SimpleMetricRegistry through JMX, as read-only attributes.
+ * Each counter is an attribute with the counter's name, and each histogram has attributes
+ * for its count, mean, maximum, and 50th, 90th and 99th percentiles, named after the histogram
+ * with a suffix (such as "jfskmodem.receiver.clock.score.p99"). Attributes are read from the
+ * registry when requested, so metrics created after registration appear too.
+ */
+public class MetricsMBean implements DynamicMBean {
+    private static final String[] HISTOGRAM_SUFFIXES = { "count", "mean", "max", "p50", "p90", "p99" };
+
+    private final SimpleMetricRegistry registry;
+
+    /**
+     * Constructs a MetricsMBean for the given registry.
+     * @param registry Registry to export
+     */
+    public MetricsMBean(SimpleMetricRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Registers a MetricsMBean for the given registry with the platform MBean server.
+     * @param registry Registry to export
+     * @param name Object name to register the MBean as (such as "org.lavajuno.jfskmodem:type=Metrics")
+     * @return Registered object name
+     * @throws JMException If the name is invalid or already registered
+     */
+    public static ObjectName register(SimpleMetricRegistry registry, String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        return server.registerMBean(new MetricsMBean(registry), new ObjectName(name)).getObjectName();
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        if(registry.getMetric(attribute) instanceof SimpleMetricRegistry.SimpleCounter counter) {
+            return counter.getCount();
+        }
+        int dot = attribute.lastIndexOf('.');
+        Object metric = dot < 0 ? null : registry.getMetric(attribute.substring(0, dot));
+        if(metric instanceof SimpleMetricRegistry.SimpleHistogram histogram) {
+            switch(attribute.substring(dot + 1)) {
+                case "count": return histogram.getCount();
+                case "mean": return histogram.getMean();
+                case "max": return histogram.getMax();
+                case "p50": return histogram.getPercentile(0.5);
+                case "p90": return histogram.getPercentile(0.9);
+                case "p99": return histogram.getPercentile(0.99);
+                default: break;
+            }
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for(String attribute : attributes) {
+            try {
+                list.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch(AttributeNotFoundException e) {
+                /* Missing attributes are left out of the list */
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only.");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) { return new AttributeList(); }
+
+    @Override
+    public Object invoke(String action, Object[] params, String[] signature) throws ReflectionException {
+        /* Metrics have no operations */
+        throw new ReflectionException(new NoSuchMethodException(action));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for(Map.Entry<String, SimpleMetricRegistry.SimpleCounter> e
+                : new TreeMap<>(registry.getCounters()).entrySet()) {
+            attributes.add(new MBeanAttributeInfo(e.getKey(), "long", e.getValue().getDescription(),
+                    true, false, false));
+        }
+        for(Map.Entry<String, SimpleMetricRegistry.SimpleHistogram> e
+                : new TreeMap<>(registry.getHistograms()).entrySet()) {
+            for(String suffix : HISTOGRAM_SUFFIXES) {
+                String type = suffix.equals("count") ? "long" : "double";
+                attributes.add(new MBeanAttributeInfo(e.getKey() + "." + suffix, type,
+                        e.getValue().getDescription() + " (" + suffix + ")", true, false, false));
+            }
+        }
+        return new MBeanInfo(getClass().getName(), "jfskmodem metrics",
+                attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+    }
+}
@@ -0,0 +1,169 @@
+package org.lavajuno.jfskmodem.metrics;
+
+/**
+ * ModemMetrics holds the counters and histograms that receivers and transmitters record to.
+ * Metric names start with a prefix, so that several modems can share a registry.
+ * Times are measured in nanoseconds. Every update on the sample path is a counter addition
+ * or a histogram record, so recording metrics does not allocate.
+ */
+public class ModemMetrics {
+    /**
+     * Default prefix of metric names
+     */
+    public static final String DEFAULT_PREFIX = "jfskmodem";
+
+    /* Bucket bounds for times (100 ns to about 100 s), margins, and clock offsets (frames) */
+    private static final double[] TIME_BOUNDS = SimpleMetricRegistry.exponentialBounds(100, 2, 31);
+    private static final double[] FRACTION_BOUNDS = SimpleMetricRegistry.linearBounds(0.05, 0.05, 20);
+    private static final double[] OFFSET_BOUNDS = SimpleMetricRegistry.exponentialBounds(1, 2, 16);
+    private static final double[] CORRECTION_BOUNDS = SimpleMetricRegistry.linearBounds(0, 0.25, 17);
+
+    private final Counter frames_received;
+    private final Counter signals;
+    private final Counter bytes_received;
+    private final Counter corrected_bits;
+    private final Histogram clock_offset;
+    private final Histogram clock_score;
+    private final Histogram bit_margin;
+    private final Histogram corrections_per_byte;
+    private final Histogram record_time;
+    private final Histogram clock_time;
+    private final Histogram bit_time;
+    private final Histogram byte_time;
+
+    private final Counter transmissions;
+    private final Counter bytes_transmitted;
+    private final Counter frames_transmitted;
+    private final Histogram modulation_time;
+    private final Histogram playback_time;
+
+    /**
+     * Constructs a ModemMetrics that creates its metrics in the given registry.
+     * @param registry Registry to create metrics in
+     * @param prefix Prefix of metric names
+     */
+    public ModemMetrics(MetricRegistry registry, String prefix) {
+        String rx = prefix + ".receiver.";
+        String tx = prefix + ".transmitter.";
+        frames_received = registry.counter(rx + "frames", "Frames fed to the demodulator");
+        signals = registry.counter(rx + "signals", "Signals (bursts) detected");
+        bytes_received = registry.counter(rx + "bytes", "Bytes decoded");
+        corrected_bits = registry.counter(rx + "corrected_bits", "Code bits corrected by error correction");
+        clock_offset = registry.histogram(rx + "clock.offset",
+                "Offset of the recovered clock into the clock scan (frames)", OFFSET_BOUNDS);
+        clock_score = registry.histogram(rx + "clock.score",
+                "Match score of the recovered clock (0 to 1)", FRACTION_BOUNDS);
+        bit_margin = registry.histogram(rx + "bit.margin",
+                "Detector margin of each bit (0 to 1)", FRACTION_BOUNDS);
+        corrections_per_byte = registry.histogram(rx + "ecc.corrections_per_byte",
+                "Code bits corrected per decoded byte, for each block", CORRECTION_BOUNDS);
+        record_time = registry.histogram(rx + "time.record",
+                "Time waiting for each block of frames from the source (ns)", TIME_BOUNDS);
+        clock_time = registry.histogram(rx + "time.clock",
+                "Time recovering the clock of each signal (ns)", TIME_BOUNDS);
+        bit_time = registry.histogram(rx + "time.bit",
+                "Time detecting each symbol, including timing recovery (ns)", TIME_BOUNDS);
+        byte_time = registry.histogram(rx + "time.byte",
+                "Time decoding each block of error correction and passing on its bytes (ns)", TIME_BOUNDS);
+        transmissions = registry.counter(tx + "transmissions", "Messages transmitted");
+        bytes_transmitted = registry.counter(tx + "bytes", "Bytes transmitted");
+        frames_transmitted = registry.counter(tx + "frames", "Frames written to the sink");
+        modulation_time = registry.histogram(tx + "time.modulation",
+                "Time encoding and modulating each message (ns)", TIME_BOUNDS);
+        playback_time = registry.histogram(tx + "time.playback",
+                "Time writing each message to the sink and waiting for it to play (ns)", TIME_BOUNDS);
+    }
+
+    /**
+     * Constructs a ModemMetrics that creates its metrics in the given registry, with the default prefix.
+     * @param registry Registry to create metrics in
+     */
+    public ModemMetrics(MetricRegistry registry) {
+        this(registry, DEFAULT_PREFIX);
+    }
+
+    /**
+     * @return Counter of frames fed to the demodulator
+     */
+    public Counter getFramesReceived() { return frames_received; }
+
+    /**
+     * @return Counter of signals (bursts) detected
+     */
+    public Counter getSignals() { return signals; }
+
+    /**
+     * @return Counter of bytes decoded
+     */
+    public Counter getBytesReceived() { return bytes_received; }
+
+    /**
+     * @return Counter of code bits corrected by error correction
+     */
+    public Counter getCorrectedBits() { return corrected_bits; }
+
+    /**
+     * @return Histogram of the offset of the recovered clock (frames)
+     */
+    public Histogram getClockOffset() { return clock_offset; }
+
+    /**
+     * @return Histogram of the match score of the recovered clock
+     */
+    public Histogram getClockScore() { return clock_score; }
+
+    /**
+     * @return Histogram of the detector margin of each bit
+     */
+    public Histogram getBitMargin() { return bit_margin; }
+
+    /**
+     * @return Histogram of code bits corrected per decoded byte
+     */
+    public Histogram getCorrectionsPerByte() { return corrections_per_byte; }
+
+    /**
+     * @return Histogram of the time waiting for each block of frames (ns)
+     */
+    public Histogram getRecordTime() { return record_time; }
+
+    /**
+     * @return Histogram of the time recovering the clock of each signal (ns)
+     */
+    public Histogram getClockTime() { return clock_time; }
+
+    /**
+     * @return Histogram of the time detecting each symbol (ns)
+     */
+    public Histogram getBitTime() { return bit_time; }
+
+    /**
+     * @return Histogram of the time decoding each block of error correction (ns)
+     */
+    public Histogram getByteTime() { return byte_time; }
+
+    /**
+     * @return Counter of messages transmitted
+     */
+    public Counter getTransmissions() { return transmissions; }
+
+    /**
+     * @return Counter of bytes transmitted
+     */
+    public Counter getBytesTransmitted() { return bytes_transmitted; }
+
+    /**
+     * @return Counter of frames written to the sink
+     */
+    public Counter getFramesTransmitted() { return frames_transmitted; }
+
+    /**
+     * @return Histogram of the time encoding and modulating each message (ns)
+     */
+    public Histogram getModulationTime() { return modulation_time; }
+
+    /**
+     * @return Histogram of the time writing each message to the sink and waiting for it to play (ns)
+     */
+    public Histogram getPlaybackTime() { return playback_time; }
+}
@@ -0,0 +1,242 @@
+package org.lavajuno.jfskmodem.metrics;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SimpleMetricRegistry keeps counters and histograms in memory, where they can be read
+ * directly or through JMX with a MetricsMBean. Metrics can be updated from any thread.
+ */
+public class SimpleMetricRegistry implements MetricRegistry {
+    /* Counters and histograms share one map, so that a name is claimed by one kind of metric atomically */
+    private final ConcurrentMap<String, Object> metrics;
+
+    /**
+     * Constructs an empty SimpleMetricRegistry.
+     */
+    public SimpleMetricRegistry() {
+        metrics = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @throws IllegalArgumentException If a histogram has the same name
+     */
+    @Override
+    public SimpleCounter counter(String name, String description) throws IllegalArgumentException {
+        Object metric = metrics.computeIfAbsent(name, n -> new SimpleCounter(description));
+        if(!(metric instanceof SimpleCounter)) {
+            throw new IllegalArgumentException("Invalid metric name.");
+        }
+        return (SimpleCounter) metric;
+    }
+
+    /**
+     * @throws IllegalArgumentException If a counter has the same name, or the bounds are not ascending
+     */
+    @Override
+    public SimpleHistogram histogram(String name, String description, double[] bounds)
+            throws IllegalArgumentException {
+        Object metric = metrics.computeIfAbsent(name, n -> new SimpleHistogram(description, bounds));
+        if(!(metric instanceof SimpleHistogram)) {
+            throw new IllegalArgumentException("Invalid metric name.");
+        }
+        return (SimpleHistogram) metric;
+    }
+
+    /**
+     * @return Copy of the counters by name
+     */
+    public Map<String, SimpleCounter> getCounters() { return getMetrics(SimpleCounter.class); }
+
+    /**
+     * @return Copy of the histograms by name
+     */
+    public Map<String, SimpleHistogram> getHistograms() { return getMetrics(SimpleHistogram.class); }
+
+    /**
+     * @param name Name of the metric
+     * @return Counter or histogram with the given name, or null if there is none
+     */
+    Object getMetric(String name) { return metrics.get(name); }
+
+    /**
+     * @param type Class of the metrics to get
+     * @return Copy of the metrics of the given class by name
+     */
+    private <T> Map<String, T> getMetrics(Class<T> type) {
+        Map<String, T> res = new HashMap<>();
+        for(Map.Entry<String, Object> e : metrics.entrySet()) {
+            if(type.isInstance(e.getValue())) { res.put(e.getKey(), type.cast(e.getValue())); }
+        }
+        return Collections.unmodifiableMap(res);
+    }
+
+    /**
+     * Creates histogram bounds that grow by a constant factor, for measurements such as
+     * times that span several orders of magnitude.
+     * @param first First bound
+     * @param factor Ratio of each bound to the one before it
+     * @param n_bounds Number of bounds
+     * @return Histogram bounds
+     */
+    public static double[] exponentialBounds(double first, double factor, int n_bounds) {
+        double[] bounds = new double[n_bounds];
+        for(int i = 0; i < n_bounds; i++) { bounds[i] = first * Math.pow(factor, i); }
+        return bounds;
+    }
+
+    /**
+     * Creates evenly spaced histogram bounds.
+     * @param first First bound
+     * @param width Difference between adjacent bounds
+     * @param n_bounds Number of bounds
+     * @return Histogram bounds
+     */
+    public static double[] linearBounds(double first, double width, int n_bounds) {
+        double[] bounds = new double[n_bounds];
+        for(int i = 0; i < n_bounds; i++) { bounds[i] = first + width * i; }
+        return bounds;
+    }
+
+    /**
+     * SimpleCounter is an in-memory Counter.
+     */
+    public static class SimpleCounter implements Counter {
+        private final String description;
+        private final LongAdder count;
+
+        /**
+         * Constructs a SimpleCounter at zero.
+         * @param description Description of what the counter counts
+         */
+        SimpleCounter(String description) {
+            this.description = description;
+            count = new LongAdder();
+        }
+
+        @Override
+        public void add(long n) { count.add(n); }
+
+        /**
+         * @return Number of events counted
+         */
+        public long getCount() { return count.sum(); }
+
+        /**
+         * @return Description of what this SimpleCounter counts
+         */
+        public String getDescription() { return description; }
+    }
+
+    /**
+     * SimpleHistogram is an in-memory Histogram with fixed buckets. Each measurement is
+     * counted in the first bucket whose upper bound it does not exceed, or in an overflow
+     * bucket after the last bound.
+     */
+    public static class SimpleHistogram implements Histogram {
+        private final String description;
+        private final double[] bounds;
+        private final AtomicLongArray buckets;
+        private final LongAdder count;
+        private final DoubleAdder sum;
+        private final DoubleAccumulator max;
+
+        /**
+         * Constructs an empty SimpleHistogram.
+         * @param description Description of what the histogram measures
+         * @param bounds Upper bounds of the buckets, in ascending order
+         * @throws IllegalArgumentException If the bounds are not ascending
+         */
+        SimpleHistogram(String description, double[] bounds) throws IllegalArgumentException {
+            for(int i = 1; i < bounds.length; i++) {
+                if(bounds[i] <= bounds[i - 1]) {
+                    throw new IllegalArgumentException("Invalid histogram bounds.");
+                }
+            }
+            this.description = description;
+            this.bounds = bounds.clone();
+            buckets = new AtomicLongArray(bounds.length + 1);
+            count = new LongAdder();
+            sum = new DoubleAdder();
+            max = new DoubleAccumulator(Math::max, Double.NEGATIVE_INFINITY);
+        }
+
+        @Override
+        public void record(double value) {
+            int i = Arrays.binarySearch(bounds, value);
+            buckets.incrementAndGet(i >= 0 ? i : -i - 1);
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        /**
+         * @return Number of measurements recorded
+         */
+        public long getCount() { return count.sum(); }
+
+        /**
+         * @return Sum of the measurements recorded
+         */
+        public double getSum() { return sum.sum(); }
+
+        /**
+         * @return Mean of the measurements recorded, or 0 if there are none
+         */
+        public double getMean() {
+            long n = getCount();
+            return n > 0 ? getSum() / n : 0;
+        }
+
+        /**
+         * @return Largest measurement recorded, or 0 if there are none
+         */
+        public double getMax() { return getCount() > 0 ? max.get() : 0; }
+
+        /**
+         * Estimates a percentile of the measurements recorded, as the upper bound of the bucket
+         * it falls in (or the largest measurement, if it falls in the overflow bucket).
+         * @param fraction Fraction of the measurements at or below the percentile (0 to 1)
+         * @return Estimated percentile, or 0 if there are no measurements
+         */
+        public double getPercentile(double fraction) {
+            long total = 0;
+            for(int i = 0; i < buckets.length(); i++) { total += buckets.get(i); }
+            if(total == 0) { return 0; }
+            long rank = (long) Math.ceil(fraction * total);
+            long n = 0;
+            for(int i = 0; i < bounds.length; i++) {
+                n += buckets.get(i);
+                if(n >= rank) { return Math.min(bounds[i], getMax()); }
+            }
+            return getMax();
+        }
+
+        /**
+         * @return Upper bounds of the buckets
+         */
+        public double[] getBounds() { return bounds.clone(); }
+
+        /**
+         * @return Number of measurements in each bucket, with the overflow bucket last
+         */
+        public long[] getBucketCounts() {
+            long[] counts = new long[buckets.length()];
+            for(int i = 0; i < counts.length; i++) { counts[i] = buckets.get(i); }
+            return counts;
+        }
+
+        /**
+         * @return Description of what this SimpleHistogram measures
+         */
+        public String getDescription() { return description; }
+    }
+}
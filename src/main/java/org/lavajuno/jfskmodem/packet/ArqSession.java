@@ -0,0 +1,435 @@
+package org.lavajuno.jfskmodem.packet;
+
+import org.lavajuno.jfskmodem.Receiver;
+import org.lavajuno.jfskmodem.Transmitter;
+import org.lavajuno.jfskmodem.log.Log;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ArqSession transfers messages reliably between two half-duplex stations, using
+ * selective repeat ARQ over packets.
+ * The sender splits a message into numbered segments and sends a window of them in a
+ * single transmission (a round). The receiver answers each round once, after its last segment,
+ * with a status packet listing the segments it holds, and the sender then sends only the missing
+ * segments (along with new ones) in its next round. Rounds are numbered, and each status names
+ * the round it answers, so the sender drops statuses for earlier rounds (such as those sent
+ * after part of a round that noise split into several signals). A round whose end was heard
+ * but could not be decoded is answered as well, so the sender does not have to wait for its timeout.
+ * The window grows while transmissions arrive intact, faster when the turnaround between
+ * transmissions is long compared to the airtime of a segment, and halves on loss.
+ * The listen timeout follows the measured turnaround, and backs off when no status arrives.
+ * Both stations must use the same segment size. A session is not thread-safe.
+ */
+public class ArqSession {
+    /**
+     * Default number of message bytes in a segment
+     */
+    public static final int DEFAULT_SEGMENT_BYTES = 128;
+
+    /**
+     * Largest number of segments in flight (the span of a status bitmap)
+     */
+    public static final int MAX_WINDOW = 64;
+
+    /**
+     * Default listen timeout in seconds, until the turnaround has been measured
+     */
+    public static final int DEFAULT_TIMEOUT = 2;
+
+    private static final int MIN_TIMEOUT = 100; // (ms)
+    private static final int MAX_TIMEOUT = 30000; // (ms)
+    /* One less than NOTHING_RECEIVED, so that a complete transfer's status base is never mistaken for it */
+    private static final int MAX_SEGMENTS = 0xfffe;
+    private static final int MAX_SILENT_ROUNDS = 8;
+    private static final int MAX_STALLED_ROUNDS = 32;
+    private static final byte TYPE_DATA = 1;
+    private static final byte TYPE_STATUS = 2;
+    /* Set in the flags of the last data packet of a round */
+    private static final int FLAG_END_OF_ROUND = 0x01;
+    private static final int DATA_HEADER_SIZE = 8;
+    private static final int STATUS_SIZE = 5 + MAX_WINDOW / 8;
+    private static final int NOTHING_RECEIVED = 0xffff;
+
+    private final int SEGMENT_BYTES;
+
+    private final PacketTransmitter transmitter;
+    private final PacketReceiver receiver;
+    private final Log log;
+
+    /* Sending */
+    private final int[] round_segments;
+    private int next_transfer;
+    private int next_round;
+    private int window;
+    private int timeout; // (ms)
+    private double srtt;
+    private double rttvar;
+    private double segment_time;
+    private int n_sent_segments;
+    private int n_resent_segments;
+
+    /* Receiving */
+    private byte[][] rx_segments;
+    private int rx_transfer;
+    private int rx_n_received;
+    private int completed_transfer;
+    private int completed_segments;
+    private int answered_round;
+
+    /**
+     * Constructs an ArqSession with the given transmitter, receiver, segment size, initial timeout,
+     * and log level.
+     * @param transmitter Transmitter to send packets with
+     * @param receiver Receiver to receive packets with
+     * @param segment_bytes Number of message bytes in a segment
+     * @param initial_timeout Listen timeout in seconds, until the turnaround has been measured
+     * @param log_level Log level for this ArqSession
+     * @throws IllegalArgumentException If the segment size or timeout is invalid
+     */
+    public ArqSession(Transmitter transmitter, Receiver receiver, int segment_bytes, int initial_timeout,
+                      Log.Level log_level) throws IllegalArgumentException {
+        if(segment_bytes <= 0 || segment_bytes + DATA_HEADER_SIZE > Packets.MAX_PAYLOAD) {
+            throw new IllegalArgumentException("Invalid segment size.");
+        }
+        if(initial_timeout <= 0) {
+            throw new IllegalArgumentException("Invalid timeout.");
+        }
+        SEGMENT_BYTES = segment_bytes;
+        /* A whole window must fit in one transmission, as each transmission is answered */
+        this.transmitter = new PacketTransmitter(transmitter,
+                MAX_WINDOW * (segment_bytes + DATA_HEADER_SIZE + Packets.OVERHEAD), log_level);
+        this.receiver = new PacketReceiver(receiver, log_level);
+        log = new Log("ArqSession", log_level);
+        round_segments = new int[MAX_WINDOW];
+        /* Random first transfer and round numbers, so a new session is not mistaken for a repeat of an old one */
+        next_transfer = ThreadLocalRandom.current().nextInt(256);
+        next_round = ThreadLocalRandom.current().nextInt(256);
+        window = 1;
+        timeout = (int) Math.min(MAX_TIMEOUT, TimeUnit.SECONDS.toMillis(initial_timeout));
+        srtt = -1;
+        rx_transfer = -1;
+        completed_transfer = -1;
+        answered_round = -1;
+    }
+
+    /**
+     * Constructs an ArqSession with the given transmitter and receiver.
+     * @param transmitter Transmitter to send packets with
+     * @param receiver Receiver to receive packets with
+     */
+    public ArqSession(Transmitter transmitter, Receiver receiver) {
+        this(transmitter, receiver, DEFAULT_SEGMENT_BYTES, DEFAULT_TIMEOUT, Log.Level.WARN);
+    }
+
+    /**
+     * Sends a message, retransmitting lost segments until the other station holds all of them.
+     * Blocks until the transfer completes or fails. The other station must be receiving.
+     * @param message Message to send
+     * @return True if the other station acknowledged the whole message, false if it stopped
+     *         answering (it may still have received the message if only its last status was lost)
+     * @throws IllegalArgumentException If the message needs more than 65534 segments
+     */
+    public boolean send(byte[] message) throws IllegalArgumentException {
+        int n_segments = Math.max(1, (message.length + SEGMENT_BYTES - 1) / SEGMENT_BYTES);
+        if(n_segments > MAX_SEGMENTS) {
+            throw new IllegalArgumentException("Message too long.");
+        }
+        int transfer = next_transfer;
+        next_transfer = (next_transfer + 1) & 0xff;
+        log.info(() -> "Sending " + message.length + " bytes in " + n_segments + " segment(s).");
+        boolean[] acked = new boolean[n_segments];
+        boolean[] sent = new boolean[n_segments];
+        int base = 0;
+        int n_silent = 0;
+        int n_stalled = 0;
+        while(base < n_segments) {
+            int round = next_round;
+            next_round = (next_round + 1) & 0xff;
+            int n_round = 0;
+            for(int seq = base; seq < n_segments && seq < base + MAX_WINDOW && n_round < window; seq++) {
+                if(!acked[seq]) { round_segments[n_round++] = seq; }
+            }
+            for(int i = 0; i < n_round; i++) {
+                int seq = round_segments[i];
+                transmitter.queue(getDataPacket(transfer, round, seq, n_segments, i == n_round - 1, message));
+                if(sent[seq]) { n_resent_segments++; }
+                sent[seq] = true;
+            }
+            n_sent_segments += n_round;
+            long start = System.nanoTime();
+            transmitter.flush();
+            long end = System.nanoTime();
+            int n_acked = awaitStatus(transfer, round, acked, n_round);
+            if(n_acked < 0) {
+                /* No status: the transmission or the reply was lost */
+                timeout = Math.min(MAX_TIMEOUT, timeout * 2);
+                window = Math.max(1, window / 2);
+                log.warn(() -> "No status for transfer " + transfer + ". (Timeout " + timeout + " ms, window "
+                        + window + ")");
+            } else {
+                updateTiming((end - start) / 1e6 / n_round, (System.nanoTime() - end) / 1e6);
+                if(n_acked == n_round) {
+                    /* Grow by the segments that fit in one turnaround, since each round costs one */
+                    window = Math.min(MAX_WINDOW, window + Math.max(1, (int) (srtt / segment_time)));
+                } else {
+                    window = Math.max(1, window / 2);
+                    int n_lost = n_round - n_acked;
+                    int n_sent = n_round;
+                    log.debug(() -> n_lost + " of " + n_sent + " segment(s) lost. (Window " + window + ")");
+                }
+            }
+            /* Give up if the other station stops answering, or answers without making progress */
+            n_silent = n_acked < 0 ? n_silent + 1 : 0;
+            n_stalled = n_acked > 0 ? 0 : n_stalled + 1;
+            if(n_silent >= MAX_SILENT_ROUNDS || n_stalled >= MAX_STALLED_ROUNDS) {
+                log.error(() -> "Transfer " + transfer + " failed.");
+                return false;
+            }
+            while(base < n_segments && acked[base]) { base++; }
+        }
+        log.info(() -> "Sent transfer " + transfer + ".");
+        return true;
+    }
+
+    /**
+     * Receives a message, answering each round of the sender with a status packet until all of
+     * its segments have been received. A round is answered once, when its last segment arrives,
+     * or when a signal after part of it cannot be decoded or does not arrive. Repeats of a message
+     * that was already received are acknowledged again, so the sender can finish.
+     * @param timeout Listen timeout in seconds, for each transmission
+     * @return Received message. Empty if timeout is reached before the message is complete.
+     */
+    public byte[] receive(int timeout) {
+        /* Round heard in part and not yet answered, as transfer << 8 | round */
+        int pending_round = -1;
+        while(true) {
+            int n_crc_errors = receiver.getDecoder().getCrcErrors();
+            int n_discarded = receiver.getDecoder().getDiscardedBytes();
+            List<byte[]> packets = receiver.receive(timeout);
+            int heard_round = -1;
+            boolean round_ended = false;
+            for(byte[] packet : packets) {
+                if(packet.length < DATA_HEADER_SIZE || packet[0] != TYPE_DATA || !acceptSegment(packet)) {
+                    continue;
+                }
+                if((packet[2] & 0xff) == answered_round) { continue; } /* Rest of a round that was already answered */
+                heard_round = (packet[1] & 0xff) << 8 | (packet[2] & 0xff);
+                round_ended |= (packet[3] & FLAG_END_OF_ROUND) != 0;
+            }
+            if(heard_round >= 0 && !round_ended) {
+                /* The rest of the round may follow in another signal */
+                pending_round = heard_round;
+                continue;
+            }
+            if(heard_round < 0) {
+                if(!packets.isEmpty()) { continue; } /* Not meant for a receiving station, or already answered */
+                boolean silent = receiver.getDecoder().getCrcErrors() == n_crc_errors
+                        && receiver.getDecoder().getDiscardedBytes() == n_discarded;
+                if(pending_round >= 0) {
+                    /* The end of the round was lost */
+                    heard_round = pending_round;
+                } else if(silent) {
+                    log.info("Timed out.");
+                    return new byte[0];
+                } else if(answered_round < 0) {
+                    continue; /* The round is unknown, so the sender waits for its timeout */
+                } else {
+                    /* A transmission was heard, but none of it could be decoded: most likely the next round */
+                    answered_round = (answered_round + 1) & 0xff;
+                    sendStatus(-1, answered_round);
+                    continue;
+                }
+            }
+            pending_round = -1;
+            answered_round = heard_round & 0xff;
+            sendStatus(heard_round >> 8, heard_round & 0xff);
+            if(rx_transfer >= 0 && rx_n_received == rx_segments.length) {
+                byte[] message = getMessage();
+                completed_transfer = rx_transfer;
+                completed_segments = rx_segments.length;
+                rx_transfer = -1;
+                rx_segments = null;
+                log.info(() -> "Received transfer " + completed_transfer + ". (" + message.length + " bytes)");
+                return message;
+            }
+        }
+    }
+
+    /**
+     * @return Current window size in segments
+     */
+    public int getWindow() { return window; }
+
+    /**
+     * @return Current listen timeout in milliseconds
+     */
+    public int getTimeout() { return timeout; }
+
+    /**
+     * @return Smoothed turnaround in milliseconds, or -1 if it has not been measured
+     */
+    public double getTurnaround() { return srtt; }
+
+    /**
+     * @return Number of segments sent, including retransmissions
+     */
+    public int getSentSegments() { return n_sent_segments; }
+
+    /**
+     * @return Number of segments that were retransmitted
+     */
+    public int getResentSegments() { return n_resent_segments; }
+
+    /**
+     * Listens for the status of a round and marks the segments it acknowledges.
+     * Statuses for earlier rounds (still queued, or sent late) are dropped, and listening continues.
+     * @param transfer Transfer number
+     * @param round Round number
+     * @param acked Acknowledged flag for each segment
+     * @param n_round Number of segments sent in this round
+     * @return Number of this round's segments that are now acknowledged, or -1 if no status was received
+     */
+    private int awaitStatus(int transfer, int round, boolean[] acked, int n_round) {
+        while(true) {
+            List<byte[]> packets = receiver.receive(timeout, TimeUnit.MILLISECONDS);
+            if(packets.isEmpty()) { return -1; }
+            for(byte[] packet : packets) {
+                if(packet.length != STATUS_SIZE || packet[0] != TYPE_STATUS) { continue; }
+                if((packet[2] & 0xff) != round) {
+                    log.debug(() -> "Dropped status for round " + (packet[2] & 0xff) + ". (Expected " + round + ")");
+                    continue;
+                }
+                int base = (packet[3] & 0xff) << 8 | (packet[4] & 0xff);
+                /* The other station does not know the transfer number if it decoded nothing */
+                if(base == NOTHING_RECEIVED) { return 0; }
+                if((packet[1] & 0xff) != transfer) { continue; }
+                for(int seq = 0; seq < Math.min(base, acked.length); seq++) { acked[seq] = true; }
+                for(int i = 0; i < MAX_WINDOW && base + i < acked.length; i++) {
+                    if((packet[5 + i / 8] >> (7 - i % 8) & 1) != 0) { acked[base + i] = true; }
+                }
+                int n_acked = 0;
+                for(int i = 0; i < n_round; i++) {
+                    if(acked[round_segments[i]]) { n_acked++; }
+                }
+                return n_acked;
+            }
+        }
+    }
+
+    /**
+     * Updates the turnaround estimate and the listen timeout (as in RFC 6298).
+     * @param new_segment_time Time to send each segment of the last round in milliseconds
+     * @param turnaround Time from the end of the last transmission until its status was received
+     *                   in milliseconds
+     */
+    private void updateTiming(double new_segment_time, double turnaround) {
+        if(srtt < 0) {
+            srtt = turnaround;
+            rttvar = turnaround / 2;
+            segment_time = new_segment_time;
+        } else {
+            rttvar = 0.75 * rttvar + 0.25 * Math.abs(srtt - turnaround);
+            srtt = 0.875 * srtt + 0.125 * turnaround;
+            segment_time = 0.875 * segment_time + 0.125 * new_segment_time;
+        }
+        segment_time = Math.max(segment_time, 1);
+        timeout = (int) Math.max(MIN_TIMEOUT, Math.min(MAX_TIMEOUT, Math.ceil(srtt + 4 * rttvar)));
+    }
+
+    /**
+     * Stores a received segment, starting a new message if it belongs to a new transfer.
+     * @param packet Data packet
+     * @return True if the segment belongs to the current transfer or a repeat of the last one
+     */
+    private boolean acceptSegment(byte[] packet) {
+        int transfer = packet[1] & 0xff;
+        int seq = (packet[4] & 0xff) << 8 | (packet[5] & 0xff);
+        int n_segments = (packet[6] & 0xff) << 8 | (packet[7] & 0xff);
+        if(transfer == completed_transfer && n_segments == completed_segments) { return true; }
+        if(n_segments == 0 || n_segments > MAX_SEGMENTS || seq >= n_segments) { return false; }
+        if(transfer != rx_transfer || n_segments != rx_segments.length) {
+            log.debug(() -> "Receiving transfer " + transfer + ". (" + n_segments + " segment(s))");
+            rx_transfer = transfer;
+            rx_segments = new byte[n_segments][];
+            rx_n_received = 0;
+        }
+        if(rx_segments[seq] == null) {
+            rx_segments[seq] = Arrays.copyOfRange(packet, DATA_HEADER_SIZE, packet.length);
+            rx_n_received++;
+        }
+        return true;
+    }
+
+    /**
+     * Sends the status of a transfer, in answer to a round.
+     * @param transfer Transfer number, or -1 to report that nothing could be decoded
+     * @param round Round number
+     */
+    private void sendStatus(int transfer, int round) {
+        byte[] status = new byte[STATUS_SIZE];
+        status[0] = TYPE_STATUS;
+        status[1] = (byte) transfer;
+        status[2] = (byte) round;
+        int base;
+        if(transfer < 0) {
+            base = NOTHING_RECEIVED;
+        } else if(transfer == completed_transfer) {
+            base = completed_segments;
+        } else {
+            base = 0;
+            while(base < rx_segments.length && rx_segments[base] != null) { base++; }
+            for(int i = 0; i < MAX_WINDOW && base + i < rx_segments.length; i++) {
+                if(rx_segments[base + i] != null) { status[5 + i / 8] |= (byte) (0x80 >> (i % 8)); }
+            }
+        }
+        status[3] = (byte) (base >> 8);
+        status[4] = (byte) base;
+        transmitter.send(status);
+    }
+
+    /**
+     * @return Message reassembled from the received segments
+     */
+    private byte[] getMessage() {
+        int length = 0;
+        for(byte[] segment : rx_segments) { length += segment.length; }
+        byte[] message = new byte[length];
+        int pos = 0;
+        for(byte[] segment : rx_segments) {
+            System.arraycopy(segment, 0, message, pos, segment.length);
+            pos += segment.length;
+        }
+        return message;
+    }
+
+    /**
+     * Builds the data packet for a segment.
+     * @param transfer Transfer number
+     * @param round Round number
+     * @param seq Segment number
+     * @param n_segments Number of segments in the message
+     * @param end_of_round True if this is the last packet of the round
+     * @param message Message
+     * @return Packet payload
+     */
+    private byte[] getDataPacket(int transfer, int round, int seq, int n_segments, boolean end_of_round,
+                                 byte[] message) {
+        int offset = seq * SEGMENT_BYTES;
+        int length = Math.min(SEGMENT_BYTES, message.length - offset);
+        byte[] packet = new byte[DATA_HEADER_SIZE + length];
+        packet[0] = TYPE_DATA;
+        packet[1] = (byte) transfer;
+        packet[2] = (byte) round;
+        packet[3] = (byte) (end_of_round ? FLAG_END_OF_ROUND : 0);
+        packet[4] = (byte) (seq >> 8);
+        packet[5] = (byte) seq;
+        packet[6] = (byte) (n_segments >> 8);
+        packet[7] = (byte) n_segments;
+        System.arraycopy(message, offset, packet, DATA_HEADER_SIZE, length);
+        return packet;
+    }
+}
@@ -0,0 +1,136 @@
+package org.lavajuno.jfskmodem.packet;
+
+import org.lavajuno.jfskmodem.Demodulator;
+import org.lavajuno.jfskmodem.ecc.Crc16;
+
+import java.util.Arrays;
+
+/**
+ * PacketDecoder extracts packets from a stream of received bytes.
+ * It can be used directly as a Demodulator listener, so packets are delivered as soon
+ * as their last byte is decoded. Bytes outside of packets (such as trailing garbage)
+ * are discarded, and packets that fail their CRC are dropped. After a failed packet,
+ * the decoder searches for the next sync word from the byte after the failed one.
+ */
+public class PacketDecoder implements Demodulator.Listener {
+    /**
+     * PacketListener receives packets from a PacketDecoder.
+     */
+    @FunctionalInterface
+    public interface PacketListener {
+        /**
+         * Called when a packet has been received with a valid CRC.
+         * @param payload Payload of the packet
+         */
+        void onPacket(byte[] payload);
+    }
+
+    private static final int HEADER_SIZE = 4;
+
+    private final PacketListener listener;
+    private final byte[] buffer;
+    private int n_buffered;
+    private int n_expected;
+    private int n_packets;
+    private int n_crc_errors;
+    private int n_discarded;
+
+    /**
+     * Constructs a PacketDecoder.
+     * @param listener Listener to pass received packets to
+     */
+    public PacketDecoder(PacketListener listener) {
+        this.listener = listener;
+        buffer = new byte[Packets.MAX_PAYLOAD + Packets.OVERHEAD];
+    }
+
+    /**
+     * Discards any partially received packet, for when a transmission ends.
+     */
+    public void reset() {
+        n_discarded += n_buffered;
+        n_buffered = 0;
+        n_expected = 0;
+    }
+
+    /**
+     * @return Number of packets received with a valid CRC
+     */
+    public int getPackets() { return n_packets; }
+
+    /**
+     * @return Number of packets dropped because of a CRC mismatch
+     */
+    public int getCrcErrors() { return n_crc_errors; }
+
+    /**
+     * @return Number of received bytes that were not part of a valid packet
+     */
+    public int getDiscardedBytes() { return n_discarded; }
+
+    /**
+     * Adds a received byte.
+     * @param data Received byte
+     */
+    @Override
+    public void onByte(byte data) {
+        buffer[n_buffered++] = data;
+        scan();
+    }
+
+    /**
+     * Advances through the buffered bytes, delivering any complete packet.
+     */
+    private void scan() {
+        while(n_buffered > 0) {
+            /* Sync word */
+            if(n_buffered == 1) {
+                if((buffer[0] & 0xff) != Packets.SYNC_WORD >> 8) { skip(1); continue; }
+                return;
+            }
+            if((((buffer[0] & 0xff) << 8) | (buffer[1] & 0xff)) != Packets.SYNC_WORD) {
+                skip(1);
+                continue;
+            }
+            /* Length */
+            if(n_buffered < HEADER_SIZE) { return; }
+            int length = ((buffer[2] & 0xff) << 8) | (buffer[3] & 0xff);
+            if(length > Packets.MAX_PAYLOAD) {
+                skip(1);
+                continue;
+            }
+            n_expected = length + Packets.OVERHEAD;
+            /* Payload and CRC */
+            if(n_buffered < n_expected) { return; }
+            int crc = ((buffer[n_expected - 2] & 0xff) << 8) | (buffer[n_expected - 1] & 0xff);
+            if(Crc16.compute(buffer, 2, length + 2) != crc) {
+                n_crc_errors++;
+                skip(1);
+                continue;
+            }
+            n_packets++;
+            byte[] payload = Arrays.copyOfRange(buffer, HEADER_SIZE, HEADER_SIZE + length);
+            remove(n_expected);
+            listener.onPacket(payload);
+        }
+    }
+
+    /**
+     * Discards bytes from the start of the buffer.
+     * @param n Number of bytes to discard
+     */
+    private void skip(int n) {
+        n_discarded += n;
+        remove(n);
+    }
+
+    /**
+     * Removes bytes from the start of the buffer.
+     * @param n Number of bytes to remove
+     */
+    private void remove(int n) {
+        System.arraycopy(buffer, n, buffer, 0, n_buffered - n);
+        n_buffered -= n;
+        n_expected = 0;
+    }
+}
@@ -0,0 +1,76 @@
+package org.lavajuno.jfskmodem.packet;
+
+import org.lavajuno.jfskmodem.Receiver;
+import org.lavajuno.jfskmodem.log.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PacketReceiver receives transmissions with a Receiver and extracts the packets in them.
+ * Bytes that are not part of a packet with a valid CRC (such as trailing garbage
+ * at the end of a transmission) are discarded.
+ */
+public class PacketReceiver {
+    private final Receiver receiver;
+    private final PacketDecoder decoder;
+    private final Log log;
+    private final List<byte[]> packets;
+
+    /**
+     * Constructs a PacketReceiver with the given receiver and log level.
+     * @param receiver Receiver to receive transmissions with
+     * @param log_level Log level for this PacketReceiver
+     */
+    public PacketReceiver(Receiver receiver, Log.Level log_level) {
+        this.receiver = receiver;
+        log = new Log("PacketReceiver", log_level);
+        packets = new ArrayList<>();
+        decoder = new PacketDecoder(packets::add);
+    }
+
+    /**
+     * Constructs a PacketReceiver with the given receiver.
+     * @param receiver Receiver to receive transmissions with
+     */
+    public PacketReceiver(Receiver receiver) {
+        this(receiver, Log.Level.WARN);
+    }
+
+    /**
+     * Receives a transmission and extracts its packets.
+     * @param timeout Listen timeout in seconds
+     * @return Payloads of the received packets. Empty if no valid packets were received
+     *         or timeout is reached.
+     */
+    public List<byte[]> receive(int timeout) {
+        return receive(timeout, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Receives a transmission and extracts its packets.
+     * @param timeout Listen timeout
+     * @param unit Unit of the timeout
+     * @return Payloads of the received packets. Empty if no valid packets were received
+     *         or timeout is reached.
+     */
+    public List<byte[]> receive(long timeout, TimeUnit unit) {
+        packets.clear();
+        int n_crc_errors = decoder.getCrcErrors();
+        receiver.receive(timeout, unit, decoder);
+        decoder.reset();
+        if(decoder.getCrcErrors() > n_crc_errors) {
+            log.warn(() -> "Dropped " + (decoder.getCrcErrors() - n_crc_errors) + " packet(s) with bad CRC.");
+        }
+        log.debug(() -> "Received " + packets.size() + " packet(s).");
+        List<byte[]> res = new ArrayList<>(packets);
+        packets.clear();
+        return res;
+    }
+
+    /**
+     * @return Decoder holding packet, CRC error, and discarded byte counts
+     */
+    public PacketDecoder getDecoder() { return decoder; }
+}
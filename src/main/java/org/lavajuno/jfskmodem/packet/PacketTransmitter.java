@@ -0,0 +1,106 @@
+package org.lavajuno.jfskmodem.packet;
+
+import org.lavajuno.jfskmodem.Transmitter;
+import org.lavajuno.jfskmodem.log.Log;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+
+/**
+ * PacketTransmitter frames messages as packets and sends them with a Transmitter.
+ * Queued messages are packed back to back into as few transmissions as possible,
+ * so that many small messages share a single training sequence.
+ */
+public class PacketTransmitter {
+    /**
+     * Default largest number of packet bytes to pack into one transmission
+     */
+    public static final int DEFAULT_MAX_BURST_BYTES = 1024;
+
+    private final int MAX_BURST_BYTES;
+
+    private final Transmitter transmitter;
+    private final Log log;
+    private final Queue<byte[]> queue;
+    private byte[] burst;
+
+    /**
+     * Constructs a PacketTransmitter with the given transmitter, burst size, and log level.
+     * @param transmitter Transmitter to send packets with
+     * @param max_burst_bytes Largest number of packet bytes to pack into one transmission
+     *                        (a single larger packet is still sent on its own)
+     * @param log_level Log level for this PacketTransmitter
+     */
+    public PacketTransmitter(Transmitter transmitter, int max_burst_bytes, Log.Level log_level) {
+        MAX_BURST_BYTES = max_burst_bytes;
+        this.transmitter = transmitter;
+        log = new Log("PacketTransmitter", log_level);
+        queue = new ArrayDeque<>();
+        burst = new byte[Math.min(max_burst_bytes, Packets.MAX_PAYLOAD + Packets.OVERHEAD)];
+    }
+
+    /**
+     * Constructs a PacketTransmitter with the given transmitter.
+     * @param transmitter Transmitter to send packets with
+     */
+    public PacketTransmitter(Transmitter transmitter) {
+        this(transmitter, DEFAULT_MAX_BURST_BYTES, Log.Level.WARN);
+    }
+
+    /**
+     * Queues a message to be sent on the next flush.
+     * @param message Message to send (at most Packets.MAX_PAYLOAD bytes)
+     * @throws IllegalArgumentException If the message is longer than Packets.MAX_PAYLOAD
+     */
+    public synchronized void queue(byte[] message) throws IllegalArgumentException {
+        if(message.length > Packets.MAX_PAYLOAD) {
+            throw new IllegalArgumentException("Payload too long.");
+        }
+        queue.add(message);
+    }
+
+    /**
+     * @return Number of messages waiting to be sent
+     */
+    public synchronized int getQueued() { return queue.size(); }
+
+    /**
+     * Sends all queued messages, packing as many as fit into each transmission.
+     * @return Number of transmissions made
+     */
+    public synchronized int flush() {
+        int n_bursts = 0;
+        while(!queue.isEmpty()) {
+            int n_burst_bytes = 0;
+            int n_packets = 0;
+            while(!queue.isEmpty()) {
+                byte[] message = queue.peek();
+                int n_packet_bytes = message.length + Packets.OVERHEAD;
+                if(n_packets > 0 && n_burst_bytes + n_packet_bytes > MAX_BURST_BYTES) { break; }
+                if(n_burst_bytes + n_packet_bytes > burst.length) {
+                    burst = Arrays.copyOf(burst, n_burst_bytes + n_packet_bytes);
+                }
+                n_burst_bytes += Packets.encode(message, 0, message.length, burst, n_burst_bytes);
+                n_packets++;
+                queue.remove();
+            }
+            int n_sent_packets = n_packets;
+            int n_sent_bytes = n_burst_bytes;
+            log.debug(() -> "Sending " + n_sent_packets + " packet(s) in " + n_sent_bytes + " bytes.");
+            transmitter.transmit(Arrays.copyOf(burst, n_burst_bytes));
+            n_bursts++;
+        }
+        return n_bursts;
+    }
+
+    /**
+     * Sends a message, along with any queued messages.
+     * @param message Message to send (at most Packets.MAX_PAYLOAD bytes)
+     * @throws IllegalArgumentException If the message is longer than Packets.MAX_PAYLOAD
+     */
+    public synchronized void send(byte[] message) throws IllegalArgumentException {
+        queue(message);
+        flush();
+    }
+}
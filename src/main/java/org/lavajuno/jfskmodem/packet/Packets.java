@@ -0,0 +1,64 @@
+package org.lavajuno.jfskmodem.packet;
+
+import org.lavajuno.jfskmodem.ecc.Crc16;
+
+/**
+ * Packets provides functionality for framing messages as packets.
+ * A packet is a 2-byte sync word, a 2-byte big-endian payload length, the payload,
+ * and a CRC-16 of the length and payload. Several packets can be sent back to back
+ * in a single transmission.
+ */
+public class Packets {
+    /**
+     * Sync word marking the start of each packet
+     */
+    public static final int SYNC_WORD = 0x2dd4;
+
+    /**
+     * Largest payload a packet can carry
+     */
+    public static final int MAX_PAYLOAD = 4096;
+
+    /**
+     * Number of bytes a packet adds to its payload
+     */
+    public static final int OVERHEAD = 6;
+
+    /**
+     * Frames a payload as a packet.
+     * @param payload Payload bytes
+     * @param offset Index of the first payload byte
+     * @param length Number of payload bytes
+     * @param out Array to store the packet in (at least length + OVERHEAD bytes from out_offset)
+     * @param out_offset Index of the first packet byte
+     * @return Number of packet bytes written
+     * @throws IllegalArgumentException If the payload is longer than MAX_PAYLOAD
+     */
+    public static int encode(byte[] payload, int offset, int length, byte[] out, int out_offset)
+            throws IllegalArgumentException {
+        if(length > MAX_PAYLOAD) {
+            throw new IllegalArgumentException("Payload too long.");
+        }
+        out[out_offset] = (byte) (SYNC_WORD >> 8);
+        out[out_offset + 1] = (byte) SYNC_WORD;
+        out[out_offset + 2] = (byte) (length >> 8);
+        out[out_offset + 3] = (byte) length;
+        System.arraycopy(payload, offset, out, out_offset + 4, length);
+        int crc = Crc16.compute(out, out_offset + 2, length + 2);
+        out[out_offset + 4 + length] = (byte) (crc >> 8);
+        out[out_offset + 5 + length] = (byte) crc;
+        return length + OVERHEAD;
+    }
+
+    /**
+     * Frames a payload as a packet.
+     * @param payload Payload bytes
+     * @return Packet bytes
+     * @throws IllegalArgumentException If the payload is longer than MAX_PAYLOAD
+     */
+    public static byte[] encode(byte[] payload) throws IllegalArgumentException {
+        byte[] res = new byte[payload.length + OVERHEAD];
+        encode(payload, 0, payload.length, res, 0);
+        return res;
+    }
+}
@@ -0,0 +1,231 @@
+package org.lavajuno.jfskmodem.waveforms;
+
+import org.lavajuno.jfskmodem.ModemConfig;
+import org.lavajuno.jfskmodem.io.Pcm;
+
+import java.nio.ByteBuffer;
+
+/**
+ * ToneSynthesizer generates phase-continuous FSK symbols for a ModemConfig.
+ * Bits can be put one or more at a time, and are packed into symbols of the
+ * configuration's number of bits, most significant bit first.
+ * Sine tones are read from a precomputed lookup table. The phase is tracked exactly
+ * as a fraction of the sample rate, so tones that do not fit a whole number of cycles
+ * into a symbol stay continuous across symbol boundaries. When only a few phases can
+ * occur at symbol boundaries, the PCM bytes of each symbol are cached per phase.
+ * Symbols that are a fraction of a frame long alternate between whole frame counts.
+ */
+public class ToneSynthesizer {
+    private static final int TABLE_SIZE = 1024;
+    private static final int MAX_CACHED_PHASES = 64;
+
+    private final int SAMPLE_RATE;
+    private final int BAUD_RATE;
+    private final int SYMBOL_FRAMES;
+    private final int SYMBOL_REMAINDER;
+    private final int AMPLITUDE;
+    private final boolean SQUARE;
+    private final int[] FREQUENCIES;
+    private final short[] TABLE;
+    private final long INDEX_SCALE;
+    private final int PHASE_STEP;
+    private final ModemConfig config;
+
+    private final byte[][][] cache;
+    private final short[] scratch;
+    private int phase;
+    private int timing;
+    private int bits;
+    private int n_bits;
+
+    /**
+     * Constructs a ToneSynthesizer for the given configuration.
+     * @param config Modem configuration to generate symbols for
+     */
+    public ToneSynthesizer(ModemConfig config) {
+        this.config = config;
+        SAMPLE_RATE = config.getSampleRate();
+        BAUD_RATE = config.getBaudRate();
+        SYMBOL_FRAMES = config.getSymbolFrames();
+        SYMBOL_REMAINDER = SAMPLE_RATE % BAUD_RATE;
+        AMPLITUDE = config.getAmplitude();
+        SQUARE = config.getShape() == ModemConfig.Shape.SQUARE;
+        FREQUENCIES = new int[config.getTones()];
+        for(int i = 0; i < FREQUENCIES.length; i++) { FREQUENCIES[i] = config.getToneFrequency(i); }
+        TABLE = new short[TABLE_SIZE];
+        for(int i = 0; i < TABLE_SIZE; i++) {
+            TABLE[i] = (short) Math.round(AMPLITUDE * Math.sin(2 * Math.PI * i / TABLE_SIZE));
+        }
+        INDEX_SCALE = ((long) TABLE_SIZE << 32) / SAMPLE_RATE;
+
+        /* Phases at symbol boundaries are multiples of the GCD of each symbol's phase advance */
+        int step = SAMPLE_RATE;
+        for(int frequency : FREQUENCIES) {
+            step = gcd(step, (int) ((long) frequency * SYMBOL_FRAMES % SAMPLE_RATE));
+        }
+        if(SYMBOL_REMAINDER == 0 && SAMPLE_RATE / step <= MAX_CACHED_PHASES) {
+            PHASE_STEP = step;
+            cache = new byte[SAMPLE_RATE / step][FREQUENCIES.length][];
+        } else {
+            PHASE_STEP = 0;
+            cache = null;
+        }
+        scratch = new short[SYMBOL_FRAMES + 1];
+    }
+
+    /**
+     * Resets the phase and symbol timing to zero, and discards any bits not yet put into a symbol.
+     */
+    public void reset() {
+        restore(0, 0);
+    }
+
+    /**
+     * @return Current phase, as a fraction of the sample rate
+     */
+    public int getPhase() { return phase; }
+
+    /**
+     * @return Current symbol timing, as a fraction of the baud rate
+     */
+    public int getTiming() { return timing; }
+
+    /**
+     * Restores a phase and symbol timing saved with getPhase() and getTiming(),
+     * and discards any bits not yet put into a symbol.
+     * @param phase Phase to restore
+     * @param timing Symbol timing to restore
+     */
+    public void restore(int phase, int timing) {
+        this.phase = phase;
+        this.timing = timing;
+        bits = 0;
+        n_bits = 0;
+    }
+
+    /**
+     * Generates symbols for bits, most significant bit first. Bits that do not fill
+     * a whole symbol are kept until more bits are put, or finishBits() is called.
+     * @param data Bits to generate symbols for (in the low n_data_bits bits)
+     * @param n_data_bits Number of bits (at most 24)
+     * @param out Buffer to put PCM bytes in (at least getMaxBytes(n_data_bits) bytes remaining)
+     */
+    public void putBits(int data, int n_data_bits, ByteBuffer out) {
+        int bits_per_symbol = config.getBitsPerSymbol();
+        bits = (bits << n_data_bits) | (data & ((1 << n_data_bits) - 1));
+        n_bits += n_data_bits;
+        while(n_bits >= bits_per_symbol) {
+            n_bits -= bits_per_symbol;
+            putSymbol(config.getSymbol((bits >> n_bits) & ((1 << bits_per_symbol) - 1)), out);
+        }
+        bits &= (1 << n_bits) - 1;
+    }
+
+    /**
+     * Generates a final symbol for any bits that do not fill a whole symbol, padded with zeros.
+     * @param out Buffer to put PCM bytes in (at least getMaxBytes(1) bytes remaining)
+     */
+    public void finishBits(ByteBuffer out) {
+        if(n_bits > 0) { putBits(0, config.getBitsPerSymbol() - n_bits, out); }
+    }
+
+    /**
+     * Generates a symbol.
+     * @param symbol Symbol to generate (0 to getTones() - 1 of the configuration)
+     * @param out Array to store frames in (at least getSymbolFrames() + 1 frames from offset)
+     * @param offset Index of the first frame
+     * @return Number of frames generated
+     */
+    public int putSymbol(int symbol, short[] out, int offset) {
+        int n_frames = nextSymbolFrames();
+        synthesize(FREQUENCIES[symbol], out, offset, n_frames);
+        return n_frames;
+    }
+
+    /**
+     * Generates a symbol as PCM bytes.
+     * @param symbol Symbol to generate (0 to getTones() - 1 of the configuration)
+     * @param out Buffer to put PCM bytes in (at least getSymbolFrames() * 2 + 2 bytes remaining)
+     */
+    public void putSymbol(int symbol, ByteBuffer out) {
+        int n_frames = nextSymbolFrames();
+        if(cache == null || phase % PHASE_STEP != 0) {
+            synthesize(FREQUENCIES[symbol], scratch, 0, n_frames);
+            int pos = out.position();
+            Pcm.encode(scratch, 0, n_frames, out.array(), out.arrayOffset() + pos);
+            out.position(pos + n_frames * 2);
+            return;
+        }
+        byte[][] blocks = cache[phase / PHASE_STEP];
+        if(blocks[symbol] == null) {
+            synthesize(FREQUENCIES[symbol], scratch, 0, n_frames);
+            blocks[symbol] = new byte[n_frames * 2];
+            Pcm.encode(scratch, 0, n_frames, blocks[symbol], 0);
+        } else {
+            phase = (int) ((phase + (long) FREQUENCIES[symbol] * n_frames) % SAMPLE_RATE);
+        }
+        out.put(blocks[symbol]);
+    }
+
+    /**
+     * Gets the largest number of PCM bytes that the symbols for the given number of bits can take
+     * (including a padded final symbol).
+     * @param n_data_bits Number of bits
+     * @return Largest number of PCM bytes
+     */
+    public int getMaxBytes(int n_data_bits) {
+        int bits_per_symbol = config.getBitsPerSymbol();
+        long n_symbols = (n_data_bits + bits_per_symbol - 1) / bits_per_symbol + 1;
+        return (int) ((n_symbols * SAMPLE_RATE + BAUD_RATE - 1) / BAUD_RATE) * 2;
+    }
+
+    /**
+     * Generates frames of a tone, continuing from the current phase.
+     * @param frequency Frequency of the tone (Hz)
+     * @param out Array to store frames in
+     * @param offset Index of the first frame
+     * @param length Number of frames to generate
+     */
+    public void synthesize(int frequency, short[] out, int offset, int length) {
+        int p = phase;
+        for(int i = offset; i < offset + length; i++) {
+            if(SQUARE) {
+                /* High while the frame's midpoint is in the first half-cycle */
+                out[i] = (short) (p * 2 + frequency < SAMPLE_RATE ? AMPLITUDE : ~AMPLITUDE);
+            } else {
+                out[i] = TABLE[(int) ((p * INDEX_SCALE) >>> 32)];
+            }
+            p += frequency;
+            if(p >= SAMPLE_RATE) { p -= SAMPLE_RATE; }
+        }
+        phase = p;
+    }
+
+    /**
+     * Advances the symbol timing by one symbol.
+     * @return Number of frames in the symbol
+     */
+    private int nextSymbolFrames() {
+        timing += SYMBOL_REMAINDER;
+        if(timing >= BAUD_RATE) {
+            timing -= BAUD_RATE;
+            return SYMBOL_FRAMES + 1;
+        }
+        return SYMBOL_FRAMES;
+    }
+
+    /**
+     * Finds the greatest common divisor of two non-negative integers.
+     * @param a First integer
+     * @param b Second integer
+     * @return Greatest common divisor (a if b is zero)
+     */
+    private static int gcd(int a, int b) {
+        while(b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
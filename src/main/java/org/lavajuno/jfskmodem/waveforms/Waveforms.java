@@ -1,29 +1,35 @@
 package org.lavajuno.jfskmodem.waveforms;
 
+import org.lavajuno.jfskmodem.ModemConfig;
+
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * Waveforms provides functionality for generating space+mark tones and training cycles.
+ * Waveforms are represented as arrays of signed 16-bit frames. The baud rate methods generate
+ * the default square tones at 48000 Hz, and the ModemConfig methods use a ToneSynthesizer.
+ * The List-based methods are kept as adapters for existing callers.
  */
 public class Waveforms {
     /**
      * Generates a single space tone for the given baud rate.
      * @param baud_rate Baud rate to use for generation
-     * @return Space tone frames as a list of shorts
+     * @return Space tone frames
      * @throws IllegalArgumentException If the baud rate is not a factor of 48000
      */
-    public static List<Short> getSpaceTone(int baud_rate) throws IllegalArgumentException {
+    public static short[] getSpaceToneFrames(int baud_rate) throws IllegalArgumentException {
         if(48000 % baud_rate != 0) {
             throw new IllegalArgumentException("Invalid baud rate.");
         }
         int bit_frames = 48000 / baud_rate;
-        ArrayList<Short> res = new ArrayList<>(bit_frames);
+        short[] res = new short[bit_frames];
         for(int i = 0; i < bit_frames / 2; i++) {
-            res.add((short) 32767);
+            res[i] = (short) 32767;
         }
         for(int i = bit_frames / 2; i < bit_frames; i++) {
-            res.add((short) -32768);
+            res[i] = (short) -32768;
         }
         return res;
     }
@@ -31,18 +37,69 @@ public class Waveforms {
     /**
      * Generates a single mark tone for the given baud rate.
      * @param baud_rate Baud rate to use for generation
-     * @return Mark tone frames as a list of shorts
+     * @return Mark tone frames
      * @throws IllegalArgumentException If the baud rate is not a factor of 48000
      */
-    public static List<Short> getMarkTone(int baud_rate) throws IllegalArgumentException {
+    public static short[] getMarkToneFrames(int baud_rate) throws IllegalArgumentException {
         if(48000 % baud_rate != 0) {
             throw new IllegalArgumentException("Invalid baud rate.");
         }
-        List<Short> res = getSpaceTone(baud_rate * 2);
-        res.addAll(getSpaceTone(baud_rate * 2));
+        short[] half = getSpaceToneFrames(baud_rate * 2);
+        short[] res = new short[half.length * 2];
+        System.arraycopy(half, 0, res, 0, half.length);
+        System.arraycopy(half, 0, res, half.length, half.length);
+        return res;
+    }
+
+    /**
+     * Generates a single training cycle for the given baud rate.
+     * @param baud_rate Baud rate to use for generation
+     * @return Training cycle frames
+     * @throws IllegalArgumentException If the baud rate is not a factor of 48000
+     */
+    public static short[] getTrainingCycleFrames(int baud_rate) throws IllegalArgumentException {
+        short[] mark = getMarkToneFrames(baud_rate);
+        short[] space = getSpaceToneFrames(baud_rate);
+        short[] res = new short[mark.length + space.length];
+        System.arraycopy(mark, 0, res, 0, mark.length);
+        System.arraycopy(space, 0, res, mark.length, space.length);
         return res;
     }
 
+    /**
+     * Generates a single training cycle (a mark symbol followed by a space symbol,
+     * starting at zero phase) for the given configuration.
+     * @param config Modem configuration to use for generation
+     * @return Training cycle frames
+     */
+    public static short[] getTrainingCycleFrames(ModemConfig config) {
+        ToneSynthesizer synthesizer = new ToneSynthesizer(config);
+        short[] res = new short[config.getSymbolFrames() * 2 + 2];
+        int n_frames = synthesizer.putSymbol(config.getMarkSymbol(), res, 0);
+        n_frames += synthesizer.putSymbol(config.getSpaceSymbol(), res, n_frames);
+        return Arrays.copyOf(res, n_frames);
+    }
+
+    /**
+     * Generates a single space tone for the given baud rate.
+     * @param baud_rate Baud rate to use for generation
+     * @return Space tone frames as a list of shorts
+     * @throws IllegalArgumentException If the baud rate is not a factor of 48000
+     */
+    public static List<Short> getSpaceTone(int baud_rate) throws IllegalArgumentException {
+        return toList(getSpaceToneFrames(baud_rate));
+    }
+
+    /**
+     * Generates a single mark tone for the given baud rate.
+     * @param baud_rate Baud rate to use for generation
+     * @return Mark tone frames as a list of shorts
+     * @throws IllegalArgumentException If the baud rate is not a factor of 48000
+     */
+    public static List<Short> getMarkTone(int baud_rate) throws IllegalArgumentException {
+        return toList(getMarkToneFrames(baud_rate));
+    }
+
     /**
      * Generates a single training cycle for the given baud rate.
      * @param baud_rate Baud rate to use for generation
@@ -50,26 +107,69 @@ public class Waveforms {
      * @throws IllegalArgumentException If the baud rate is not a factor of 48000
      */
     public static List<Short> getTrainingCycle(int baud_rate) throws IllegalArgumentException {
-        ArrayList<Short> res = new ArrayList<>(getMarkTone(baud_rate));
-        res.addAll(getSpaceTone(baud_rate));
-        return res;
+        return toList(getTrainingCycleFrames(baud_rate));
     }
 
     /**
      * Gets the mean of the differences between two waveforms at each frame.
      * @param a Waveform A
+     * @param a_offset Index of the first frame of waveform A
      * @param b Waveform B
+     * @param b_offset Index of the first frame of waveform B
+     * @param length Number of frames to compare
      * @return Mean of the differences between A and B at each frame
      */
-    public static int getDiff(List<Short> a, List<Short> b) {
-        if(a.size() != b.size()) {
+    public static int getDiff(short[] a, int a_offset, short[] b, int b_offset, int length) {
+        long total = 0;
+        for(int i = 0; i < length; i++) {
+            total += Math.abs(a[a_offset + i] - b[b_offset + i]);
+        }
+        return (int) (total / length);
+    }
+
+    /**
+     * Gets the mean of the differences between two waveforms at each frame.
+     * @param a Waveform A
+     * @param b Waveform B
+     * @return Mean of the differences between A and B at each frame
+     */
+    public static int getDiff(short[] a, short[] b) {
+        if(a.length != b.length) {
             throw new IllegalArgumentException("Clips must be of same length.");
         }
+        return getDiff(a, 0, b, 0, a.length);
+    }
+
+    /**
+     * Gets the mean of the differences between two waveforms at each frame.
+     * @param a Waveform A
+     * @param b Waveform B
+     * @return Mean of the differences between A and B at each frame
+     */
+    public static int getDiff(List<Short> a, List<Short> b) {
+        return getDiff(toFrames(a), toFrames(b));
+    }
+
+    /**
+     * Gets the mean amplitude of a section of a waveform.
+     * @param frames Waveform as frames
+     * @param offset Index of the first frame
+     * @param length Number of frames
+     * @return Mean amplitude of the section
+     */
+    public static int getAmplitude(short[] frames, int offset, int length) {
         long total = 0;
-        for(int i = 0; i < a.size(); i++) {
-            total += Math.abs(a.get(i) - b.get(i));
-        }
-        return (int) total / a.size();
+        for(int i = offset; i < offset + length; i++) { total += Math.abs(frames[i]); }
+        return (int) (total / length);
+    }
+
+    /**
+     * Gets the mean amplitude of a waveform.
+     * @param frames Waveform as frames
+     * @return Mean amplitude of the waveform
+     */
+    public static int getAmplitude(short[] frames) {
+        return getAmplitude(frames, 0, frames.length);
     }
 
     /**
@@ -82,4 +182,26 @@ public class Waveforms {
         for (Short frame : frames) { total += Math.abs(frame); }
         return (int) (total / frames.size());
     }
+
+    /**
+     * Converts an array of frames to a list of frames.
+     * @param frames Frames to convert
+     * @return Frames as a list of shorts
+     */
+    public static List<Short> toList(short[] frames) {
+        ArrayList<Short> res = new ArrayList<>(frames.length);
+        for(short frame : frames) { res.add(frame); }
+        return res;
+    }
+
+    /**
+     * Converts a list of frames to an array of frames.
+     * @param frames Frames to convert
+     * @return Frames as an array of shorts
+     */
+    public static short[] toFrames(List<Short> frames) {
+        short[] res = new short[frames.size()];
+        for(int i = 0; i < res.length; i++) { res[i] = frames.get(i); }
+        return res;
+    }
 }